@@ -0,0 +1,112 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.EventQueue;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Minimal benchmark harness: time based warm-up and measurement iterations,
+ * reports the average time per operation and the bytes allocated per operation by the measuring thread.
+ * Console output of the measured code is suppressed while a benchmark runs.
+ */
+final class BenchmarkRunner {
+
+	interface Operation {
+		/** @return any result of the operation, to keep the JIT from removing it */
+		Object run() throws Exception;
+	}
+
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+	private static final PrintStream CONSOLE = System.out;
+	private static final PrintStream NULL_STREAM = new PrintStream(OutputStream.nullOutputStream());
+
+	private final int warmupIterations;
+	private final int measureIterations;
+	private final long iterationTime_ns;
+	private final String filter;
+	@SuppressWarnings("unused")
+	private volatile Object sink;
+
+	BenchmarkRunner(int warmupIterations, int measureIterations, int iterationTime_ms, String filter) {
+		this.warmupIterations = warmupIterations;
+		this.measureIterations = measureIterations;
+		this.iterationTime_ns = iterationTime_ms*1000000L;
+		this.filter = filter;
+	}
+
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean)) return null;
+		if (!bean.isThreadAllocatedMemorySupported()) return null;
+		bean.setThreadAllocatedMemoryEnabled(true);
+		return bean;
+	}
+
+	static void printHeader() {
+		CONSOLE.printf("%-52s %14s %14s %14s%n", "Benchmark", "us/op", "bytes/op", "MB/s alloc");
+	}
+
+	void run(String name, Operation op) {
+		if (filter!=null && !name.contains(filter)) return;
+		Result result;
+		System.setOut(NULL_STREAM);
+		try {
+			result = measure(op);
+		} catch (Exception e) {
+			System.setOut(CONSOLE);
+			System.out.printf("%-52s failed: %s%n", name, e);
+			return;
+		}
+		System.setOut(CONSOLE);
+		System.out.printf("%-52s %14.3f %14s %14s%n", name, result.time_ns/1000.0,
+					result.bytes<0 ? "n/a" : String.format("%d", result.bytes),
+					result.bytes<0 ? "n/a" : String.format("%1.1f", result.bytes/(result.time_ns/1e9)/1e6));
+	}
+
+	/**
+	 * Runs the benchmark on the event thread, for components that have to be used there.
+	 */
+	void runOnEventThread(String name, Operation op) {
+		try {
+			EventQueue.invokeAndWait(() -> run(name, op));
+		} catch (InvocationTargetException | InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private record Result(double time_ns, long bytes) {}
+
+	private Result measure(Operation op) throws Exception {
+		for (int i=0; i<warmupIterations; i++)
+			iterate(op);
+
+		long totalOps = 0;
+		long totalTime = 0;
+		long totalBytes = 0;
+		for (int i=0; i<measureIterations; i++) {
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			long ops = iterate(op);
+			totalTime += System.nanoTime()-start;
+			totalBytes += allocatedBytes()-bytes;
+			totalOps += ops;
+		}
+		return new Result(totalTime/(double)totalOps, THREAD_BEAN==null ? -1 : totalBytes/totalOps);
+	}
+
+	private long iterate(Operation op) throws Exception {
+		long end = System.nanoTime()+iterationTime_ns;
+		long ops = 0;
+		do {
+			sink = op.run();
+			ops++;
+		} while (System.nanoTime()<end);
+		return ops;
+	}
+
+	private static long allocatedBytes() {
+		if (THREAD_BEAN==null) return 0;
+		return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
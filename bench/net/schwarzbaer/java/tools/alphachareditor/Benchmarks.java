@@ -0,0 +1,325 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import net.schwarzbaer.java.lib.image.linegeometry.AlphaCharIO;
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+/**
+ * Benchmarks for font I/O, project I/O, character raster painting, thick line drawing and font checks.
+ * <p>
+ * Usage: <code>Benchmarks [-quick] [name filter]</code>
+ */
+class Benchmarks {
+
+	/** a char based font can't hold more than 65536 glyphs */
+	private static final int[] FONT_SIZES = { 100, 1000, 10000, 60000 };
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+
+		boolean quick = false;
+		String filter = null;
+		for (String arg : args) {
+			if (arg.equals("-quick")) quick = true;
+			else filter = arg;
+		}
+		BenchmarkRunner runner = quick ? new BenchmarkRunner(1, 3, 200, filter) : new BenchmarkRunner(5, 10, 1000, filter);
+		Form.Factory factory = LineEditor.createFormFactory();
+
+		File tempDir = Files.createTempDirectory("AlphaCharEditorBench").toFile();
+		tempDir.deleteOnExit();
+
+		BenchmarkRunner.printHeader();
+		for (int size : FONT_SIZES)
+			runFontIO(runner, factory, tempDir, size);
+		runProjectIO(runner, factory, tempDir);
+		runCharRaster(runner, factory);
+		runThickLines(runner, factory);
+		runFontLint(runner, factory, tempDir);
+		runFormIndex(runner, factory);
+		runGlyphMetrics(runner, factory);
+		runGlyphTransform(runner, factory);
+		runPackedGlyphStore(runner, factory);
+
+		for (File file : tempDir.listFiles()) file.delete();
+		tempDir.delete();
+		System.exit(0);
+	}
+
+	static HashMap<Character, Form[]> createSyntheticFont(int glyphCount, Form.Factory factory) {
+		Random random = new Random(glyphCount);
+		HashMap<Character, Form[]> font = new HashMap<>();
+		for (int ch=0x20; font.size()<glyphCount && ch<=Character.MAX_VALUE; ch++) {
+			if (Character.isSurrogate((char) ch)) continue;
+			Form[] forms = new Form[1+random.nextInt(5)];
+			for (int i=0; i<forms.length; i++)
+				forms[i] = createRandomForm(random, factory);
+			font.put((char) ch, forms);
+		}
+		return font;
+	}
+
+	private static Form createRandomForm(Random random, Form.Factory factory) {
+		switch (random.nextInt(3)) {
+		case 0:
+			double[] values = new double[2*(2+random.nextInt(6))];
+			for (int i=0; i<values.length; i++) values[i] = random.nextInt(1000)/10.0;
+			return Forms.create(Forms.Type.PolyLine, values, factory);
+		case 1:
+			return Forms.create(Forms.Type.Line, new double[] { random.nextDouble()*60, random.nextDouble()*100, random.nextDouble()*60, random.nextDouble()*100 }, factory);
+		default:
+			double aStart = random.nextDouble()*2*Math.PI;
+			return Forms.create(Forms.Type.Arc, new double[] { 30, 50, 5+random.nextDouble()*30, aStart, aStart+random.nextDouble()*2*Math.PI }, factory);
+		}
+	}
+
+	private static void runFontIO(BenchmarkRunner runner, Form.Factory factory, File tempDir, int size) throws IOException {
+		HashMap<Character, Form[]> font = createSyntheticFont(size, factory);
+		File textFile   = new File(tempDir, "font"+size+"."+AlphaCharIO.ALPHACHARFONT_EXTENSION);
+		File binaryFile = new File(tempDir, "font"+size+"."+BinaryFontFormat.EXTENSION);
+		FontTextFormat.write(textFile, font);
+		BinaryFontFormat.write(binaryFile, font);
+
+		runner.run(String.format("AlphaCharIO.write          [%6d glyphs]", size), () -> { AlphaCharIO.writeAlphaCharToFile(textFile, font, false); return textFile; });
+		runner.run(String.format("AlphaCharIO.read           [%6d glyphs]", size), () -> AlphaCharIO.readAlphaCharFontFromFile(textFile, factory, false));
+		runner.run(String.format("FontTextFormat.write       [%6d glyphs]", size), () -> { FontTextFormat.write(textFile, font); return textFile; });
+		runner.run(String.format("FontTextFormat.read        [%6d glyphs]", size), () -> {
+			HashMap<Character, Form[]> result = new HashMap<>();
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(textFile), StandardCharsets.UTF_8))) {
+				FontTextFormat.read(in, factory, (ch, forms) -> { result.put(ch, forms); return true; });
+			}
+			return result;
+		});
+		runner.run(String.format("BinaryFontFormat.write     [%6d glyphs]", size), () -> { BinaryFontFormat.write(binaryFile, font); return binaryFile; });
+		runner.run(String.format("BinaryFontFormat.decodeAll [%6d glyphs]", size), () -> {
+			GlyphSource source = BinaryFontFormat.open(binaryFile);
+			Form[] last = null;
+			for (char ch : source.getChars()) last = source.decode(ch, factory);
+			return last;
+		});
+	}
+
+	private static void runProjectIO(BenchmarkRunner runner, Form.Factory factory, File tempDir) throws IOException {
+		File projectFile = new File(tempDir, "project.AlphaCharEditorProject");
+		AlphaCharEditor.Project project = AlphaCharEditor.Project.createDefaultProject();
+		project.writeToFile(projectFile);
+
+		runner.run("Project.writeToFile", () -> { project.writeToFile(projectFile); return project; });
+		runner.run("Project.readFromFile", () -> AlphaCharEditor.Project.readFromFile(projectFile));
+
+		File fontFile = new File(tempDir, "project.AlphaCharFont");
+		File linkedFile = new File(tempDir, "linked.AlphaCharEditorProject");
+		File bundleFile = new File(tempDir, "project."+ProjectBundle.EXTENSION);
+		FontTextFormat.write(fontFile, createSyntheticFont(5000, factory));
+		AlphaCharEditor.Project linked = AlphaCharEditor.Project.createDefaultProject();
+		linked.setFontFile(fontFile);
+		linked.writeToFile(linkedFile);
+		AlphaCharEditor.Project bundled = AlphaCharEditor.Project.readFromFile(linkedFile);
+		bundled.writeToFile(bundleFile);
+
+		runner.run("Project+font read            [project and font file]", () -> {
+			AlphaCharEditor.Project p = AlphaCharEditor.Project.readFromFile(linkedFile);
+			try { return FontLoader.readFont(fontFile, factory).size() + p.getGlyphCount(); }
+			catch (IOException e) { throw new IllegalStateException(e); }
+		});
+		runner.run("Project+font read            [bundle, mapped]", () -> AlphaCharEditor.Project.readFromFile(bundleFile).getGlyphCount());
+		runner.run("Project+font read            [bundle, decoded]", () -> {
+			AlphaCharEditor.Project p = AlphaCharEditor.Project.readFromFile(bundleFile);
+			int forms = 0;
+			for (char ch : p.getChars()) forms += p.getForms(ch).length;
+			return forms;
+		});
+		runner.run("Project.writeToFile          [bundle, 5000 glyphs]", () -> { bundled.writeToFile(bundleFile); return bundled; });
+	}
+
+	private static void runCharRaster(BenchmarkRunner runner, Form.Factory factory) throws InvocationTargetException, InterruptedException {
+		HashMap<Character, Form[]> font = createSyntheticFont(10000, factory);
+		CharRaster.GlyphProvider provider = new CharRaster.GlyphProvider() {
+			private char[] chars = null;
+			@Override public boolean hasGlyph(char ch) { return font.containsKey(ch); }
+			@Override public Form[] getForms(Character ch) { return font.get(ch); }
+			@Override public char[] getChars() {
+				if (chars==null) {
+					chars = new char[font.size()];
+					int i = 0;
+					for (Character ch : font.keySet()) chars[i++] = ch;
+					Arrays.sort(chars);
+				}
+				return chars;
+			}
+		};
+
+		int width = 250, height = 600;
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		CharRaster[] raster = new CharRaster[1];
+		EventQueue.invokeAndWait(() -> {
+			raster[0] = new CharRaster(ch -> {});
+			raster[0].setBlock(CharRaster.CharBlock.FONT);
+			raster[0].updateCharList(provider, null);
+			raster[0].setSize(width, height);
+			raster[0].dispatchEvent(new java.awt.event.ComponentEvent(raster[0], java.awt.event.ComponentEvent.COMPONENT_RESIZED));
+		});
+
+		// first paint requests the thumbnails, which are rendered in the background
+		Graphics2D g2 = image.createGraphics();
+		g2.setClip(0, 0, width, height);
+		EventQueue.invokeAndWait(() -> raster[0].paintCanvas(g2, 0, 0, width, height));
+		Thread.sleep(1000);
+		EventQueue.invokeAndWait(() -> {});
+
+		runner.runOnEventThread("CharRaster.paintCanvas       [visible area]", () -> { raster[0].paintCanvas(g2, 0, 0, width, height); return g2; });
+		runner.runOnEventThread("CharRaster.updateCharList    [10000 glyphs]", () -> { raster[0].updateCharList(provider, 'A'); return raster[0]; });
+		g2.dispose();
+	}
+
+	private static void runThickLines(BenchmarkRunner runner, Form.Factory factory) {
+		HashMap<Character, Form[]> font = createSyntheticFont(100, factory);
+		Form[] forms = font.get('A');
+		ThickLines thickLines = new ThickLines();
+		thickLines.setForms(forms);
+
+		BufferedImage image = new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = image.createGraphics();
+		ViewTransform view = new ViewTransform();
+		view.scaleX = view.scaleY = 6;
+		view.translateX = view.translateY = 50;
+		ViewTransform zoomed = new ViewTransform();
+		zoomed.scaleX = zoomed.scaleY = 6.5;
+		zoomed.translateX = zoomed.translateY = 40;
+
+		runner.run("ThickLines.draw              [same zoom]", () -> { thickLines.draw(g2, view); return g2; });
+		boolean[] toggle = new boolean[1];
+		runner.run("ThickLines.draw              [changing zoom]", () -> { toggle[0] = !toggle[0]; thickLines.draw(g2, toggle[0] ? view : zoomed); return g2; });
+		Form[][] copies = { copy(forms, factory), copy(forms, factory) };
+		runner.run("ThickLines.setForms+draw     [new forms]", () -> { toggle[0] = !toggle[0]; thickLines.setForms(copies[toggle[0] ? 0 : 1]); thickLines.draw(g2, view); return g2; });
+
+		thickLines.setForms(forms);
+		thickLines.drawFrame(g2, 0, 0, 800, 800, view);
+		runner.run("ThickLines.drawFrame         [unchanged]", () -> { thickLines.drawFrame(g2, 0, 0, 800, 800, view); return g2; });
+		ViewTransform panned = new ViewTransform();
+		panned.set(view);
+		runner.run("ThickLines.drawPreview       [panning]", () -> { panned.translateX = view.translateX + (panned.translateX-view.translateX+7)%50; thickLines.drawPreview(g2, 0, 0, 800, 800, panned); return g2; });
+		runner.run("ThickLines.drawPreview       [zooming]", () -> { toggle[0] = !toggle[0]; thickLines.drawPreview(g2, 0, 0, 800, 800, toggle[0] ? view : zoomed); return g2; });
+		ViewTransform far = new ViewTransform();
+		far.scaleX = far.scaleY = 30;
+		runner.run("ThickLines.drawPreview       [zoomed far in]", () -> { thickLines.drawPreview(g2, 0, 0, 800, 800, far); return g2; });
+		g2.dispose();
+	}
+
+	private static void runFontLint(BenchmarkRunner runner, Form.Factory factory, File tempDir) throws IOException {
+		HashMap<Character, Form[]> font = createSyntheticFont(50000, factory);
+		File binaryFile = new File(tempDir, "lint."+BinaryFontFormat.EXTENSION);
+		BinaryFontFormat.write(binaryFile, font);
+		GlyphSource source = BinaryFontFormat.open(binaryFile);
+		CharRaster.GlyphProvider mapped = new CharRaster.GlyphProvider() {
+			@Override public boolean hasGlyph(char ch) { return source.contains(ch); }
+			@Override public Form[] getForms(Character ch) { return source.decode(ch, factory); }
+			@Override public char[] getChars() { return source.getChars(); }
+		};
+		Rectangle2D bounds = new Rectangle2D.Double(-100,-50,400,200);
+		char[] chars = source.getChars();
+
+		runner.run("FontLint.checkAll            [50000 glyphs]", () -> FontLint.checkAll(mapped, chars, bounds, ForkJoinPool.commonPool()));
+		ForkJoinPool single = new ForkJoinPool(1);
+		runner.run("FontLint.checkAll            [50000 glyphs, 1 thread]", () -> FontLint.checkAll(mapped, chars, bounds, single));
+		single.shutdown();
+		Form[] forms = font.get('A');
+		runner.run("FontLint.check               [1 glyph]", () -> FontLint.check(forms, bounds));
+	}
+
+	private static void runFormIndex(BenchmarkRunner runner, Form.Factory factory) {
+		HashMap<Character, Form[]> font = createSyntheticFont(50000, factory);
+		char[] chars = new char[font.size()];
+		int n = 0;
+		for (Character ch : font.keySet()) chars[n++] = ch;
+		Arrays.sort(chars);
+		// all glyphs share their first form (worst case for updates and queries)
+		for (int i=1; i<chars.length; i++)
+			font.get(chars[i])[0] = copy(font.get(chars[i-1]), factory)[0];
+		CharRaster.GlyphProvider provider = new CharRaster.GlyphProvider() {
+			@Override public boolean hasGlyph(char ch) { return font.containsKey(ch); }
+			@Override public Form[] getForms(Character ch) { return font.get(ch); }
+			@Override public char[] getChars() { return chars; }
+		};
+
+		FormIndex index = new FormIndex();
+		runner.run("FormIndex.build              [50000 glyphs]", () -> { index.build(provider); return index; });
+		Form[] forms = font.get('A');
+		Form[] changed = copy(forms, factory);
+		runner.run("FormIndex.update             [1 glyph]", () -> { index.update('A', changed); index.update('A', forms); return index; });
+		runner.run("FormIndex.findSimilar        [1 glyph]", () -> index.findSimilar('A', 10));
+	}
+
+	private static void runGlyphMetrics(BenchmarkRunner runner, Form.Factory factory) {
+		HashMap<Character, Form[]> font = createSyntheticFont(50000, factory);
+		char[] chars = new char[font.size()];
+		int n = 0;
+		for (Character ch : font.keySet()) chars[n++] = ch;
+		Arrays.sort(chars);
+		CharRaster.GlyphProvider provider = new CharRaster.GlyphProvider() {
+			@Override public boolean hasGlyph(char ch) { return font.containsKey(ch); }
+			@Override public Form[] getForms(Character ch) { return font.get(ch); }
+			@Override public char[] getChars() { return chars; }
+		};
+
+		HashMap<Character, GlyphMetrics> known = new HashMap<>();
+		runner.run("GlyphMetrics.computeAll      [50000 glyphs]", () -> GlyphMetricsCache.computeAll(provider, chars, known, 20, ForkJoinPool.commonPool()));
+		GlyphMetrics[] metrics = GlyphMetricsCache.computeAll(provider, chars, known, 20, ForkJoinPool.commonPool());
+		runner.run("GlyphMetrics.computeKerning  [1024 x 1024 pairs]", () -> GlyphMetricsCache.computeKerning(chars, metrics, ForkJoinPool.commonPool()));
+		Form[] forms = font.get('A');
+		runner.run("GlyphMetrics.compute         [1 glyph]", () -> GlyphMetrics.compute(forms, 20));
+	}
+
+	private static void runGlyphTransform(BenchmarkRunner runner, Form.Factory factory) {
+		HashMap<Character, Form[]> font = createSyntheticFont(50000, factory);
+		Form[][] glyphs = font.values().toArray(new Form[font.size()][]);
+		GlyphTransform slant = new GlyphTransform(12, 0.9, 1, 0, 0, new double[] { 0,40,100 }, new double[] { 0,45,100 }, 0);
+		GlyphTransform bold  = new GlyphTransform(0, 1, 1, 0, 0, new double[0], new double[0], 1);
+		runner.run("GlyphTransform.applyAll      [50000 glyphs, slant+remap]", () -> GlyphTransform.applyAll(glyphs, slant, ForkJoinPool.commonPool()));
+		runner.run("GlyphTransform.applyAll      [50000 glyphs, weight]"     , () -> GlyphTransform.applyAll(glyphs, bold , ForkJoinPool.commonPool()));
+	}
+
+	private static void runPackedGlyphStore(BenchmarkRunner runner, Form.Factory factory) {
+		HashMap<Character, Form[]> font = createSyntheticFont(50000, factory);
+		Supplier<PackedGlyphStore> pack = () -> {
+			PackedGlyphStore.Builder builder = new PackedGlyphStore.Builder();
+			for (Map.Entry<Character, Form[]> entry : font.entrySet())
+				builder.add(entry.getKey(), entry.getValue());
+			return builder.build();
+		};
+		runner.run("PackedGlyphStore.build       [50000 glyphs]", pack::get);
+		PackedGlyphStore store = pack.get();
+		char[] chars = store.getChars();
+		runner.run("PackedGlyphStore.decode      [50000 glyphs]", () -> {
+			int forms = 0;
+			for (char ch : chars) forms += store.decode(ch, factory).length;
+			return forms;
+		});
+	}
+
+	private static Form[] copy(Form[] forms, Form.Factory factory) {
+		Form[] copy = new Form[forms.length];
+		for (int i=0; i<forms.length; i++)
+			copy[i] = Forms.create(Forms.Type.of(forms[i]), Forms.getValues(forms[i]).clone(), factory);
+		return copy;
+	}
+}
@@ -1,53 +1,60 @@
 package net.schwarzbaer.java.tools.alphachareditor;
 
-import java.awt.BasicStroke;
 import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Component;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.Point;
-import java.awt.Rectangle;
-import java.awt.RenderingHints;
 import java.awt.event.ActionListener;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.geom.Rectangle2D;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import javax.swing.BorderFactory;
+import javax.swing.ButtonGroup;
+import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComboBox;
 import javax.swing.JComponent;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.JPopupMenu;
+import javax.swing.JProgressBar;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
-import net.schwarzbaer.java.lib.gui.Canvas;
 import net.schwarzbaer.java.lib.gui.FileChooser;
 import net.schwarzbaer.java.lib.gui.StandardMainWindow;
-import net.schwarzbaer.java.lib.gui.ZoomableCanvas;
 import net.schwarzbaer.java.lib.image.linegeometry.AlphaCharIO;
 import net.schwarzbaer.java.lib.image.linegeometry.Form;
 import net.schwarzbaer.java.lib.system.Settings.DefaultAppSettings;
-import net.schwarzbaer.java.tools.lineeditor.EditorViewFeature;
 import net.schwarzbaer.java.tools.lineeditor.LineEditor;
 import net.schwarzbaer.java.tools.lineeditor.LineEditor.GuideLinesStorage;
 
@@ -58,12 +65,66 @@ public class AlphaCharEditor {
 	}
 
 	public static void main(String[] args) {
+		if (args.length>0 && args[0].equals(BatchRasterizer.COMMAND_LINE_SWITCH)) {
+			BatchRasterizer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length>0 && args[0].equals(OutlineExporter.COMMAND_LINE_SWITCH)) {
+			OutlineExporter.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length>0 && args[0].equals(RenderServer.COMMAND_LINE_SWITCH)) {
+			RenderServer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		
 		try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); }
 		catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException e) {}
 		
 		//testAlphaCharIO();
 		
-		new AlphaCharEditor().readLastProject();
+		// the window is built, while the last project is read, the form factory is warmed up and the font is parsed
+		long start = System.nanoTime();
+		File lastProjectFile = settings.getFile(AppSettings.ValueKey.Project, null);
+		CompletableFuture<Long> formFactory = CompletableFuture.supplyAsync(() -> {
+			long factoryStart = System.nanoTime();
+			LineEditor.createFormFactory();
+			STARTUP_FACTORY_TIME.stop(factoryStart);
+			return System.nanoTime()-factoryStart;
+		});
+		CompletableFuture<StartupProject> lastProject = CompletableFuture.supplyAsync(() -> readStartupProject(lastProjectFile));
+		
+		SwingUtilities.invokeLater(() -> {
+			AlphaCharEditor editor = new AlphaCharEditor();
+			long windowTime = System.nanoTime()-start;
+			STARTUP_WINDOW_TIME.stop(start);
+			lastProject.whenComplete((startupProject, error) -> SwingUtilities.invokeLater(() -> {
+				if (error!=null) error.printStackTrace();
+				editor.startupProjectRead(startupProject);
+				long projectTime = System.nanoTime()-start;
+				STARTUP_PROJECT_TIME.stop(start);
+				formFactory.thenAccept(factoryTime -> SwingUtilities.invokeLater(() ->
+					editor.statusBar.showMessage(String.format("Started in %1.0f ms (window %1.0f ms, form factory %1.0f ms)", projectTime/1e6, windowTime/1e6, factoryTime/1e6))
+				));
+			}));
+		});
+	}
+	
+	private record StartupProject(Project project, FontLoader fontLoader) {}
+	
+	/**
+	 * Reads the last project and starts loading its font. Runs in the background at startup.
+	 * @return the project or <code>null</code>, if the user has to decide about recovering unsaved changes first
+	 */
+	private static StartupProject readStartupProject(File lastProjectFile) {
+		if (AutoSave.hasRecoverableSnapshot(lastProjectFile)) return null;
+		Project project = lastProjectFile==null ? Project.createDefaultProject() : Project.readFromFile(lastProjectFile);
+		FontLoader fontLoader = null;
+		if (project.hasFontSource()) {
+			fontLoader = new FontLoader(project.font.file, settings.getBool(AppSettings.ValueKey.CompactGlyphStore, false));
+			fontLoader.execute();
+		}
+		return new StartupProject(project, fontLoader);
 	}
 
 	@SuppressWarnings("unused")
@@ -83,32 +144,93 @@ public class AlphaCharEditor {
 	}
 
 	private final static AppSettings settings = new AppSettings();
+	private static final int DEFAULT_UNDO_MEMORY_BUDGET_MB = 32;
+	private static final int MAX_SIMILAR_GLYPHS = 10;
+	private static final int MAX_LISTED_CHARS = 60;
+	private static final double[] DEFAULT_HORIZONTAL_GUIDE_LINES = { 0,40,100 };
+	private static final Metrics.Metric SELECT_CHAR_TIME = Metrics.timer("AlphaCharEditor.setSelectedChar");
+	private static final Metrics.Metric GLYPH_FORMS      = Metrics.value("Glyph.forms");
+	private static final Metrics.Metric PROJECT_READ_TIME  = Metrics.timer("Project.readFromFile");
+	private static final Metrics.Metric PROJECT_WRITE_TIME = Metrics.timer("Project.writeToFile");
+	private static final Metrics.Metric STARTUP_WINDOW_TIME  = Metrics.timer("Startup.window");
+	private static final Metrics.Metric STARTUP_PROJECT_TIME = Metrics.timer("Startup.project");
+	private static final Metrics.Metric STARTUP_FACTORY_TIME = Metrics.timer("Startup.formFactory");
+	/** model area of the editor view; coordinates far outside of it are reported by {@link FontLint} */
+	private static final Rectangle2D EDITOR_AREA = new Rectangle2D.Double(-100,-50,400,200);
+	private static final Metrics.Metric GLYPH_STORE_FORMS  = Metrics.value("GlyphStore.forms");
+	private static final Metrics.Metric GLYPH_STORE_GLYPHS = Metrics.value("GlyphStore.glyphs");
 	private final LineEditor lineEditor;
+	private final ThickLines thickLines;
+	private final FormHighlighter formHighlighter;
 	private final StandardMainWindow mainWindow;
 	private final FileChooser projectFileChooser;
+	private final FileChooser projectBundleFileChooser;
 	private final FileChooser fontFileChooser;
+	private final FileChooser binaryFontFileChooser;
+	private final FileChooser svgFontFileChooser;
 	private final JPanel leftPanel;
 	private final CharRaster charRaster;
+	private final StatusBar statusBar;
+	private final AutoSave autoSave;
+	private final TextPreview textPreview;
+	private final UndoHistory undoHistory;
+	private final FontLint fontLint;
+	private final FormIndex formIndex;
+	private final GlyphMetricsCache metricsCache;
+	private final FontWatcher fontWatcher;
+	private JMenuItem miUndo;
+	private JMenuItem miRedo;
+	private JMenu fontSwitchMenu;
+	private JMenuBar menuBar;
 	
+	/** <code>null</code> until the project is read at startup */
 	private Project project;
 	private JComponent valuePanel;
 	private Character selectedChar;
+	private FontLoader fontLoader;
+	private SwingWorker<Void,Void> exportWorker;
+	private boolean saveFontIncrementally;
 
 	private AlphaCharEditor() {
-		project = Project.createDefaultProject();
+		project = null;
 		
 		projectFileChooser = new FileChooser("Project-File", "project");
+		projectBundleFileChooser = new FileChooser("Project Bundle", ProjectBundle.EXTENSION);
 		fontFileChooser = new FileChooser("Font-File", AlphaCharIO.ALPHACHARFONT_EXTENSION);
+		binaryFontFileChooser = new FileChooser("Binary Font-File", BinaryFontFormat.EXTENSION);
+		svgFontFileChooser = new FileChooser("SVG-Font", OutlineExporter.SVG_EXTENSION);
 		
 		mainWindow = new StandardMainWindow("AlphaChar Editor");
 		leftPanel = new JPanel(new BorderLayout(3,3));
+		statusBar = new StatusBar();
+		fontLoader = null;
+		exportWorker = null;
+		saveFontIncrementally = true;
+		textPreview = new TextPreview();
+		undoHistory = new UndoHistory(settings.getInt(AppSettings.ValueKey.UndoMemoryBudget_MB, DEFAULT_UNDO_MEMORY_BUDGET_MB)*1024L*1024L);
+		fontLint = new FontLint(EDITOR_AREA, this::fontCheckFinished);
+		formIndex = new FormIndex();
+		metricsCache = new GlyphMetricsCache(textPreview.getLineWidth());
+		fontWatcher = new FontWatcher(new FontWatcher.Listener() {
+			@Override public void glyphsChanged(File fontFile, Map<Character, Form[]> glyphs) { fontFileChanged(fontFile, glyphs); }
+			@Override public void projectFileChanged(File projectFile) { AlphaCharEditor.this.projectFileChanged(projectFile); }
+			@Override public void watchFailed(String message) { statusBar.showMessage(message); }
+		});
+		fontWatcher.setEnabled(settings.getBool(AppSettings.ValueKey.WatchFiles, true));
+		autoSave = new AutoSave(2000, 30000, new AutoSave.SnapshotSource() {
+			@Override public File getSnapshotFile() { return AutoSave.getSnapshotFile(project.projectFile); }
+			@Override public AutoSave.Snapshot createSnapshot() { return project.createSnapshot(); }
+			@Override public void snapshotFailed(String message) { statusBar.showMessage(message); }
+		});
 		
 //		min.latitude_y  =  -50.0;
 //		min.longitude_x = -100.0;
 //		max.latitude_y  =  150.0;
 //		max.longitude_x =  300.0;
+		thickLines = new ThickLines();
+		formHighlighter = new FormHighlighter(this::showGlyphsWithForm);
 		lineEditor = new LineEditor(
-				new Rectangle2D.Double(-100,-50,400,200),
+				EDITOR_AREA.getBounds2D(),
 				new LineEditor.Context() {
 					@Override public void switchOptionsPanel(JComponent panel)
 					{
@@ -122,25 +244,46 @@ public class AlphaCharEditor {
 					{
 						return selectedChar!=null;
 					}
-					@Override public void guideLinesChanged(LineEditor.GuideLinesChangedEvent e) {}
+					@Override public void guideLinesChanged(LineEditor.GuideLinesChangedEvent e) {
+						if (project==null) return;
+						project.settingsChanged = true;
+						autoSave.changed();
+					}
 					@Override public void formsChanged(LineEditor.FormsChangedEvent e) {
 						Form[] newFormsList = e.newFormsList();
 						if (newFormsList!=null)
-						{
 							project.font.put(selectedChar, newFormsList);
-							charRaster.updateCharList(project.font,selectedChar);
-						}
+						project.font.changedGlyphs.add(selectedChar);
+						if (undoHistory.glyphChanged(selectedChar, project.getForms(selectedChar)))
+							updateUndoMenuItems();
+						thickLines.setForms(project.getForms(selectedChar));
+						formHighlighter.setForms(project.getForms(selectedChar));
+						fontLint.checkGlyph(selectedChar, project.getForms(selectedChar));
+						formIndex.update(selectedChar, project.getForms(selectedChar));
+						metricsCache.update(selectedChar, project.getForms(selectedChar));
+						charRaster.updateChar(selectedChar);
+						textPreview.updateChar(selectedChar);
+						autoSave.changed();
 					}
 				},
-				new ThickLines()
+				new EditorViewFeatures(thickLines, formHighlighter)
 		);
 		valuePanel = lineEditor.getInitialOptionsPanel();
 		
 		selectedChar = null;
 		charRaster = new CharRaster(this::setSelectedChar);
+		charRaster.setMarkers(fontLint);
+		JComboBox<CharRaster.CharBlock> charBlockSelector = new JComboBox<>(CharRaster.CharBlock.getAllBlocks());
+		charBlockSelector.setSelectedItem(charRaster.getBlock());
+		charBlockSelector.addActionListener(e->{
+			CharRaster.CharBlock block = (CharRaster.CharBlock) charBlockSelector.getSelectedItem();
+			if (block!=null) charRaster.setBlock(block);
+		});
+		JScrollPane charRasterScrollPane = new JScrollPane(charRaster, JScrollPane.VERTICAL_SCROLLBAR_ALWAYS, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
 		JPanel charRasterPanel = new JPanel(new BorderLayout(3,3));
 		charRasterPanel.setBorder(BorderFactory.createTitledBorder("Characters"));
-		charRasterPanel.add(charRaster,BorderLayout.CENTER);
+		charRasterPanel.add(charBlockSelector,BorderLayout.NORTH);
+		charRasterPanel.add(charRasterScrollPane,BorderLayout.CENTER);
 		
 		leftPanel.add(charRasterPanel,BorderLayout.NORTH);
 		leftPanel.add(valuePanel,BorderLayout.CENTER);
@@ -149,33 +292,332 @@ public class AlphaCharEditor {
 		editorViewPanel.setBorder(BorderFactory.createTitledBorder("Geometry"));
 		editorViewPanel.add(lineEditor.getEditorView(),BorderLayout.CENTER);
 		
+		textPreview.setBorder(BorderFactory.createTitledBorder("Preview"));
+		JSplitPane editorSplitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, true, editorViewPanel, textPreview);
+		editorSplitPane.setResizeWeight(0.75);
+		
 		JPanel contentPane = new JPanel(new BorderLayout(3,3));
 		contentPane.setBorder(BorderFactory.createEmptyBorder(3,3,3,3));
 		contentPane.add(leftPanel,BorderLayout.WEST);
-		contentPane.add(editorViewPanel,BorderLayout.CENTER);
+		contentPane.add(editorSplitPane,BorderLayout.CENTER);
+		contentPane.add(statusBar,BorderLayout.SOUTH);
 		
-		mainWindow.startGUI(contentPane, createMenuBar());
+		menuBar = createMenuBar();
+		setMenusEnabled(false);
+		mainWindow.startGUI(contentPane, menuBar);
 		settings.registerAppWindow(mainWindow);
 		
 		lineEditor.init();
-		updateAfterProjectLoad();
+	}
+
+	private void setMenusEnabled(boolean enabled) {
+		for (int i=0; i<menuBar.getMenuCount(); i++)
+			menuBar.getMenu(i).setEnabled(enabled);
+	}
+
+	private void startupProjectRead(StartupProject startupProject) {
+		if (startupProject==null)
+			readLastProject();
+		else {
+			project = startupProject.project;
+			updateAfterProjectLoad();
+			startFontLoad(startupProject.fontLoader);
+		}
+		setMenusEnabled(true);
 	}
 
 	private void setSelectedChar(Character ch) {
+		if (project==null) return;
+		long start = System.nanoTime();
 		selectedChar=ch;
-		Form[] forms = project.font==null ? null : project.font.get(selectedChar);
-		System.out.printf("SelectedChar: %s %s%n", selectedChar==null ? "none" : "'"+selectedChar+"'", forms==null ? "--" : "["+forms.length+"]");
+		Form[] forms = project.getEditableForms(selectedChar);
+		undoHistory.setCurrentGlyph(selectedChar, forms);
+		showForms(forms);
+		if (selectedChar!=null && fontLint.hasMarker(selectedChar))
+			statusBar.showMessage(String.format("'%s': %s", selectedChar, fontLint.getMarkerText(selectedChar)));
+		SELECT_CHAR_TIME.stop(start);
+		if (forms!=null) GLYPH_FORMS.record(forms.length);
+	}
+
+	private void undo() {
+		applyHistoryEdit(undoHistory.undo(), true);
+	}
+
+	private void redo() {
+		applyHistoryEdit(undoHistory.redo(), false);
+	}
+
+	private void applyHistoryEdit(UndoHistory.Edit edit, boolean undo) {
+		updateUndoMenuItems();
+		if (edit==null) return;
+		Form.Factory factory = LineEditor.createFormFactory();
+		boolean selectedCharChanged = false;
+		for (UndoHistory.Edit glyphEdit : edit.getGlyphEdits()) {
+			GlyphStore.GlyphSnapshot glyph = undo ? glyphEdit.before : glyphEdit.getAfter();
+			Form[] forms = glyph.createForms(factory);
+			project.font.put(glyphEdit.ch, forms);
+			project.font.changedGlyphs.add(glyphEdit.ch);
+			fontLint.checkGlyph(glyphEdit.ch, forms);
+			formIndex.update(glyphEdit.ch, forms);
+			metricsCache.update(glyphEdit.ch, forms);
+			charRaster.updateChar(glyphEdit.ch);
+			textPreview.updateChar(glyphEdit.ch);
+			if (selectedChar!=null && selectedChar.charValue()==glyphEdit.ch) {
+				showForms(forms);
+				selectedCharChanged = true;
+			}
+		}
+		autoSave.changed();
+		if (edit.isGroup())
+			// the selection stays, so the current glyph is the base of the next edit
+			undoHistory.setCurrentGlyph(selectedChar, project.getForms(selectedChar));
+		else if (!selectedCharChanged)
+			charRaster.setSelectedChar(edit.ch);
+	}
+
+	private void updateUndoMenuItems() {
+		if (miUndo==null || miRedo==null) return;
+		miUndo.setEnabled(undoHistory.canUndo());
+		miRedo.setEnabled(undoHistory.canRedo());
+	}
+
+	private void setUndoMemoryBudget() {
+		String message = String.format("Memory budget of undo history in MB:%n(currently used: %1.1f MB by %d steps)", undoHistory.getUsedBytes()/1024.0/1024.0, undoHistory.getUndoCount());
+		String result = JOptionPane.showInputDialog(mainWindow, message, undoHistory.getBudget()/1024/1024);
+		if (result==null) return;
+		try {
+			int budget_MB = Integer.parseInt(result.trim());
+			if (budget_MB<1) throw new NumberFormatException();
+			undoHistory.setBudget(budget_MB*1024L*1024L);
+			settings.putInt(AppSettings.ValueKey.UndoMemoryBudget_MB, budget_MB);
+			updateUndoMenuItems();
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(mainWindow, "Error: Memory budget has to be a positive integer.", "Error", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	private FormIndex getFormIndex() {
+		if (!formIndex.isBuilt())
+			formIndex.build(project.font);
+		return formIndex;
+	}
+
+	private void showGlyphsWithForm(int formIndex) {
+		Form[] forms = project.getForms(selectedChar);
+		if (forms==null || formIndex>=forms.length) return;
+		char[] chars = getFormIndex().getGlyphsWith(forms[formIndex]);
+		statusBar.showMessage(String.format("Form %d of '%s' is used by %d character(s): %s", formIndex+1, selectedChar, chars.length, toCharList(chars)));
+	}
+
+	private void findSimilarGlyphs() {
+		if (selectedChar==null) return;
+		FormIndex.Match[] matches = getFormIndex().findSimilar(selectedChar, MAX_SIMILAR_GLYPHS);
+		if (matches.length==0)
+			statusBar.showMessage(String.format("'%s' shares no forms with other characters", selectedChar));
+		else
+			statusBar.showMessage(String.format("Characters similar to '%s': %s", selectedChar, String.join(", ", Arrays.stream(matches).map(FormIndex.Match::toString).toArray(String[]::new))));
+	}
+
+	/**
+	 * Applies the last edit, if it has changed a single form, to all other glyphs, that contain the same form.
+	 */
+	private void applyLastEditToSharedForms() {
+		UndoHistory.Edit edit = undoHistory.getLastEdit();
+		if (edit==null || edit.isGroup()) {
+			statusBar.showMessage("There is no edit of a single character to apply");
+			return;
+		}
+		Form.Factory factory = LineEditor.createFormFactory();
+		Form[] before = edit.before.createForms(factory);
+		Form[] after = edit.getAfter().createForms(factory);
+		int changed = -1;
+		if (before.length==after.length)
+			for (int i=0; i<before.length; i++)
+				if (!FormIndex.isSameForm(before[i], after[i])) {
+					if (changed>=0) { changed = -1; break; }
+					changed = i;
+				}
+		if (changed<0) {
+			statusBar.showMessage(String.format("The last edit of '%s' has to change exactly one form", edit.ch));
+			return;
+		}
+		Form oldForm = before[changed];
+		Form newForm = after[changed];
+		char[] chars = getFormIndex().getGlyphsWith(oldForm);
+		chars = new String(chars).replace(String.valueOf(edit.ch), "").toCharArray();
+		if (chars.length==0) {
+			statusBar.showMessage(String.format("No other character contains the changed form of '%s'", edit.ch));
+			return;
+		}
+		String message = String.format("Apply the change of form %d of '%s' to %d other character(s)?%n%s", changed+1, edit.ch, chars.length, toCharList(chars));
+		if (JOptionPane.showConfirmDialog(mainWindow, message, "Apply Edit", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE)!=JOptionPane.YES_OPTION)
+			return;
+
+		Forms.Type newType = Forms.Type.of(newForm);
+		double[] newValues = Forms.getValues(newForm);
+		Form[][] oldGlyphs = new Form[chars.length][];
+		Form[][] newGlyphs = new Form[chars.length][];
+		for (int j=0; j<chars.length; j++) {
+			char ch = chars[j];
+			Form[] forms = oldGlyphs[j] = project.getForms(ch);
+			Form[] newForms = newGlyphs[j] = forms.clone();
+			for (int i=0; i<newForms.length; i++)
+				if (FormIndex.isSameForm(newForms[i], oldForm))
+					newForms[i] = Forms.create(newType, newValues.clone(), factory);
+			project.font.put(ch, newForms);
+			project.font.changedGlyphs.add(ch);
+			fontLint.checkGlyph(ch, newForms);
+			formIndex.update(ch, newForms);
+			metricsCache.update(ch, newForms);
+			charRaster.updateChar(ch);
+			textPreview.updateChar(ch);
+			if (selectedChar!=null && selectedChar.charValue()==ch)
+				showForms(newForms);
+		}
+		undoHistory.recordEdits(chars, oldGlyphs, newGlyphs);
+		updateUndoMenuItems();
+		autoSave.changed();
+		statusBar.showMessage(String.format("Change of '%s' applied to %d character(s)", edit.ch, chars.length));
+	}
+
+	/**
+	 * In compact mode text fonts are packed into a {@link PackedGlyphStore}, when they are loaded.
+	 * Switching it on packs the active font at once, switching it off takes effect, when a font is loaded next.
+	 */
+	private void setCompactGlyphStore(boolean compact) {
+		settings.putBool(AppSettings.ValueKey.CompactGlyphStore, compact);
+		if (!compact) {
+			statusBar.showMessage("Fonts will be loaded without compact glyph storage");
+			return;
+		}
+		if (project==null || fontLoader!=null || !project.font.complete) return;
+		long start = System.nanoTime();
+		PackedGlyphStore store = project.font.pack(selectedChar);
+		if (store!=null)
+			statusBar.showMessage(String.format("%d characters with %d forms packed into %1.1f kB in %1.0f ms", store.size(), store.getFormCount(), store.getSize()/1024.0, (System.nanoTime()-start)/1e6));
+	}
+
+	private void transformFont() {
+		if (fontLoader!=null || exportWorker!=null || !project.font.complete) {
+			statusBar.showMessage("All characters can be transformed, when the font is loaded completely and no export is running");
+			return;
+		}
+		TransformDialog[] dialog = new TransformDialog[1];
+		dialog[0] = new TransformDialog(mainWindow, DEFAULT_HORIZONTAL_GUIDE_LINES, new TransformDialog.Listener() {
+			@Override public void previewTransform(GlyphTransform transform) { showTransformPreview(transform); }
+			@Override public void applyTransform(GlyphTransform transform) { startTransform(transform, dialog[0]); }
+			@Override public void cancelTransform() {
+				cancelExport();
+				showTransformPreview(null);
+			}
+		});
+		dialog[0].setVisible(true);
+	}
+
+	/**
+	 * Shows the transformed glyphs instead of the glyphs of the font. Only shown glyphs (visible fields of the char raster, preview text, current glyph) are transformed.
+	 * @param transform transform to preview or <code>null</code> to show the font again
+	 */
+	private void showTransformPreview(GlyphTransform transform) {
+		CharRaster.GlyphProvider font = transform==null || transform.isIdentity() ? project : new GlyphTransform.Preview(project, transform);
+		charRaster.invalidateThumbnails();
+		charRaster.updateCharList(font, selectedChar);
+		textPreview.setGlyphProvider(font);
+		if (selectedChar!=null) showForms(font==project ? project.getEditableForms(selectedChar) : font.getForms(selectedChar));
+	}
+
+	/**
+	 * Transforms all glyphs of the active font in parallel and applies them as one undoable step.
+	 */
+	private void startTransform(GlyphTransform transform, TransformDialog dialog) {
+		ProjectFont font = project.font;
+		CharRaster.GlyphProvider view = font.createView();
+		char[] chars = view.getChars();
+		long start = System.nanoTime();
+		exportWorker = new SwingWorker<>() {
+			private Form[][] before = null;
+			private Form[][] after = null;
+			@Override protected Void doInBackground() throws Exception {
+				before = new Form[chars.length][];
+				for (int i=0; i<chars.length; i++)
+					before[i] = view.getForms(chars[i]);
+				after = GlyphTransform.applyAll(before, transform, ForkJoinPool.commonPool());
+				return null;
+			}
+			@Override protected void done() {
+				if (exportWorker!=this) return;
+				exportWorker = null;
+				if (isCancelled()) return;
+				dialog.dispose();
+				try {
+					get();
+				} catch (InterruptedException | ExecutionException ex) {
+					ex.printStackTrace();
+					showTransformPreview(null);
+					statusBar.showMessage("Transform failed");
+					String message = String.format("Can't transform characters:%n%s", ex.getCause()!=null ? ex.getCause().getMessage() : ex.getMessage());
+					JOptionPane.showMessageDialog(mainWindow, message, "Error", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				if (font!=project.font) return;
+				for (int i=0; i<chars.length; i++) {
+					font.put(chars[i], after[i]);
+					font.changedGlyphs.add(chars[i]);
+				}
+				undoHistory.recordEdits(chars, before, after);
+				updateUndoMenuItems();
+				if (settings.getBool(AppSettings.ValueKey.CompactGlyphStore, false)) font.pack(selectedChar);
+				formIndex.clear();
+				metricsCache.clear();
+				showTransformPreview(null);
+				startFontCheck();
+				autoSave.changed();
+				statusBar.showMessage(String.format("%d characters transformed in %1.0f ms", chars.length, (System.nanoTime()-start)/1e6));
+			}
+		};
+		exportWorker.execute();
+	}
+
+	private static String toCharList(char[] chars) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<chars.length && i<MAX_LISTED_CHARS; i++)
+			sb.append(chars[i]);
+		if (chars.length>MAX_LISTED_CHARS) sb.append(" ...");
+		return sb.toString();
+	}
+
+	private void showForms(Form[] forms) {
+		thickLines.setForms(forms);
+		formHighlighter.setForms(forms);
 		lineEditor.setForms(forms);
 	}
 
-	private AlphaCharEditor readLastProject() {
+	private void readLastProject() {
 		File lastProjectFile = settings.getFile(AppSettings.ValueKey.Project, null);
-		if (lastProjectFile!=null) project = Project.readFromFile(lastProjectFile);
+		if (AutoSave.hasRecoverableSnapshot(lastProjectFile)) {
+			File snapshotFile = AutoSave.getSnapshotFile(lastProjectFile);
+			String message = String.format("There are unsaved changes from %1$tF %1$tT.%nDo you want to recover them?", snapshotFile.lastModified());
+			int result = JOptionPane.showConfirmDialog(mainWindow, message, "Recover Unsaved Changes", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+			if (result==JOptionPane.YES_OPTION) {
+				Project recovered = Project.readFromSnapshot(snapshotFile, lastProjectFile);
+				if (recovered!=null) {
+					project = recovered;
+					updateAfterProjectLoad();
+					startFontLoad();
+					autoSave.changed();
+					return;
+				}
+			} else
+				autoSave.discard(lastProjectFile);
+		}
+		project = lastProjectFile!=null ? Project.readFromFile(lastProjectFile) : Project.createDefaultProject();
 		updateAfterProjectLoad();
-		return this;
+		startFontLoad();
 	}
 	
 	void createNewProject() {
+		autoSave.flush();
+		cancelFontLoad();
 		project = Project.createDefaultProject();
 		settings.remove(AppSettings.ValueKey.Project);
 		updateAfterProjectLoad();
@@ -188,28 +630,396 @@ public class AlphaCharEditor {
 
 	void loadProject(File file) {
 		if (file==null) return;
+		autoSave.flush();
+		cancelFontLoad();
 		project = Project.readFromFile(file);
 		settings.putFile(AppSettings.ValueKey.Project, file);
 		updateAfterProjectLoad();
+		startFontLoad();
+	}
+	
+	void loadDefaultFont() {
+		cancelFontLoad();
+		project.setDefaultFont();
+		updateAfterFontLoad();
+		startFontLoad();
+	}
+	
+	void reloadFont() {
+		if (!project.hasFontSource()) return;
+		cancelFontLoad();
+		project.clearFont();
+		updateAfterFontLoad();
+		startFontLoad();
+	}
+	
+	void loadFont(File file) {
+		if (file==null) return;
+		cancelFontLoad();
+		project.setFontFile(file);
+		updateAfterFontLoad();
+		startFontLoad();
+	}
+	
+	void addFont(File file) {
+		if (file==null) return;
+		cancelFontLoad();
+		project.addFont(new ProjectFont(file, false));
+		autoSave.changed();
+		updateAfterFontSwitch(selectedChar);
+		startFontLoad();
+	}
+	
+	void addNewFont() {
+		cancelFontLoad();
+		project.addFont(new ProjectFont(null, false));
+		autoSave.changed();
+		updateAfterFontSwitch(selectedChar);
+	}
+	
+	void removeFont() {
+		if (project.getFonts().size()<2) {
+			statusBar.showMessage("The only font of a project can't be removed");
+			return;
+		}
+		if (project.font.hasChanges()) {
+			String message = String.format("Font \"%s\" has unsaved changes.\r\nDo you want to remove it anyway?", project.font.getName());
+			if (JOptionPane.showConfirmDialog(mainWindow, message, "Unsaved Changes", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) return;
+		}
+		cancelFontLoad();
+		ProjectFont removedFont = project.font;
+		project.removeActiveFont();
+		undoHistory.removeFont(removedFont);
+		autoSave.changed();
+		updateAfterFontSwitch(selectedChar);
+		if (!project.font.complete) startFontLoad();
+	}
+	
+	void switchFont(ProjectFont font) {
+		if (font==project.font) return;
+		cancelFontLoad();
+		project.setActiveFont(font);
+		autoSave.changed();
+		updateAfterFontSwitch(selectedChar);
+		if (!project.font.complete) startFontLoad();
+		else statusBar.showMessage(String.format("Font \"%s\": %d characters", font.getName(), project.getGlyphCount()));
+	}
+	
+	void saveFont(Supplier<File> getFile) {
+		if (saveFontIncrementally && project.canSaveFontIncrementally()) {
+			try {
+				Vector<Character> chars = new Vector<>(project.font.changedGlyphs);
+				int count = project.saveFontIncrementally();
+				fontWatcher.fontFileWritten(project.font.file, chars);
+				statusBar.showMessage(String.format("%d changed character(s) saved", count));
+			} catch (IOException ex) {
+				showSaveFontError(ex);
+			}
+			autoSave.saved();
+			return;
+		}
+		if (!confirmSaveOfIncompleteFont()) return;
+		try {
+			project.saveFont(getFile);
+			fontWatcher.fontFileWritten(project.font.file, null);
+		} catch (IOException ex) {
+			showSaveFontError(ex);
+		}
+		updateFontSwitcher();
+		updateWatchedFiles();
+		autoSave.saved();
+	}
+	
+	private void showSaveFontError(IOException ex) {
+		ex.printStackTrace();
+		String message = String.format("Can't save font:%n%s", ex.getMessage());
+		JOptionPane.showMessageDialog(mainWindow, message, "Error", JOptionPane.ERROR_MESSAGE);
+	}
+	
+	void compactFont() {
+		if (project.font.file==null || !FontJournal.getFile(project.font.file).isFile()) {
+			statusBar.showMessage("Font has no journal to compact");
+			return;
+		}
+		if (!project.font.complete) {
+			String message = "The font was not loaded completely.\r\nIt can't be compacted without losing characters.";
+			JOptionPane.showMessageDialog(mainWindow, message, "Incomplete Font", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		try {
+			project.saveFontAs(project.font.file);
+			fontWatcher.fontFileWritten(project.font.file, null);
+			statusBar.showMessage("Font compacted");
+		} catch (IOException ex) {
+			showSaveFontError(ex);
+		}
+		autoSave.saved();
+	}
+	
+	void saveFontAs(File file) {
+		if (file==null) return;
+		if (!confirmSaveOfIncompleteFont()) return;
+		try {
+			project.saveFontAs(file);
+			fontWatcher.fontFileWritten(file, null);
+		} catch (IOException ex) {
+			showSaveFontError(ex);
+		}
+		updateFontSwitcher();
+		updateWatchedFiles();
+		autoSave.saved();
+	}
+	
+	private boolean confirmSaveOfIncompleteFont() {
+		if (project.font.complete) return true;
+		String message = "The font was not loaded completely.\r\nAll characters, that were not loaded, will be missing in the saved font.\r\nDo you want to save it anyway?";
+		return JOptionPane.showConfirmDialog(mainWindow, message, "Incomplete Font", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) == JOptionPane.YES_OPTION;
+	}
+	
+	void convertFontFile(File sourceFile, FileChooser targetFileChooser) {
+		if (sourceFile==null) return;
+		File targetFile = getFileToSave(targetFileChooser);
+		if (targetFile==null) return;
+		try {
+			BinaryFontFormat.convert(sourceFile, targetFile, LineEditor.createFormFactory());
+			statusBar.showMessage(String.format("Font \"%s\" converted to \"%s\"", sourceFile.getName(), targetFile.getName()));
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			String message = String.format("Can't convert font \"%s\":%n%s", sourceFile, ex.getMessage());
+			JOptionPane.showMessageDialog(mainWindow, message, "Error", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+	
+	private void exportOutlines(File svgFile) {
+		if (svgFile==null) return;
+		if (fontLoader!=null || exportWorker!=null || !project.font.complete) {
+			statusBar.showMessage("Outlines can be exported, when the font is loaded completely and no other export is running");
+			return;
+		}
+		String result = JOptionPane.showInputDialog(mainWindow, "Line width of the outlines:", textPreview.getLineWidth());
+		if (result==null) return;
+		double lineWidth;
+		try {
+			lineWidth = Double.parseDouble(result.trim());
+			if (!(lineWidth>0)) throw new NumberFormatException();
+		} catch (NumberFormatException e) {
+			JOptionPane.showMessageDialog(mainWindow, "Error: Line width has to be a positive number.", "Error", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		
+		ProjectFont font = project.font;
+		CharRaster.GlyphProvider view = font.createView();
+		char[] chars = view.getChars();
+		File outlinesFile = new File(svgFile.getParentFile(), OutlineExporter.getBaseName(svgFile)+"."+OutlineExporter.OUTLINES_EXTENSION);
+		OutlineExporter exporter = new OutlineExporter(lineWidth, 0.1);
+		exportWorker = new SwingWorker<>() {
+			@Override protected Void doInBackground() throws Exception {
+				exporter.export(font.getName(), view::getForms, chars, svgFile, outlinesFile, Runtime.getRuntime().availableProcessors(),
+						n -> setProgress(chars.length==0 ? 100 : n*100/chars.length));
+				return null;
+			}
+			@Override protected void done() {
+				if (exportWorker!=this) return;
+				exportWorker = null;
+				if (isCancelled()) return;
+				try {
+					get();
+					statusBar.endTask(String.format("Outlines of %d characters exported to \"%s\" and \"%s\"", chars.length, svgFile.getName(), outlinesFile.getName()));
+				} catch (InterruptedException | ExecutionException ex) {
+					ex.printStackTrace();
+					statusBar.endTask("Export of outlines failed");
+					String message = String.format("Can't export outlines to file \"%s\":%n%s", svgFile, ex.getCause()!=null ? ex.getCause().getMessage() : ex.getMessage());
+					JOptionPane.showMessageDialog(mainWindow, message, "Error", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		};
+		exportWorker.addPropertyChangeListener(e->{
+			if ("progress".equals(e.getPropertyName()) && e.getSource()==exportWorker)
+				statusBar.setProgress((Integer) e.getNewValue());
+		});
+		statusBar.startTask(String.format("Exporting outlines of font \"%s\" ...", font.getName()), this::cancelExport);
+		exportWorker.execute();
+	}
+	
+	/**
+	 * Computes the metrics of all glyphs and the kerning of the active font in the background and saves them next to the font file.
+	 */
+	private void saveFontMetrics() {
+		ProjectFont font = project.font;
+		if (font.isDefault || font.file==null) {
+			statusBar.showMessage("Metrics are saved next to the font file. Please save the font first.");
+			return;
+		}
+		if (fontLoader!=null || exportWorker!=null || !font.complete) {
+			statusBar.showMessage("Metrics can be saved, when the font is loaded completely and no other export is running");
+			return;
+		}
+		double lineWidth = textPreview.getLineWidth();
+		metricsCache.setLineWidth(lineWidth);
+		CharRaster.GlyphProvider view = font.createView();
+		char[] chars = view.getChars();
+		HashMap<Character, GlyphMetrics> known = metricsCache.getCachedMetrics();
+		File file = GlyphMetricsCache.getFile(font.file);
+		long start = System.nanoTime();
+		exportWorker = new SwingWorker<>() {
+			private GlyphMetrics[] metrics = null;
+			private int kerningPairs = 0;
+			@Override protected Void doInBackground() throws Exception {
+				metrics = GlyphMetricsCache.computeAll(view, chars, known, lineWidth, ForkJoinPool.commonPool());
+				setProgress(50);
+				GlyphMetricsCache.KerningPair[] kerning = GlyphMetricsCache.computeKerning(chars, metrics, ForkJoinPool.commonPool());
+				kerningPairs = kerning.length;
+				setProgress(90);
+				GlyphMetricsCache.write(file, lineWidth, chars, metrics, kerning);
+				return null;
+			}
+			@Override protected void done() {
+				if (exportWorker!=this) return;
+				exportWorker = null;
+				if (isCancelled()) return;
+				if (metrics!=null && font==project.font)
+					metricsCache.addComputedMetrics(lineWidth, chars, metrics);
+				try {
+					get();
+					statusBar.endTask(String.format("Metrics of %d characters and %d kerning pairs (line width %s) saved to \"%s\" in %1.0f ms", chars.length, kerningPairs, lineWidth, file.getName(), (System.nanoTime()-start)/1e6));
+				} catch (InterruptedException | ExecutionException ex) {
+					ex.printStackTrace();
+					statusBar.endTask("Saving of metrics failed");
+					String message = String.format("Can't save metrics to file \"%s\":%n%s", file, ex.getCause()!=null ? ex.getCause().getMessage() : ex.getMessage());
+					JOptionPane.showMessageDialog(mainWindow, message, "Error", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		};
+		exportWorker.addPropertyChangeListener(e->{
+			if ("progress".equals(e.getPropertyName()) && e.getSource()==exportWorker)
+				statusBar.setProgress((Integer) e.getNewValue());
+		});
+		statusBar.startTask(String.format("Computing metrics and kerning of font \"%s\" ...", font.getName()), this::cancelExport);
+		exportWorker.execute();
+	}
+	
+	private void cancelExport() {
+		if (exportWorker==null) return;
+		SwingWorker<Void,Void> worker = exportWorker;
+		exportWorker = null;
+		worker.cancel(true);
+		statusBar.endTask("Export cancelled");
+	}
+	
+	private void cancelFontLoad() {
+		if (fontLoader==null) return;
+		FontLoader loader = fontLoader;
+		fontLoader = null;
+		loader.cancel(true);
+		statusBar.endTask("Loading of font cancelled");
+	}
+	
+	private void startFontLoad() {
+		startFontLoad(null);
+	}
+	
+	/**
+	 * @param startedLoader loader of the active font, that was already started at startup, or <code>null</code>
+	 */
+	private void startFontLoad(FontLoader startedLoader) {
+		cancelFontLoad();
+		if (!project.hasFontSource()) {
+			if (startedLoader!=null) startedLoader.cancel(true);
+			return;
+		}
+		
+		Project loadingProject = project;
+		ProjectFont loadingFont = project.font;
+		fontLoader = startedLoader!=null ? startedLoader : new FontLoader(loadingFont.file, settings.getBool(AppSettings.ValueKey.CompactGlyphStore, false));
+		fontLoader.addPropertyChangeListener(e->{
+			if ("progress".equals(e.getPropertyName()) && e.getSource()==fontLoader)
+				statusBar.setProgress((Integer) e.getNewValue());
+		});
+		statusBar.startTask(loadingFont.isDefault ? "Loading default font ..." : String.format("Loading font \"%s\" ...", loadingFont.file.getName()), this::cancelFontLoad);
+		statusBar.setProgress(fontLoader.getProgress());
+		// a loader started at startup hands over all glyphs loaded so far (and maybe its result) right now
+		fontLoader.setListener(new FontLoader.Listener() {
+			@Override public void glyphsLoaded(FontLoader loader, List<FontLoader.Glyph> glyphs) {
+				if (loader!=fontLoader || loadingProject!=project || loadingFont!=project.font) return;
+				boolean selectedCharLoaded = false;
+				char[] chars = new char[glyphs.size()];
+				int count = 0;
+				for (FontLoader.Glyph glyph : glyphs) {
+					// glyphs changed by the user while loading are kept
+					if (loadingFont.changedGlyphs.contains(glyph.ch)) continue;
+					if (loadingFont.put(glyph.ch, glyph.forms))
+						charRaster.updateChar(glyph.ch); // replaced by journal
+					formIndex.update(glyph.ch, glyph.forms);
+					metricsCache.remove(glyph.ch);
+					textPreview.updateChar(glyph.ch);
+					if (selectedChar!=null && selectedChar.charValue()==glyph.ch)
+						selectedCharLoaded = true;
+					chars[count++] = glyph.ch;
+				}
+				charRaster.addChars(Arrays.copyOf(chars, count));
+				if (selectedCharLoaded) showForms(project.getEditableForms(selectedChar));
+			}
+			@Override public void loadingFinished(FontLoader loader, int glyphCount, boolean cancelled, Throwable error) {
+				if (loader!=fontLoader || loadingProject!=project || loadingFont!=project.font) return;
+				fontLoader = null;
+				if (error!=null) {
+					statusBar.endTask("Loading of font failed");
+					String message = String.format("Can't load font from file \"%s\":%n%s", loader.getFontFile(), error.getMessage());
+					JOptionPane.showMessageDialog(mainWindow, message, "Error", JOptionPane.ERROR_MESSAGE);
+				} else if (!cancelled) {
+					loadingFont.loaded(loader.getGlyphSource());
+					if (loadingFont.source!=null) { formIndex.clear(); metricsCache.clear(); }
+					charRaster.updateCharList(project,selectedChar);
+					if (loadingFont.source!=null) textPreview.invalidateAll();
+					if (selectedChar!=null && loadingFont.source!=null) showForms(project.getEditableForms(selectedChar));
+					statusBar.endTask(String.format("%d characters loaded", project.getGlyphCount()));
+					startFontCheck();
+				} else
+					statusBar.endTask("Loading of font cancelled");
+			}
+		});
+		if (startedLoader==null) fontLoader.execute();
 	}
 	
 	void saveProjectAs(File file) {
 		if (file==null) return;
-		project.writeToFile(file);
+		writeProject(file);
 		settings.putFile(AppSettings.ValueKey.Project, file);
+		updateWatchedFiles();
+		autoSave.saved();
 	}
 	
 	void saveProject(Supplier<File> getFile) {
 		Assert(getFile!=null);
 		if (project.projectFile!=null) {
-			project.writeToFile(project.projectFile);
+			writeProject(project.projectFile);
 		} else {
 			File file = getFile.get();
 			if (file!=null) {
-				project.writeToFile(file);
+				writeProject(file);
 				settings.putFile(AppSettings.ValueKey.Project, file);
+				updateWatchedFiles();
 			}
 		}
+		autoSave.saved();
+	}
+	
+	private void writeProject(File file) {
+		if (!ProjectBundle.isBundleFile(file)) {
+			project.writeToFile(file);
+			return;
+		}
+		// all fonts become bundled fonts, so a running loader would load a font, that isn't used anymore
+		cancelFontLoad();
+		ProjectFont activeFont = project.font;
+		ProjectBundle.Caches caches = new ProjectBundle.Caches(project.getFonts().indexOf(activeFont),
+				metricsCache.getCachedMetrics(), charRaster.getThumbnails().getWidth(), charRaster.getThumbnails().getHeight(), charRaster.getThumbnails().exportAlphas());
+		project.writeToFile(file, caches);
+		formIndex.clear();
+		charRaster.updateCharList(project,selectedChar);
+		textPreview.invalidateAll();
+		updateFontSwitcher();
+		updateWatchedFiles();
 	}
 	
 	private JMenuBar createMenuBar() {
@@ -221,25 +1031,200 @@ public class AlphaCharEditor {
 		projectMenu.add(createMenuItem("Load Project ..."   ,e->loadProject  (      getProjectFileToOpen())));
 		projectMenu.add(createMenuItem("Save Project"       ,e->saveProject  (this::getProjectFileToSave  )));
 		projectMenu.add(createMenuItem("Save Project As ...",e->saveProjectAs(      getProjectFileToSave())));
+		projectMenu.addSeparator();
+		projectMenu.add(createMenuItem("Load Project Bundle ..."   ,e->loadProject  (getFileToOpen(projectBundleFileChooser))));
+		projectMenu.add(createMenuItem("Save Project As Bundle ...",e->saveProjectAs(getFileToSave(projectBundleFileChooser))));
+		projectMenu.addSeparator();
+		projectMenu.add(createCheckBoxMI("Watch Files for Changes", fontWatcher.isEnabled(), b->{
+			fontWatcher.setEnabled(b);
+			settings.putBool(AppSettings.ValueKey.WatchFiles, b);
+		}));
+		
+		JMenu editMenu = menuBar.add(new JMenu("Edit"));
+		editMenu.add(miUndo = createMenuItem("Undo",e->undo()));
+		editMenu.add(miRedo = createMenuItem("Redo",e->redo()));
+		editMenu.addSeparator();
+		editMenu.add(createMenuItem("Undo Memory Budget ...",e->setUndoMemoryBudget()));
+		editMenu.addSeparator();
+		editMenu.add(createMenuItem("Find Similar Characters",e->findSimilarGlyphs()));
+		editMenu.add(createMenuItem("Apply Last Edit to Shared Forms ...",e->applyLastEditToSharedForms()));
+		editMenu.add(createMenuItem("Transform All Characters ...",e->transformFont()));
+		editMenu.addSeparator();
+		editMenu.add(createMenuItem("Diagnostics ...",e->new DiagnosticsDialog(mainWindow).setVisible(true)));
+		miUndo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+		miRedo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+		updateUndoMenuItems();
 		
 		JMenu fontMenu = menuBar.add(new JMenu("Font"));
-		fontMenu.add(createMenuItem("Load Default Font",e->{ project.loadDefaultFont();                     updateAfterFontLoad(); }));
-		fontMenu.add(createMenuItem("Reload Font"      ,e->{ project.reloadFont(                         ); updateAfterFontLoad(); }));
-		fontMenu.add(createMenuItem("Load Font ..."    ,e->{ project.loadFont  (      getFontFileToOpen()); updateAfterFontLoad(); }));
-		fontMenu.add(createMenuItem("Save Font"        ,e->{ project.saveFont  (this::getFontFileToSave  ); }));
-		fontMenu.add(createMenuItem("Save Font As ..." ,e->{ project.saveFontAs(      getFontFileToSave()); }));
+		fontMenu.add(createMenuItem("Load Default Font",e->loadDefaultFont(                         )));
+		fontMenu.add(createMenuItem("Reload Font"      ,e->reloadFont     (                         )));
+		fontMenu.add(createMenuItem("Load Font ..."    ,e->loadFont       (      getFontFileToOpen())));
+		fontMenu.add(createMenuItem("Save Font"        ,e->saveFont       (this::getFontFileToSave  )));
+		fontMenu.add(createMenuItem("Save Font As ..." ,e->saveFontAs     (      getFontFileToSave())));
+		fontMenu.add(createCheckBoxMI("Save Changes Incrementally", saveFontIncrementally, b->saveFontIncrementally = b));
+		fontMenu.add(createMenuItem("Compact Font Journal",e->compactFont()));
+		fontMenu.add(createCheckBoxMI("Compact Glyph Storage", settings.getBool(AppSettings.ValueKey.CompactGlyphStore, false), this::setCompactGlyphStore));
+		fontMenu.addSeparator();
+		fontMenu.add(createMenuItem("Check Font",e->startFontCheck()));
+		JMenuItem miNextProblem = fontMenu.add(createMenuItem("Go to Next Problem",e->selectNextProblem()));
+		miNextProblem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F8, 0));
+		fontMenu.addSeparator();
+		fontMenu.add(fontSwitchMenu = new JMenu("Switch Font"));
+		fontMenu.add(createMenuItem("Add Font ..."       ,e->addFont(getFontFileToOpen())));
+		fontMenu.add(createMenuItem("Add Binary Font ...",e->addFont(getFileToOpen(binaryFontFileChooser))));
+		fontMenu.add(createMenuItem("Add New Font"       ,e->addNewFont()));
+		fontMenu.add(createMenuItem("Remove Font"        ,e->removeFont()));
+		fontMenu.addSeparator();
+		fontMenu.add(createMenuItem("Load Binary Font ..."   ,e->loadFont  (getFileToOpen(binaryFontFileChooser))));
+		fontMenu.add(createMenuItem("Save Font As Binary ...",e->saveFontAs(getFileToSave(binaryFontFileChooser))));
+		fontMenu.add(createMenuItem("Convert Text Font to Binary ...",e->convertFontFile(getFontFileToOpen(), binaryFontFileChooser)));
+		fontMenu.add(createMenuItem("Convert Binary Font to Text ...",e->convertFontFile(getFileToOpen(binaryFontFileChooser), fontFileChooser)));
+		fontMenu.addSeparator();
+		fontMenu.add(createMenuItem("Export Outlines ...",e->exportOutlines(getFileToSave(svgFontFileChooser))));
+		fontMenu.add(createMenuItem("Save Metrics and Kerning",e->saveFontMetrics()));
 		
 		return menuBar;
 	}
 
 	private void updateAfterProjectLoad() {
+		undoHistory.clear();
 		lineEditor.setGuideLines(project.guideLinesStorage);
 		updateAfterFontLoad();
+		
+		ProjectBundle.Caches caches = project.takeBundledCaches();
+		if (caches!=null && caches.font()==project.getFonts().indexOf(project.font)) {
+			if (caches.metrics()!=null)
+				metricsCache.addStoredMetrics(caches.metrics());
+			if (caches.thumbnails()!=null) {
+				charRaster.getThumbnails().importAlphas(caches.thumbnailWidth(), caches.thumbnailHeight(), caches.thumbnails());
+				charRaster.repaint();
+			}
+		}
 	}
 
 	private void updateAfterFontLoad() {
-		charRaster.updateCharList(project.font,null);
-		setSelectedChar(null);
+		// the font got other glyphs
+		undoHistory.removeFont(project.font);
+		updateAfterFontSwitch(null);
+	}
+
+	private void updateAfterFontSwitch(Character ch) {
+		undoHistory.setFont(project.font);
+		updateUndoMenuItems();
+		updateFontSwitcher();
+		updateWatchedFiles();
+		charRaster.invalidateThumbnails();
+		charRaster.updateCharList(project,ch);
+		textPreview.setGlyphProvider(project);
+		fontLint.clear();
+		formIndex.clear();
+		metricsCache.clear();
+		if (project.font.complete) startFontCheck();
+		setSelectedChar(ch);
+	}
+
+	private void updateWatchedFiles() {
+		Vector<File> fontFiles = new Vector<>();
+		for (ProjectFont font : project.getFonts())
+			if (font.file!=null && !font.isDefault) fontFiles.add(font.file);
+		fontWatcher.watch(project.projectFile, fontFiles);
+	}
+
+	/**
+	 * Merges glyphs, that were changed in a font file by another program.
+	 * Glyphs with unsaved changes in the editor are kept.
+	 */
+	private void fontFileChanged(File fontFile, Map<Character, Form[]> glyphs) {
+		Form.Factory factory = LineEditor.createFormFactory();
+		for (ProjectFont font : project.getFonts()) {
+			// fonts, that aren't loaded completely, will get the current state of their file anyway
+			if (font.isDefault || !fontFile.equals(font.file) || !font.complete) continue;
+			boolean isActive = font==project.font;
+			int updated = 0;
+			int conflicts = 0;
+			for (Map.Entry<Character, Form[]> entry : glyphs.entrySet()) {
+				char ch = entry.getKey();
+				Form[] forms = entry.getValue();
+				// e.g. written by this editor
+				if (GlyphStore.intern(forms)==GlyphStore.intern(font.peekForms(ch, factory))) continue;
+				if (font.changedGlyphs.contains(ch)) { conflicts++; continue; }
+				font.put(ch, forms);
+				updated++;
+				if (!isActive) continue;
+				fontLint.checkGlyph(ch, forms);
+				formIndex.update(ch, forms);
+				metricsCache.update(ch, forms);
+				charRaster.updateChar(ch);
+				textPreview.updateChar(ch);
+				if (selectedChar!=null && selectedChar.charValue()==ch) {
+					undoHistory.setCurrentGlyph(selectedChar, forms);
+					showForms(forms);
+				}
+			}
+			if (!isActive)
+				font.park();
+			else if (updated>0)
+				charRaster.updateCharList(project, selectedChar);
+			if (updated>0 || conflicts>0)
+				statusBar.showMessage(String.format("Font \"%s\" changed on disk: %d character(s) updated, %d character(s) with unsaved changes kept", font.getName(), updated, conflicts));
+		}
+	}
+
+	/**
+	 * Reloads the project file, if it was changed by another program.
+	 * Only the guide lines are replaced, if the fonts of the project are the same.
+	 */
+	private void projectFileChanged(File file) {
+		if (!file.equals(project.projectFile) || !file.isFile()) return;
+		Project changed = Project.readFromFile(file);
+		if (project.hasSameSettings(changed)) return; // e.g. written by this editor
+		if (project.settingsChanged || (!project.hasSameFonts(changed) && project.hasChangedGlyphs())) {
+			statusBar.showMessage("Project file changed on disk, but it's not reloaded because of unsaved changes");
+			return;
+		}
+		if (project.hasSameFonts(changed)) {
+			project.guideLinesStorage = changed.guideLinesStorage;
+			lineEditor.setGuideLines(project.guideLinesStorage);
+			statusBar.showMessage("Guide lines reloaded from project file");
+			return;
+		}
+		Character ch = selectedChar;
+		loadProject(file);
+		charRaster.setSelectedChar(ch);
+	}
+
+	private void startFontCheck() {
+		fontLint.checkAll(project.font.createView());
+	}
+
+	private void fontCheckFinished(int glyphCount, long duration_ns) {
+		charRaster.repaint();
+		if (fontLint.getCharCount()>0)
+			statusBar.showMessage(String.format("%d characters checked in %1.0f ms: %d problem(s) in %d character(s)", glyphCount, duration_ns/1e6, fontLint.getIssueCount(), fontLint.getCharCount()));
+	}
+
+	private void selectNextProblem() {
+		Character ch = fontLint.getNextChar(selectedChar);
+		if (ch==null) {
+			statusBar.showMessage("No problems found");
+			return;
+		}
+		charRaster.setSelectedChar(ch);
+	}
+
+	private void updateFontSwitcher() {
+		if (fontSwitchMenu==null) return;
+		fontSwitchMenu.removeAll();
+		ButtonGroup bg = new ButtonGroup();
+		Vector<ProjectFont> fonts = project.getFonts();
+		for (int i=0; i<fonts.size(); i++) {
+			ProjectFont font = fonts.get(i);
+			JRadioButtonMenuItem mi = new JRadioButtonMenuItem(String.format("%d: %s", i+1, font.getName()), font==project.font);
+			mi.addActionListener(e->switchFont(font));
+			if (i<9) mi.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_1+i, InputEvent.CTRL_DOWN_MASK));
+			bg.add(mi);
+			fontSwitchMenu.add(mi);
+		}
 	}
 
 	private File getFileToSave(FileChooser fileChooser) {
@@ -278,18 +1263,26 @@ public class AlphaCharEditor {
 		}
 		
 		enum ValueKey {
-			Project
+			Project, UndoMemoryBudget_MB, WatchFiles, CompactGlyphStore
 		}
 
 		AppSettings() { super(AlphaCharEditor.class, ValueKey.values()); }
 	}
 	
-	private static class Project {
+	static class Project implements CharRaster.GlyphProvider {
+		private static final String FONT_CHANGES_PREFIX = "ChangedGlyphsOfFont=";
+		private static final String BUNDLED_FONT_PREFIX = "BundledFont=";
+		
 		private File projectFile;
-		private final GuideLinesStorage guideLinesStorage = new GuideLinesStorage();
-		private HashMap<Character, Form[]> font = null;
-    	private File fontFile = null;
-		private boolean fontIsDefault = false;
+		private GuideLinesStorage guideLinesStorage = new GuideLinesStorage();
+		private final Vector<ProjectFont> fonts = new Vector<>();
+		/** active font */
+		private ProjectFont font = null;
+		private int activeFontIndex = 0;
+		/** guide lines or fonts changed since the project was loaded or saved */
+		private boolean settingsChanged = false;
+		/** cached data read from a project bundle, that wasn't taken by the editor yet */
+		private ProjectBundle.Caches bundledCaches = null;
     	
     	Project(File projectFile) {
 			this.projectFile = projectFile;
@@ -298,388 +1291,835 @@ public class AlphaCharEditor {
     	static Project createDefaultProject()
     	{
     		Project project = new Project(null);
-    		project.guideLinesStorage.setDefaultGuideLines(new double[]{ 0 }, new double[]{ 0,40,100 });
+    		project.guideLinesStorage.setDefaultGuideLines(new double[]{ 0 }, DEFAULT_HORIZONTAL_GUIDE_LINES);
+    		project.initFonts();
     		return project;
     	}
 
 		void writeToFile(File file) {
+			writeToFile(file, null);
+		}
+
+		/**
+		 * @param caches cached data of a font, that is stored in a {@link ProjectBundle}, or <code>null</code>
+		 */
+		void writeToFile(File file, ProjectBundle.Caches caches) {
 			Assert(file!=null);
+			if (ProjectBundle.isBundleFile(file)) {
+				writeBundle(file, caches);
+				return;
+			}
 			projectFile = file;
 			
-			System.out.printf("Write project to file \"%s\" ...%n", file);
-			try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(projectFile), StandardCharsets.UTF_8))) {
-    			
-    			if (fontIsDefault)
-    				out.printf("DefaultFont%n");
-    			
-    			if (fontFile!=null && !fontIsDefault)
-    				out.printf("Font=%s%n", fontFile.getAbsolutePath());
-    			
-    			guideLinesStorage.writeToFile(out);
-    			
-    		} catch (FileNotFoundException e) {
+			long start = System.nanoTime();
+			try {
+				AtomicFile.writeText(projectFile, out -> writeSettings(out, false));
+				settingsChanged = false;
+				PROJECT_WRITE_TIME.stop(start);
+			} catch (IOException e) {
 				e.printStackTrace();
 			}
-			System.out.printf("... done%n");
+		}
+
+		/**
+		 * Writes the settings and all fonts of the project into a {@link ProjectBundle}.
+		 * Afterwards all fonts are bundled fonts, whose glyphs are read from the bundle.
+		 * Fonts, that aren't loaded completely, are read from their files before.
+		 */
+		private void writeBundle(File file, ProjectBundle.Caches caches) {
+			long start = System.nanoTime();
+			try {
+				Form.Factory factory = LineEditor.createFormFactory();
+				Vector<HashMap<Character, Form[]>> fontGlyphs = new Vector<>();
+				for (ProjectFont f : fonts)
+					fontGlyphs.add(f.collectGlyphs(factory));
+				// a mapped bundle file mustn't be referenced anymore, before it's overwritten (see AtomicFile)
+				for (ProjectFont f : fonts)
+					f.detachBundle(file);
+				ProjectBundle.write(file, toString(this::writeBundleSettings), fontGlyphs, caches);
+				projectFile = file;
+				ProjectBundle.Bundle bundle = ProjectBundle.open(file);
+				for (int i=0; i<fonts.size(); i++)
+					fonts.get(i).setBundled(i, fonts.get(i).getName(), bundle.getFont(i));
+				settingsChanged = false;
+				PROJECT_WRITE_TIME.stop(start);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		private void writeBundleSettings(PrintWriter out) {
+			for (int i=0; i<fonts.size(); i++)
+				out.printf("%s%d:%s%n", BUNDLED_FONT_PREFIX, i, fonts.get(i).getName());
+			if (fonts.size()>1)
+				out.printf("ActiveFont=%d%n", fonts.indexOf(font));
+			guideLinesStorage.writeToFile(out);
+		}
+
+		/**
+		 * Sets the font sections of the given bundle as sources of the bundled fonts. Glyphs in memory are kept.
+		 */
+		private void attachBundle(ProjectBundle.Bundle bundle) throws IOException {
+			int count = bundle.getFontCount();
+			for (ProjectFont f : fonts)
+				if (f.isBundled() && f.bundledIndex>=0 && f.bundledIndex<count)
+					f.setBundled(f.bundledIndex, f.bundledName, bundle.getFont(f.bundledIndex));
+		}
+
+		/**
+		 * @return cached data read from a project bundle (only once) or <code>null</code>
+		 */
+		ProjectBundle.Caches takeBundledCaches() {
+			ProjectBundle.Caches caches = bundledCaches;
+			bundledCaches = null;
+			return caches;
+		}
+
+		/**
+		 * @param withNewFonts write also fonts without font file (only useful for snapshots)
+		 */
+		private void writeSettings(PrintWriter out, boolean withNewFonts) {
+			writeFontSettings(out, withNewFonts);
+			guideLinesStorage.writeToFile(out);
+		}
+
+		private void writeFontSettings(PrintWriter out, boolean withNewFonts) {
+			int index = 0;
+			int activeIndex = 0;
+			for (ProjectFont f : fonts) {
+				if (!withNewFonts && !f.hasSource()) continue;
+				if (f==font) activeIndex = index;
+				if (f.isDefault)
+					out.printf("DefaultFont%n");
+				else if (f.file!=null)
+					out.printf("Font=%s%n", f.file.getAbsolutePath());
+				else if (f.isBundled())
+					out.printf("%s%d:%s%n", BUNDLED_FONT_PREFIX, f.bundledIndex, f.bundledName);
+				else
+					out.printf("NewFont%n");
+				index++;
+			}
+			if (index>1)
+				out.printf("ActiveFont=%d%n", activeIndex);
+		}
+
+		boolean hasSameSettings(Project other) {
+			return toString(out -> writeSettings(out, false)).equals(toString(out -> other.writeSettings(out, false)));
+		}
+
+		boolean hasSameFonts(Project other) {
+			return toString(out -> writeFontSettings(out, false)).equals(toString(out -> other.writeFontSettings(out, false)));
+		}
+
+		private static String toString(Consumer<PrintWriter> writer) {
+			StringWriter sw = new StringWriter();
+			try (PrintWriter out = new PrintWriter(sw)) {
+				writer.accept(out);
+			}
+			return sw.toString();
+		}
+
+		private void parseSettingsLine(String line) {
+			if (line.equals("DefaultFont"))
+				fonts.add(new ProjectFont(null, true));
+			
+			if (line.startsWith("Font=")) {
+				String str = line.substring("Font=".length());
+				fonts.add(new ProjectFont(new File(str), false));
+			}
+			
+			if (line.equals("NewFont"))
+				fonts.add(new ProjectFont(null, false));
+			
+			if (line.startsWith(BUNDLED_FONT_PREFIX)) {
+				String str = line.substring(BUNDLED_FONT_PREFIX.length());
+				int pos = str.indexOf(':');
+				try {
+					ProjectFont f = new ProjectFont(null, false);
+					f.bundledIndex = Integer.parseInt(str.substring(0, Math.max(0, pos)));
+					f.bundledName = str.substring(pos+1);
+					fonts.add(f);
+				} catch (NumberFormatException e) { e.printStackTrace(); }
+			}
+			
+			if (line.startsWith("ActiveFont=")) {
+				String str = line.substring("ActiveFont=".length());
+				try { activeFontIndex = Integer.parseInt(str); }
+				catch (NumberFormatException e) { e.printStackTrace(); }
+			}
+			
+			guideLinesStorage.parseLine(line);
+		}
+
+		private void initFonts() {
+			if (fonts.isEmpty()) fonts.add(new ProjectFont(null, false));
+			for (ProjectFont f : fonts) f.clear();
+			font = fonts.get(Math.max(0, Math.min(fonts.size()-1, activeFontIndex)));
 		}
     	
     	static Project readFromFile(File file) {
     		Assert(file!=null);
+    		if (ProjectBundle.isBundleFile(file)) return readFromBundle(file);
 			Project project = new Project(file);
 			
-			System.out.printf("Read project from file \"%s\" ...%n", file);
+			long start = System.nanoTime();
 			try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
 				
 				String line;
-				while( (line=in.readLine())!=null ) {
-					
-					if (line.equals("DefaultFont"))
-						project.fontIsDefault = true;
-					
-					if (line.startsWith("Font=")) {
-						String str = line.substring("Font=".length());
-						project.fontFile = new File(str);
-					}
-					
-					project.guideLinesStorage.parseLine(line);
-					
-				}
+				while( (line=in.readLine())!=null )
+					project.parseSettingsLine(line);
+				PROJECT_READ_TIME.stop(start);
 				
 			} catch (FileNotFoundException e) {
 				e.printStackTrace();
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
-			System.out.printf("... done%n");
 			
-			project.reloadFont();
+			project.initFonts();
 			return project;
     	}
 
-    	void loadDefaultFont() {
-    		this.font = AlphaCharIO.readDefaultAlphaCharFont(LineEditor.createFormFactory(), true);
-    		this.fontFile = null;
-    		this.fontIsDefault = true;
-    	}
+		/**
+		 * Reads a {@link ProjectBundle}. Its fonts are mapped into memory and don't need to be loaded.
+		 */
+		private static Project readFromBundle(File file) {
+			Project project = new Project(file);
+			
+			long start = System.nanoTime();
+			ProjectBundle.Bundle bundle = null;
+			try {
+				bundle = ProjectBundle.open(file);
+				try (BufferedReader in = new BufferedReader(new StringReader(bundle.getSettings()))) {
+					String line;
+					while( (line=in.readLine())!=null )
+						project.parseSettingsLine(line);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				bundle = null;
+			}
+			
+			project.initFonts();
+			if (bundle!=null)
+				try {
+					project.attachBundle(bundle);
+					project.bundledCaches = bundle.readCaches();
+					PROJECT_READ_TIME.stop(start);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			return project;
+		}
 
-		void reloadFont() {
-			if (fontIsDefault)
-				loadDefaultFont();
-			else if (fontFile!=null)
-				loadFont(fontFile);
+		/**
+		 * Captures all unsaved changes: the project settings and all changed glyphs of all fonts.
+		 * The glyphs are captured as immutable {@link GlyphStore.GlyphSnapshot}s, so the snapshot can be written on another thread.
+		 * @return the snapshot or <code>null</code>, if there are no unsaved changes
+		 */
+		AutoSave.Snapshot createSnapshot() {
+			if (!settingsChanged && !hasChangedGlyphs()) return null;
+			String settings = toString(out -> writeSettings(out, true));
+			Form.Factory factory = LineEditor.createFormFactory();
+			Vector<Integer> changedFonts = new Vector<>();
+			Vector<char[]> changedChars = new Vector<>();
+			Vector<GlyphStore.GlyphSnapshot[]> changedGlyphs = new Vector<>();
+			for (int i=0; i<fonts.size(); i++) {
+				ProjectFont f = fonts.get(i);
+				if (f.changedGlyphs.isEmpty()) continue;
+				char[] chars = new char[f.changedGlyphs.size()];
+				int n = 0;
+				for (Character ch : f.changedGlyphs) chars[n++] = ch;
+				Arrays.sort(chars);
+				GlyphStore.GlyphSnapshot[] glyphs = new GlyphStore.GlyphSnapshot[chars.length];
+				for (int j=0; j<chars.length; j++)
+					glyphs[j] = f.snapshotGlyph(chars[j], factory);
+				changedFonts.add(i);
+				changedChars.add(chars);
+				changedGlyphs.add(glyphs);
+			}
+			return out -> {
+				out.print(settings);
+				Form.Factory writerFactory = LineEditor.createFormFactory();
+				for (int i=0; i<changedFonts.size(); i++) {
+					out.printf("%s%d%n", FONT_CHANGES_PREFIX, changedFonts.get(i));
+					char[] chars = changedChars.get(i);
+					GlyphStore.GlyphSnapshot[] glyphs = changedGlyphs.get(i);
+					for (int j=0; j<chars.length; j++)
+						FontTextFormat.writeGlyph(out, chars[j], glyphs[j].createForms(writerFactory));
+				}
+			};
 		}
 
-		void loadFont(File fontFile) {
-			if (fontFile==null) return;
-			this.font = AlphaCharIO.readAlphaCharFontFromFile(fontFile, LineEditor.createFormFactory(), true);
-    		this.fontFile = fontFile;
-    		this.fontIsDefault = false;
+		private boolean hasChangedGlyphs() {
+			for (ProjectFont f : fonts)
+				if (!f.changedGlyphs.isEmpty()) return true;
+			return false;
+		}
+
+		/**
+		 * Reads a project from a snapshot written by {@link #createSnapshot()}.
+		 * The glyphs of the snapshot are marked as changed and override the glyphs of the font files, which are loaded afterwards.
+		 */
+		static Project readFromSnapshot(File snapshotFile, File projectFile) {
+			Assert(snapshotFile!=null);
+			Project project = new Project(projectFile);
+			
+			try {
+				String snapshot = new String(Files.readAllBytes(snapshotFile.toPath()), StandardCharsets.UTF_8);
+				try (BufferedReader in = new BufferedReader(new StringReader(snapshot))) {
+					String line;
+					while( (line=in.readLine())!=null && FontTextFormat.parseHeader(line)==null && !line.startsWith(FONT_CHANGES_PREFIX) )
+						project.parseSettingsLine(line);
+				}
+				project.initFonts();
+				if (ProjectBundle.isBundleFile(projectFile) && projectFile.isFile())
+					project.attachBundle(ProjectBundle.open(projectFile));
+				// sections of changed glyphs per font; glyphs of older snapshots without section belong to the active font
+				for (String section : snapshot.split("(?m)^(?="+FONT_CHANGES_PREFIX+")")) {
+					ProjectFont target = project.font;
+					if (section.startsWith(FONT_CHANGES_PREFIX)) {
+						int end = section.indexOf('\n');
+						String str = section.substring(FONT_CHANGES_PREFIX.length(), end<0 ? section.length() : end).trim();
+						try { target = project.fonts.get(Integer.parseInt(str)); }
+						catch (NumberFormatException | ArrayIndexOutOfBoundsException e) { e.printStackTrace(); continue; }
+					}
+					ProjectFont f = target;
+					try (BufferedReader in = new BufferedReader(new StringReader(section))) {
+						FontTextFormat.read(in, LineEditor.createFormFactory(), (ch, forms) -> {
+							f.put(ch, forms);
+							f.changedGlyphs.add(ch);
+							return true;
+						});
+					}
+				}
+				for (ProjectFont f : project.fonts)
+					if (f!=project.font) f.park();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+			project.settingsChanged = true;
+			return project;
+		}
+
+		Vector<ProjectFont> getFonts() {
+			return fonts;
+		}
+
+		ProjectFont getActiveFont() {
+			return font;
+		}
+
+		/**
+		 * Makes another font of the project active.
+		 * The editable forms of the previously active font are moved into the {@link GlyphStore}.
+		 */
+		void setActiveFont(ProjectFont newFont) {
+			Assert(fonts.contains(newFont));
+			if (newFont==font) return;
+			font.park();
+			font = newFont;
+			settingsChanged = true;
+		}
+
+		void addFont(ProjectFont newFont) {
+			fonts.add(newFont);
+			setActiveFont(newFont);
+		}
+
+		/**
+		 * Removes the active font from the project. The font before it becomes active.
+		 * @return <code>false</code>, if the active font is the only font of the project
+		 */
+		boolean removeActiveFont() {
+			if (fonts.size()<2) return false;
+			int index = fonts.indexOf(font);
+			fonts.remove(index);
+			font = fonts.get(Math.max(0, index-1));
+			settingsChanged = true;
+			return true;
+		}
+
+		boolean hasFontSource() {
+			return font.hasSource();
+		}
+
+		void clearFont() {
+			font.clear();
+		}
+
+		@Override public boolean hasGlyph(char ch) { return font.hasGlyph(ch); }
+		@Override public Form[] getForms(Character ch) { return font.getForms(ch); }
+		@Override public Supplier<Form[]> getFormsLater(char ch) { return font.getFormsLater(ch); }
+		Form[] getEditableForms(Character ch) { return font.getEditableForms(ch); }
+		@Override public char[] getChars() { return font.getChars(); }
+		int getGlyphCount() { return font.getGlyphCount(); }
+
+    	void setDefaultFont() {
+    		font.file = null;
+    		font.isDefault = true;
+    		font.clearBundled();
+    		clearFont();
+    	}
+
+		void setFontFile(File fontFile) {
+			Assert(fontFile!=null);
+    		font.file = fontFile;
+    		font.isDefault = false;
+    		font.clearBundled();
+    		clearFont();
     	}
 
-		void saveFont(Supplier<File> getFontFile) {
-			File file = fontFile;
+		boolean canSaveFontIncrementally() {
+			return !font.isDefault && font.file!=null && font.file.isFile();
+		}
+
+		/**
+		 * Appends all changed glyphs of the active font to the journal of its font file.
+		 * The font file is rewritten completely instead, if the journal gets too large.
+		 * @return number of saved glyphs
+		 */
+		int saveFontIncrementally() throws IOException {
+			Assert(canSaveFontIncrementally());
+			if (font.complete && FontJournal.needsCompaction(font.file)) {
+				int count = font.changedGlyphs.size();
+				saveFontAs(font.file);
+				return count;
+			}
+			HashMap<Character, Form[]> glyphs = new HashMap<>();
+			Form.Factory factory = LineEditor.createFormFactory();
+			for (Character ch : font.changedGlyphs)
+				glyphs.put(ch, font.peekForms(ch, factory));
+			if (!glyphs.isEmpty()) FontJournal.append(font.file, glyphs);
+			font.changedGlyphs.clear();
+			return glyphs.size();
+		}
+
+		void saveFont(Supplier<File> getFontFile) throws IOException {
+			File file = font.file;
 			if (file==null) file=getFontFile.get();
 			if (file!=null) saveFontAs(file);
     	}
 
-		void saveFontAs(File fontFile) {
+		void saveFontAs(File fontFile) throws IOException {
 			if (fontFile==null) return;
-			AlphaCharIO.writeAlphaCharToFile(fontFile, font, true);
-    		this.fontFile = fontFile;
-    		this.fontIsDefault = false;
+			// all glyphs have to be in memory and the mapped font file mustn't be referenced anymore, before it's overwritten (see AtomicFile)
+			HashMap<Character, Form[]> glyphs = font.decodeAllGlyphs();
+			if (BinaryFontFormat.isBinaryFontFile(fontFile))
+				BinaryFontFormat.write(fontFile, glyphs);
+			else
+				FontTextFormat.write(fontFile, glyphs);
+    		FontJournal.delete(fontFile);
+    		font.file = fontFile;
+    		font.isDefault = false;
+    		font.clearBundled();
+    		font.complete = true;
+    		font.changedGlyphs.clear();
 		}
 	}
 
-	private static class CharRaster extends Canvas {
-		private static final Color COLOR_TEXT           = Color.BLACK;
-		private static final Color COLOR_TEXT_NOTEXISTS = Color.LIGHT_GRAY;
-		private static final Color COLOR_BACKGROUND     = Color.WHITE;
-		private static final Color COLOR_CHAR_EXISTS      = new Color(0xf0f0f0);
-		private static final Color COLOR_CHAR_HIGHLIGHTED = Color.CYAN;
-		private static final Color COLOR_CHAR_SELECTED    = Color.GREEN;
-
-		private static final long serialVersionUID = 6444819062135187504L;
+	/**
+	 * One of the fonts of a {@link Project}.
+	 * <p>
+	 * Only the active font of a project holds editable forms. The glyphs of all other fonts are kept as snapshots in the {@link GlyphStore},
+	 * so geometry, that is identical in several fonts of a family, is stored only once.
+	 * A glyph is copied out of the store, when it's edited again, and interned again, when its font becomes inactive.
+	 * Reading a glyph (see {@link #getForms(Character)}) creates a temporary copy and leaves the glyph in the store.
+	 * Each glyph is either in {@link #glyphs}, in {@link #storedGlyphs} or only in the {@link #source}.
+	 * <p>
+	 * Glyphs of the {@link #source} (a mapped binary font, a {@link PackedGlyphStore} or a bundle) are decoded for each request
+	 * and kept as editable forms only, if they are edited (see {@link #getEditableForms(Character)}),
+	 * so browsing or checking a font doesn't turn all its glyphs into <code>Form</code> objects.
+	 * <p>
+	 * A bundled font is stored in a {@link ProjectBundle} instead of a font file. It's complete from the start,
+	 * because the font section of the bundle is its source.
+	 */
+	static class ProjectFont implements CharRaster.GlyphProvider {
+		private File file;
+		private boolean isDefault;
+		/** name of a bundled font or <code>null</code> */
+		private String bundledName = null;
+		/** index of the font section of a bundled font */
+		private int bundledIndex = -1;
+		/** font section of the project bundle of a bundled font */
+		private GlyphSource bundledSource = null;
+		private GlyphSource source = null;
+		private boolean complete;
+		/** editable forms of the glyphs, that were loaded or edited since this font became active */
+		private HashMap<Character, Form[]> glyphs = new HashMap<>();
+		/** glyphs, that weren't edited since this font became active */
+		private HashMap<Character, GlyphStore.GlyphSnapshot> storedGlyphs = new HashMap<>();
+		/** glyphs changed since the font was loaded or saved */
+		private final HashSet<Character> changedGlyphs = new HashSet<>();
 		
-		private final char[][] chars;
-		private final boolean[][] charExist;
-		private final int fieldWidth;
-		private final int fieldHeight;
-		private final int offsetX;
-		private final int offsetY;
-		private final int border;
-
-		private Rectangle view = null;
-		private Point highlightedField = null;
-		private Point selectedField = null;
-		private Character selectedChar = null;
-		private int[] rows;
-		private SelectionListener listener;
-
-		CharRaster(SelectionListener listener) {
-			this.listener = listener;
-			Assert(this.listener!=null);
-			this.fieldWidth  = 20;
-			this.fieldHeight = 18;
-			this.offsetX =  7;
-			this.offsetY = 13;
-			this.border = 3;
-			chars = new char[][] {
-				createCharArray('A','Z'),
-				createCharArray('a','z'),
-				createCharArray('0','9'),
-				new char[] { 'ä','ö','ü', 'Ä','Ö','Ü', 'ß' }
-			};
-			
-			rows = new int[chars.length];
-			Arrays.fill(rows,0);
-			
-			charExist = new boolean[chars.length][];
-			for (int i=0; i<charExist.length; i++) {
-				charExist[i] = new boolean[chars[i].length];
-				Arrays.fill(charExist[i],false);
-			}
-			
-			MouseAdapter m = new MouseAdapter() {
-				@Override public void mouseClicked(MouseEvent e) { setSelectedField   (e.getPoint()); }
-				@Override public void mouseEntered(MouseEvent e) { setHighlightedField(e.getPoint()); }
-				@Override public void mouseMoved  (MouseEvent e) { setHighlightedField(e.getPoint()); }
-				@Override public void mouseExited (MouseEvent e) { setHighlightedField(null); }
-			};
-			addMouseListener(m);
-			addMouseMotionListener(m);
-			
-			setPreferredSize(2*border + 10*fieldWidth, 2*border +  8*fieldHeight);
+		private ProjectFont(File file, boolean isDefault) {
+			this.file = file;
+			this.isDefault = isDefault;
+			this.complete = !hasSource();
+		}
+		
+		String getName() {
+			if (isDefault) return "Default Font";
+			if (file!=null) return file.getName();
+			if (bundledName!=null) return bundledName;
+			return "New Font";
 		}
 
-		private char[] createCharArray(char first, char last) {
-			char[] chars = new char[last-first+1];
-			for (int i=0; i<chars.length; ++i) chars[i] = (char) (first+i);
-			return chars;
+		/**
+		 * @return <code>true</code>, if the font is read from a font file or is the default font
+		 */
+		boolean hasSource() {
+			return isDefault || file!=null;
 		}
 
-		void updateCharList(HashMap<Character, Form[]> font, Character selectedChar) {
-			for (int b=0; b<charExist.length; b++) {
-				for (int ch=0; ch<charExist[b].length; ch++) {
-					Form[] forms = font==null ? null : font.get(chars[b][ch]);
-					charExist[b][ch] = forms!=null && forms.length>0;
-				}
-			}
-			this.highlightedField = null;
-			this.selectedField = getField(selectedChar);
-			this.selectedChar = selectedChar;
-			//System.out.printf("SelectedChar: %s (%s)%n", this.selectedChar, this.selectedField);
-			repaint();
+		boolean isBundled() {
+			return bundledName!=null;
 		}
 
-		interface SelectionListener {
-			void selectedCharChanged(Character selectedChar);
+		/**
+		 * Makes this font a bundled font. Glyphs in memory are kept and override the glyphs of the bundle.
+		 */
+		private void setBundled(int index, String name, GlyphSource bundledSource) {
+			file = null;
+			isDefault = false;
+			bundledIndex = index;
+			bundledName = name;
+			this.bundledSource = bundledSource;
+			source = bundledSource;
+			complete = true;
+			changedGlyphs.clear();
 		}
-		
-		private void setSelectedField(Point p) {
-			Point field = getField(p);
-			boolean repaint = false;
-//			if (field==null) {
-//				repaint = selectedField!=null;
-//				selectedField=null;
-//			} else if (selectedField==null || !selectedField.equals(field)) {
-//				repaint = true;
-//				selectedField = field; 
-//			}
-			repaint = true;
-			selectedField = field; 
-			updateSelectedChar();
-			if (repaint) repaint();
+
+		/**
+		 * Marks the font as completely loaded.
+		 * @param source glyph source opened by the loader or <code>null</code>, if all glyphs were put into memory
+		 */
+		void loaded(GlyphSource source) {
+			this.source = source;
+			complete = true;
 		}
-		
-		private void setHighlightedField(Point p) {
-			Point field = getField(p);
-			boolean repaint = false;
-//			if (field==null) {
-//				repaint = highlightedField!=null;
-//				highlightedField=null;
-//			} else if (highlightedField==null || !highlightedField.equals(field)) {
-//				repaint = true;
-//				highlightedField = field; 
-//			}
-			repaint = true;
-			highlightedField = field; 
-			if (repaint) repaint();
-		}
-
-		private Point getField(Character ch) {
-			if (ch==null || view==null) return null;
-			int block = -1;
-			int index = -1;
-			for (int b=0; b<chars.length; b++) {
-				for (int i=0; i<chars[b].length; i++) {
-					if (chars[b][i]==ch) {
-						block = b;
-						index = i;
-						break;
-					}
-				}
-				if (block>=0) break;
-			}
-			
-//			// from <getCharAt>
-//			int y = field.y-rows[block];
-//			int x = field.x;
-			int iWidth = view.width/fieldWidth;
-//			int i = x + iWidth*y;
-			
-			int x =  index % iWidth;
-			int y = (index / iWidth)+rows[block];
-			return new Point(x, y);
-		}
-
-		private Point getField(Point p) {
-			if (p==null || view==null) return null;
-			int x = p.x-view.x;
-			int y = p.y-view.y;
-			if (x<0 || x>=view.width ) return null;
-			if (y<0 || y>=view.height) return null;
-			int ix = x/fieldWidth;
-			int iy = y/fieldHeight;
-			return new Point(ix, iy); 
-		}
-
-		private Character getCharAt(Point field) {
-			if (field==null || view==null) return null;
-			int block = -1;
-			for (int b=0; b<rows.length; b++) {
-				if (field.y>=rows[b] && (b+1>=rows.length || field.y<rows[b+1])) {
-					block  = b;
-					break;
-				}
-			}
-			if (block>=0) {
-				int y = field.y-rows[block];
-				int x = field.x;
-				int iWidth = view.width/fieldWidth;
-				int i = x + iWidth*y;
-				if (i<chars[block].length) {
-					return chars[block][i];
-				}
-			}
-			return null;
+
+		/**
+		 * Replaces the font section of the given project bundle by a copy in memory,
+		 * so the mapped bundle file isn't referenced by this font anymore and can be overwritten.
+		 */
+		private void detachBundle(File bundleFile) {
+			if (!(bundledSource instanceof BinaryFontFormat.MappedFont mapped)) return;
+			if (!mapped.getFile().getAbsoluteFile().equals(bundleFile.getAbsoluteFile())) return;
+			Form.Factory factory = LineEditor.createFormFactory();
+			PackedGlyphStore.Builder builder = new PackedGlyphStore.Builder();
+			for (char ch : mapped.getChars())
+				builder.add(ch, mapped.decode(ch, factory));
+			PackedGlyphStore store = builder.build();
+			if (source==bundledSource) source = store;
+			bundledSource = store;
 		}
 
-		private void updateSelectedChar() {
-			Character ch = getCharAt(selectedField);
-			if (ch!=null && selectedChar != null && selectedChar.equals(ch)) return;
-			if (ch==null && selectedChar == null) return; 
-			selectedChar = ch;
-			listener.selectedCharChanged(selectedChar);
+		private void clearBundled() {
+			bundledIndex = -1;
+			bundledName = null;
+			bundledSource = null;
 		}
 
-		@Override
-		protected void paintCanvas(Graphics g, int x, int y, int width, int height) {
-			if (view==null) view = new Rectangle(x, y, width, height);
-			else view.setBounds(x, y, width, height);
-			g.setColor(COLOR_BACKGROUND);
-			g.fillRect(x, y, width, height);
-			
-			if (g instanceof Graphics2D) {
-				Graphics2D g2 = (Graphics2D) g;
-				g2.setClip(x, y, width, height);
-				g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-				
-				int iy = 0;
-				for (int b=0; b<chars.length; b++) {
-					int ix = 0;
-					rows[b] = iy;
-					for (int i=0; i<chars[b].length; i++) {
-						if ((ix+1)*fieldWidth>width-2*border) { ++iy; ix=0; }
-						char ch = chars[b][i];
-						boolean exist = charExist[b][i];
-						Color color;
-						if (selectedField!=null && selectedField.x==ix && selectedField.y==iy)
-							color = COLOR_CHAR_SELECTED;
-						else if (highlightedField!=null && highlightedField.x==ix && highlightedField.y==iy)
-							color = COLOR_CHAR_HIGHLIGHTED;
-						else
-							color = exist ? COLOR_CHAR_EXISTS : COLOR_BACKGROUND;
-						g2.setPaint(color);
-						g2.fillRect(border+ix*fieldWidth+1, border+iy*fieldHeight+1, fieldWidth-2, fieldHeight-2);
-						g2.setPaint(exist ? COLOR_TEXT : COLOR_TEXT_NOTEXISTS);
-						g2.drawString(Character.toString(ch), border+ix*fieldWidth+offsetX, border+iy*fieldHeight+offsetY);
-						++ix;
-					}
-					++iy;
-				}
-				
-			}
+		boolean hasChanges() {
+			return !changedGlyphs.isEmpty();
 		}
-		
-	}
-	
-	private static class ThickLines implements EditorViewFeature
-	{
-		private static final Color COLOR_THICKLINES  = new Color(0xf0f0f0);
-		private static final Color COLOR_THICKLINES2 = new Color(0xe0e0e0);
-		private static final Color COLOR_THICKLINES3 = new Color(0xd0d0d0);
-		
-		private boolean showThickLines = true;
-		private float thickLinesWidth = 20f;
-		private JCheckBoxMenuItem miShowThickLines = null;
-		private Component editorView = null;
-		
+
+		private void clear() {
+			glyphs = new HashMap<>();
+			storedGlyphs = new HashMap<>();
+			source = bundledSource;
+			complete = !hasSource();
+			changedGlyphs.clear();
+		}
+
+		/**
+		 * @return <code>true</code>, if a glyph was replaced
+		 */
+		private boolean put(char ch, Form[] forms) {
+			boolean wasStored = storedGlyphs.remove(ch)!=null;
+			return glyphs.put(ch, forms)!=null || wasStored;
+		}
+
+		/**
+		 * Moves all editable forms into the {@link GlyphStore}.
+		 */
+		private void park() {
+			for (Map.Entry<Character, Form[]> entry : glyphs.entrySet())
+				storedGlyphs.put(entry.getKey(), GlyphStore.intern(entry.getValue()));
+			glyphs = new HashMap<>();
+			GLYPH_STORE_FORMS .record(GlyphStore.getFormCount());
+			GLYPH_STORE_GLYPHS.record(GlyphStore.getGlyphCount());
+		}
+
+		/**
+		 * @return number of forms of a glyph in memory or -1, if the glyph isn't in memory
+		 */
+		private int getFormCount(char ch) {
+			Form[] forms = glyphs.get(ch);
+			if (forms!=null) return forms.length;
+			GlyphStore.GlyphSnapshot stored = storedGlyphs.get(ch);
+			return stored==null ? -1 : stored.getFormCount();
+		}
+
+		/**
+		 * @return the forms of a glyph (copies, if the glyph is stored or in the source) without making it editable, or an empty array
+		 */
+		private Form[] peekForms(char ch, Form.Factory factory) {
+			Form[] forms = glyphs.get(ch);
+			if (forms!=null) return forms;
+			GlyphStore.GlyphSnapshot stored = storedGlyphs.get(ch);
+			if (stored!=null) return stored.createForms(factory);
+			forms = source!=null && source.contains(ch) ? source.decode(ch, factory) : null;
+			return forms==null ? new Form[0] : forms;
+		}
+
+		/**
+		 * @return the immutable snapshot of a glyph (the stored one, if the glyph is stored)
+		 */
+		private GlyphStore.GlyphSnapshot snapshotGlyph(char ch, Form.Factory factory) {
+			GlyphStore.GlyphSnapshot stored = storedGlyphs.get(ch);
+			if (stored!=null) return stored;
+			return GlyphStore.intern(peekForms(ch, factory));
+		}
+
+		/**
+		 * Packs all glyphs of a font without source or with a packed source into a new {@link PackedGlyphStore}, that becomes the source of the font.
+		 * @param editedChar char, that stays editable
+		 * @return the store or <code>null</code>, if the font has another source (e.g. a mapped binary font file)
+		 */
+		private PackedGlyphStore pack(Character editedChar) {
+			if (source!=null && !(source instanceof PackedGlyphStore)) return null;
+			PackedGlyphStore.Builder builder = new PackedGlyphStore.Builder();
+			if (source!=null)
+				for (char ch : source.getChars())
+					if (!glyphs.containsKey(ch) && !storedGlyphs.containsKey(ch))
+						builder.add(ch, source.decode(ch, LineEditor.createFormFactory()));
+			for (Map.Entry<Character, GlyphStore.GlyphSnapshot> entry : storedGlyphs.entrySet())
+				builder.add(entry.getKey(), entry.getValue().createForms(LineEditor.createFormFactory()));
+			for (Map.Entry<Character, Form[]> entry : glyphs.entrySet())
+				if (!entry.getKey().equals(editedChar))
+					builder.add(entry.getKey(), entry.getValue());
+			Form[] editedForms = editedChar==null ? null : glyphs.get(editedChar);
+			glyphs = new HashMap<>();
+			if (editedForms!=null) glyphs.put(editedChar, editedForms);
+			storedGlyphs = new HashMap<>();
+			PackedGlyphStore store = builder.build();
+			source = store;
+			return store;
+		}
+
 		@Override
-		public void setEditorView(Component editorView)
-		{
-			this.editorView = editorView;
+		public boolean hasGlyph(char ch) {
+			int count = getFormCount(ch);
+			if (count>=0) return count>0;
+			return source!=null && source.contains(ch);
 		}
-		
-		private boolean isShowThickLines  () { return showThickLines ; }
-		private float   getThickLinesWidth() { return thickLinesWidth; }
-		private void setShowThickLines (boolean showThickLines ) { this.showThickLines  = showThickLines ; editorView.repaint(); }
-		private void setThickLinesWidth(float   thickLinesWidth) { this.thickLinesWidth = thickLinesWidth; editorView.repaint(); }
 
+		/**
+		 * @return the editable forms of a glyph, if it's edited, otherwise a copy of the forms in the {@link GlyphStore} or in the source
+		 */
 		@Override
-		public void addToEditorViewContextMenu(JPopupMenu contextMenu)
-		{
-			contextMenu.addSeparator();
-			contextMenu.add(miShowThickLines = createCheckBoxMI("Show Thick Lines", isShowThickLines(), this::setShowThickLines   ));
-			contextMenu.add(createMenuItem("Set line width ...", e->{
-				float width = getThickLinesWidth();
-				String result = JOptionPane.showInputDialog(editorView, "Set width of thick lines:", width);
-				if (result!=null) {
-					try { setThickLinesWidth(Float.parseFloat(result)); }
-					catch (NumberFormatException e1) {
-						String message = "Error: Can't convert input into numeric value.";
-						JOptionPane.showMessageDialog(editorView, message, "Error", JOptionPane.ERROR_MESSAGE);
-					}
-				}
-			}));
+		public Form[] getForms(Character ch) {
+			if (ch==null) return null;
+			Form[] forms = glyphs.get(ch);
+			if (forms!=null) return forms;
+			GlyphStore.GlyphSnapshot stored = storedGlyphs.get(ch);
+			if (stored!=null) return stored.createForms(LineEditor.createFormFactory());
+			return source!=null && source.contains(ch) ? source.decode(ch, LineEditor.createFormFactory()) : null;
 		}
-		
+
+		/**
+		 * Edited and stored glyphs are captured as immutable snapshots right now, glyphs of the source are decoded later.
+		 */
 		@Override
-		public void prepareContextMenuToShow()
-		{
-			miShowThickLines.setSelected(isShowThickLines());
+		public Supplier<Form[]> getFormsLater(char ch) {
+			if (glyphs.containsKey(ch) || storedGlyphs.containsKey(ch)) {
+				GlyphStore.GlyphSnapshot glyph = snapshotGlyph(ch, LineEditor.createFormFactory());
+				return () -> glyph.createForms(LineEditor.createFormFactory());
+			}
+			GlyphSource source = this.source;
+			if (source==null || !source.contains(ch)) return null;
+			return () -> source.decode(ch, LineEditor.createFormFactory());
 		}
-		
+
+		/**
+		 * @return the forms of a glyph, that are kept as the current state of the glyph, so they can be edited
+		 */
+		Form[] getEditableForms(Character ch) {
+			if (ch==null) return null;
+			Form[] forms = glyphs.get(ch);
+			if (forms!=null) return forms;
+			GlyphStore.GlyphSnapshot stored = storedGlyphs.remove(ch);
+			if (stored!=null)
+				forms = stored.createForms(LineEditor.createFormFactory());
+			else if (source!=null && source.contains(ch))
+				forms = source.decode(ch, LineEditor.createFormFactory());
+			if (forms!=null) glyphs.put(ch, forms);
+			return forms;
+		}
+
 		@Override
-		public void draw(Graphics2D g2, int x, int y, int width, int height, ZoomableCanvas.ViewState viewState, Iterable<? extends FeatureLineForm> forms)
-		{
-			if (forms!=null && showThickLines) {
-				float lineWidth = viewState.convertLength_LengthToScreenF((double) thickLinesWidth).floatValue();
-				
-				g2.setColor(COLOR_THICKLINES);
-				g2.setStroke(new BasicStroke(lineWidth,BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
-				for (FeatureLineForm form : forms) form.drawLines(g2,viewState);
-				
-				g2.setColor(COLOR_THICKLINES2);
-				g2.setStroke(new BasicStroke(lineWidth/3*2,BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
-				for (FeatureLineForm form : forms) form.drawLines(g2,viewState);
-				
-				g2.setColor(COLOR_THICKLINES3);
-				g2.setStroke(new BasicStroke(lineWidth/3,BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND));
-				for (FeatureLineForm form : forms) form.drawLines(g2,viewState);
-				
-				g2.setStroke(new BasicStroke(1f));
+		public char[] getChars() {
+			StringBuilder sb = new StringBuilder();
+			if (source!=null)
+				for (char ch : source.getChars())
+					if (getFormCount(ch)!=0) sb.append(ch);
+			HashSet<Character> inMemory = new HashSet<>(glyphs.keySet());
+			inMemory.addAll(storedGlyphs.keySet());
+			for (char ch : inMemory)
+				if (getFormCount(ch)>0 && (source==null || !source.contains(ch))) sb.append(ch);
+			char[] chars = sb.toString().toCharArray();
+			Arrays.sort(chars);
+			return chars;
+		}
+
+		int getGlyphCount() {
+			if (source==null) return glyphs.size()+storedGlyphs.size();
+			int count = source.size();
+			for (Character ch : glyphs.keySet())
+				if (!source.contains(ch)) count++;
+			for (Character ch : storedGlyphs.keySet())
+				if (!source.contains(ch)) count++;
+			return count;
+		}
+
+		/**
+		 * @return a read-only view of the current glyphs of this font, that can be used by other threads.
+		 * Later changes of this font don't affect the view, except of changes of the editable forms, that are shared with the view.
+		 */
+		CharRaster.GlyphProvider createView() {
+			return new View(new HashMap<>(glyphs), new HashMap<>(storedGlyphs), source, getChars());
+		}
+
+		private static class View implements CharRaster.GlyphProvider {
+			private final HashMap<Character, Form[]> glyphs;
+			private final HashMap<Character, GlyphStore.GlyphSnapshot> storedGlyphs;
+			private final GlyphSource source;
+			private final char[] chars;
+
+			View(HashMap<Character, Form[]> glyphs, HashMap<Character, GlyphStore.GlyphSnapshot> storedGlyphs, GlyphSource source, char[] chars) {
+				this.glyphs = glyphs;
+				this.storedGlyphs = storedGlyphs;
+				this.source = source;
+				this.chars = chars;
+			}
+
+			@Override public boolean hasGlyph(char ch) { return Arrays.binarySearch(chars, ch)>=0; }
+			@Override public char[] getChars() { return chars; }
+
+			@Override
+			public Form[] getForms(Character ch) {
+				if (ch==null) return null;
+				Form[] forms = glyphs.get(ch);
+				if (forms!=null) return forms;
+				GlyphStore.GlyphSnapshot stored = storedGlyphs.get(ch);
+				if (stored!=null) return stored.createForms(LineEditor.createFormFactory());
+				if (source!=null && source.contains(ch)) return source.decode(ch, LineEditor.createFormFactory());
+				return null;
 			}
 		}
+
+		/**
+		 * @return all glyphs of this font without changing it. A font, that isn't loaded completely, is read from its file first.
+		 */
+		private HashMap<Character, Form[]> collectGlyphs(Form.Factory factory) throws IOException {
+			HashMap<Character, Form[]> allGlyphs = new HashMap<>();
+			if (!complete)
+				allGlyphs.putAll(FontLoader.readFont(isDefault ? null : file, factory));
+			else if (source!=null)
+				for (char ch : source.getChars())
+					allGlyphs.put(ch, source.decode(ch, factory));
+			for (Map.Entry<Character, GlyphStore.GlyphSnapshot> entry : storedGlyphs.entrySet())
+				allGlyphs.put(entry.getKey(), entry.getValue().createForms(factory));
+			allGlyphs.putAll(glyphs);
+			allGlyphs.values().removeIf(forms -> forms==null || forms.length==0);
+			return allGlyphs;
+		}
+
+		/**
+		 * Makes all glyphs editable and releases the glyph source.
+		 * Glyphs of a {@link PackedGlyphStore} are only copied, because it doesn't depend on the font file.
+		 * @return all glyphs of the font
+		 */
+		private HashMap<Character, Form[]> decodeAllGlyphs() {
+			Form.Factory factory = LineEditor.createFormFactory();
+			if (source instanceof PackedGlyphStore) {
+				HashMap<Character, Form[]> allGlyphs = new HashMap<>();
+				for (char ch : source.getChars())
+					allGlyphs.put(ch, source.decode(ch, factory));
+				for (Map.Entry<Character, GlyphStore.GlyphSnapshot> entry : storedGlyphs.entrySet())
+					allGlyphs.put(entry.getKey(), entry.getValue().createForms(factory));
+				allGlyphs.putAll(glyphs);
+				return allGlyphs;
+			}
+			for (Map.Entry<Character, GlyphStore.GlyphSnapshot> entry : storedGlyphs.entrySet())
+				glyphs.put(entry.getKey(), entry.getValue().createForms(factory));
+			storedGlyphs = new HashMap<>();
+			if (source!=null) {
+				for (char ch : source.getChars())
+					if (!glyphs.containsKey(ch))
+						glyphs.put(ch, source.decode(ch, factory));
+				source = null;
+			}
+			return glyphs;
+		}
+	}
+
+	private static class StatusBar extends JPanel {
+		private static final long serialVersionUID = -3725260317463425873L;
 		
+		private final JLabel label;
+		private final JProgressBar progressBar;
+		private final JButton cancelButton;
+		private Runnable cancelAction;
+
+		StatusBar() {
+			super(new BorderLayout(3,3));
+			cancelAction = null;
+			label = new JLabel(" ");
+			progressBar = new JProgressBar(0,100);
+			progressBar.setStringPainted(true);
+			cancelButton = new JButton("Cancel");
+			cancelButton.addActionListener(e->{ if (cancelAction!=null) cancelAction.run(); });
+			
+			JPanel taskPanel = new JPanel(new BorderLayout(3,3));
+			taskPanel.add(progressBar,BorderLayout.CENTER);
+			taskPanel.add(cancelButton,BorderLayout.EAST);
+			
+			add(label,BorderLayout.CENTER);
+			add(taskPanel,BorderLayout.EAST);
+			setTaskVisible(false);
+		}
+
+		private void setTaskVisible(boolean isVisible) {
+			progressBar.setVisible(isVisible);
+			cancelButton.setVisible(isVisible);
+		}
+
+		void startTask(String title, Runnable cancelAction) {
+			this.cancelAction = cancelAction;
+			label.setText(title);
+			progressBar.setValue(0);
+			setTaskVisible(true);
+		}
+
+		void setProgress(int percent) {
+			progressBar.setValue(percent);
+		}
+
+		/**
+		 * Shows a message. A running task stays cancelable.
+		 */
+		void showMessage(String message) {
+			label.setText(message);
+		}
+
+		void endTask(String message) {
+			cancelAction = null;
+			label.setText(message);
+			setTaskVisible(false);
+		}
 	}
 }
@@ -0,0 +1,79 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+/**
+ * Writes files via a temporary file in the same folder, which replaces the target file by an atomic rename.
+ * A crash while writing leaves the previous version of the target file intact.
+ * <p>
+ * On Windows a file can't be replaced, as long as it's mapped into memory (e.g. an open {@link BinaryFontFormat.MappedFont}).
+ * A mapping is released only, when its buffer is garbage collected. So all references to a mapped target file have to be dropped
+ * before it's written, and the replacement is retried after a garbage collection.
+ */
+final class AtomicFile {
+
+	private static final int MAX_REPLACE_ATTEMPTS = 5;
+
+	private AtomicFile() {}
+
+	interface Writer {
+		void write(OutputStream out) throws IOException;
+	}
+
+	static void write(File file, Writer writer) throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString()+".", ".tmp");
+		try {
+			try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+				BufferedOutputStream out = new BufferedOutputStream(stream);
+				writer.write(out);
+				out.flush();
+				stream.getFD().sync();
+			}
+			replace(temp, target);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static void replace(Path temp, Path target) throws IOException {
+		for (int attempt=1; ; attempt++) {
+			try {
+				try {
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+				return;
+			} catch (FileSystemException e) {
+				if (attempt>=MAX_REPLACE_ATTEMPTS || !Files.exists(temp)) throw e;
+				// releases mappings of the target file, that aren't referenced anymore
+				System.gc();
+				try { Thread.sleep(20L*attempt); }
+				catch (InterruptedException ex) { Thread.currentThread().interrupt(); throw e; }
+			}
+		}
+	}
+
+	static void writeText(File file, Consumer<PrintWriter> writer) throws IOException {
+		write(file, stream -> {
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+			writer.accept(out);
+			out.flush();
+			if (out.checkError()) throw new IOException(String.format("Can't write to file \"%s\"", file));
+		});
+	}
+}
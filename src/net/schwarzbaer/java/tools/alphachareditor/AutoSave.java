@@ -0,0 +1,161 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Writes snapshots of unsaved changes in the background.
+ * Bursts of changes are coalesced: a snapshot is written, if there was no change for a short time
+ * or if changes are made continuously for a longer time.
+ * Snapshots are captured on the event thread, but formatted and written on a background thread.
+ * Snapshot files are deleted immediately, so a snapshot of changes, that were saved, doesn't survive the application.
+ * All methods except {@link #getSnapshotFile(File)} have to be called on the event thread.
+ */
+class AutoSave {
+
+	private static final String EXTENSION = ".autosave";
+	private static final String UNTITLED_SNAPSHOT = "AlphaCharEditor.untitled"+EXTENSION;
+	private static final Metrics.Metric SNAPSHOT_TIME = Metrics.timer("AutoSave.createSnapshot");
+	private static final Metrics.Metric WRITE_TIME    = Metrics.timer("AutoSave.write");
+
+	interface SnapshotSource {
+		/** @return the snapshot of all unsaved changes or <code>null</code>, if there are none */
+		Snapshot createSnapshot();
+		File getSnapshotFile();
+		/** @param message describes a snapshot file, that can't be written or deleted */
+		void snapshotFailed(String message);
+	}
+
+	/**
+	 * Immutable state of all unsaved changes. It's written on the background thread.
+	 */
+	interface Snapshot {
+		void writeTo(PrintWriter out);
+	}
+
+	private final SnapshotSource source;
+	private final int maxDelay_ms;
+	private final Timer timer;
+	private final ExecutorService writer;
+	private long firstChange_ms;
+	private File lastSnapshotFile;
+	/** number of deletions of each snapshot file, so writes queued before a deletion are skipped; is the lock of all file operations */
+	private final HashMap<File, Integer> deletions = new HashMap<>();
+
+	AutoSave(int delay_ms, int maxDelay_ms, SnapshotSource source) {
+		this.source = source;
+		this.maxDelay_ms = maxDelay_ms;
+		AlphaCharEditor.Assert(this.source!=null);
+		firstChange_ms = -1;
+		lastSnapshotFile = null;
+		timer = new Timer(delay_ms, e->writeSnapshot());
+		timer.setRepeats(false);
+		writer = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "AutoSave");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	static File getSnapshotFile(File projectFile) {
+		if (projectFile==null) return new File(System.getProperty("java.io.tmpdir"), UNTITLED_SNAPSHOT);
+		return new File(projectFile.getPath()+EXTENSION);
+	}
+
+	/**
+	 * @return <code>true</code>, if the snapshot file exists and is newer than the project file
+	 */
+	static boolean hasRecoverableSnapshot(File projectFile) {
+		File snapshotFile = getSnapshotFile(projectFile);
+		if (!snapshotFile.isFile()) return false;
+		return projectFile==null || !projectFile.isFile() || snapshotFile.lastModified() >= projectFile.lastModified();
+	}
+
+	void changed() {
+		long now = System.currentTimeMillis();
+		if (firstChange_ms<0) firstChange_ms = now;
+		if (now-firstChange_ms >= maxDelay_ms)
+			writeSnapshot();
+		else
+			timer.restart();
+	}
+
+	/**
+	 * Has to be called after the project or the font was saved.
+	 * The snapshot is removed, if nothing unsaved is left, otherwise it's updated.
+	 */
+	void saved() {
+		writeSnapshot();
+	}
+
+	/**
+	 * Writes pending changes immediately, e.g. before another project is loaded.
+	 */
+	void flush() {
+		if (timer.isRunning()) writeSnapshot();
+	}
+
+	void discard(File projectFile) {
+		deleteSnapshot(getSnapshotFile(projectFile));
+	}
+
+	private void writeSnapshot() {
+		timer.stop();
+		firstChange_ms = -1;
+
+		File snapshotFile = source.getSnapshotFile();
+		long start = System.nanoTime();
+		Snapshot snapshot = source.createSnapshot();
+		SNAPSHOT_TIME.stop(start);
+		if (lastSnapshotFile!=null && !lastSnapshotFile.equals(snapshotFile))
+			deleteSnapshot(lastSnapshotFile);
+		lastSnapshotFile = snapshotFile;
+
+		if (snapshot==null) {
+			deleteSnapshot(snapshotFile);
+			return;
+		}
+		int deletionCount = getDeletionCount(snapshotFile);
+		writer.execute(() -> {
+			synchronized (deletions) {
+				if (getDeletionCount(snapshotFile)!=deletionCount) return;
+				try {
+					long writeStart = System.nanoTime();
+					AtomicFile.writeText(snapshotFile, snapshot::writeTo);
+					WRITE_TIME.stop(writeStart);
+				} catch (IOException e) {
+					String message = String.format("Can't write autosave snapshot \"%s\": %s", snapshotFile, e.getMessage());
+					SwingUtilities.invokeLater(() -> source.snapshotFailed(message));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Deletes a snapshot file immediately. Waits for a running write of it.
+	 */
+	private void deleteSnapshot(File snapshotFile) {
+		synchronized (deletions) {
+			deletions.merge(snapshotFile, 1, Integer::sum);
+			try {
+				Files.deleteIfExists(snapshotFile.toPath());
+			} catch (IOException e) {
+				source.snapshotFailed(String.format("Can't delete autosave snapshot \"%s\": %s", snapshotFile, e.getMessage()));
+			}
+		}
+	}
+
+	private int getDeletionCount(File snapshotFile) {
+		synchronized (deletions) {
+			return deletions.getOrDefault(snapshotFile, 0);
+		}
+	}
+}
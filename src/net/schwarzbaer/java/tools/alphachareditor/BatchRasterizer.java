@@ -0,0 +1,329 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.imageio.ImageIO;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+/**
+ * Headless rasterizer, that renders all glyphs of a font into a texture atlas (PNG) with a metrics file next to it.
+ * Glyphs are drawn as thick lines with round caps (like {@link ThickLines}).
+ * Optionally a signed distance field of the same layout is written (distance to the center lines minus half the line width).
+ * Glyphs are rasterized in parallel on a fork-join pool.
+ * <p>
+ * Usage: <code>AlphaCharEditor -rasterize [options] (&lt;font file&gt; | -default) &lt;output base name&gt;</code>
+ */
+final class BatchRasterizer {
+
+	static final String COMMAND_LINE_SWITCH = "-rasterize";
+
+	/** height of the guide line box in model units, that is mapped to <code>size</code> pixels */
+	private static final double MODEL_HEIGHT = 100;
+	private static final double FLATNESS = 0.1;
+	private static final int SPLIT_THRESHOLD = 8;
+
+	private final double scale;
+	private final double strokeWidth;
+	private final int sdfSpread;
+	private final int padding;
+
+	private BatchRasterizer(int size, double strokeWidth, int sdfSpread) {
+		this.scale = size/MODEL_HEIGHT;
+		this.strokeWidth = strokeWidth*scale;
+		this.sdfSpread = sdfSpread;
+		this.padding = 1+Math.max(0, sdfSpread);
+	}
+
+	static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		int size = 32;
+		double strokeWidth = 20;
+		int sdfSpread = 0;
+		int atlasWidth = 1024;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File fontFile = null;
+		boolean defaultFont = false;
+		String outputBase = null;
+
+		try {
+			for (int i=0; i<args.length; i++) {
+				switch (args[i]) {
+				case "-size"      : size        = Integer.parseInt  (args[++i]); break;
+				case "-stroke"    : strokeWidth = Double .parseDouble(args[++i]); break;
+				case "-sdf"       : sdfSpread   = Integer.parseInt  (args[++i]); break;
+				case "-atlasWidth": atlasWidth  = Integer.parseInt  (args[++i]); break;
+				case "-threads"   : threads     = Integer.parseInt  (args[++i]); break;
+				case "-default"   : defaultFont = true; break;
+				default:
+					if (!defaultFont && fontFile==null) fontFile = new File(args[i]);
+					else if (outputBase==null) outputBase = args[i];
+					else throw new IllegalArgumentException("Unexpected argument: "+args[i]);
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.printf("Error: %s%n", e.getMessage());
+			outputBase = null;
+		}
+		if (outputBase==null || (fontFile==null && !defaultFont) || size<=0 || strokeWidth<=0 || sdfSpread<0 || atlasWidth<=0 || threads<=0) {
+			printUsage();
+			System.exit(1);
+			return;
+		}
+
+		try {
+			HashMap<Character, Form[]> font = FontLoader.readFont(defaultFont ? null : fontFile, LineEditor.createFormFactory());
+			new BatchRasterizer(size, strokeWidth, sdfSpread).rasterize(font, atlasWidth, threads, outputBase);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private static void printUsage() {
+		System.out.printf("Usage: AlphaCharEditor %s [options] (<font file> | -default) <output base name>%n", COMMAND_LINE_SWITCH);
+		System.out.printf("Options:%n");
+		System.out.printf("   -size <px>           pixel height of the guide line box (100 units)  [32]%n");
+		System.out.printf("   -stroke <units>      line width in model units                        [20]%n");
+		System.out.printf("   -sdf <px>            write a signed distance field with this spread   [off]%n");
+		System.out.printf("   -atlasWidth <px>     width of the atlas                               [1024]%n");
+		System.out.printf("   -threads <n>         number of threads                                [all cores]%n");
+		System.out.printf("Writes <output base name>.png, <output base name>.sdf.png and <output base name>.metrics%n");
+	}
+
+	private void rasterize(HashMap<Character, Form[]> font, int atlasWidth, int threads, String outputBase) throws IOException {
+		char[] chars = new char[font.size()];
+		int n = 0;
+		for (Character ch : font.keySet()) chars[n++] = ch;
+		Arrays.sort(chars);
+
+		Glyph[] glyphs = new Glyph[chars.length];
+		for (int i=0; i<chars.length; i++)
+			glyphs[i] = new Glyph(chars[i], Forms.createPath(font.get(chars[i])));
+
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new RasterizeTask(glyphs, 0, glyphs.length));
+		} finally {
+			pool.shutdown();
+		}
+
+		int atlasHeight = pack(glyphs, atlasWidth);
+		if (atlasHeight<0) throw new IOException(String.format("Atlas width %d is too small for the largest glyph", atlasWidth));
+
+		writeAtlas(new File(outputBase+".png"), glyphs, atlasWidth, atlasHeight, false);
+		if (sdfSpread>0)
+			writeAtlas(new File(outputBase+".sdf.png"), glyphs, atlasWidth, atlasHeight, true);
+		writeMetrics(new File(outputBase+".metrics"), glyphs, atlasWidth, atlasHeight);
+		System.out.printf("%d glyphs rasterized with %d thread(s) into a %d x %d atlas in %1.1f ms%n", glyphs.length, threads, atlasWidth, atlasHeight, (System.nanoTime()-start)/1e6);
+	}
+
+	private class RasterizeTask extends RecursiveAction {
+		private static final long serialVersionUID = 2941358385315302247L;
+		private final Glyph[] glyphs;
+		private final int from;
+		private final int to;
+
+		RasterizeTask(Glyph[] glyphs, int from, int to) {
+			this.glyphs = glyphs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to-from <= SPLIT_THRESHOLD) {
+				for (int i=from; i<to; i++)
+					rasterize(glyphs[i]);
+				return;
+			}
+			int mid = (from+to)>>>1;
+			invokeAll(new RasterizeTask(glyphs, from, mid), new RasterizeTask(glyphs, mid, to));
+		}
+	}
+
+	private static class Glyph {
+		final char ch;
+		final Path2D.Double path;
+		int width, height;
+		double originX, originY;
+		byte[] bitmap;
+		byte[] sdf;
+		int atlasX, atlasY;
+
+		Glyph(char ch, Path2D.Double path) {
+			this.ch = ch;
+			this.path = path;
+		}
+	}
+
+	private void rasterize(Glyph glyph) {
+		Rectangle2D bounds = glyph.path.getBounds2D();
+		if (glyph.path.getCurrentPoint()==null) return; // empty glyph
+
+		double margin = strokeWidth/2 + padding;
+		double minX = Math.floor(bounds.getMinX()*scale - margin);
+		double minY = Math.floor(bounds.getMinY()*scale - margin);
+		glyph.width  = (int) Math.ceil(bounds.getMaxX()*scale + margin - minX);
+		glyph.height = (int) Math.ceil(bounds.getMaxY()*scale + margin - minY);
+		glyph.originX = -minX;
+		glyph.originY = -minY;
+
+		AffineTransform transform = new AffineTransform();
+		transform.translate(glyph.originX, glyph.originY);
+		transform.scale(scale, scale);
+
+		BufferedImage image = new BufferedImage(glyph.width, glyph.height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g2 = image.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		g2.setColor(Color.WHITE);
+		g2.setStroke(new BasicStroke((float) strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+		g2.draw(glyph.path.createTransformedShape(transform));
+		g2.dispose();
+		glyph.bitmap = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+
+		if (sdfSpread>0)
+			glyph.sdf = computeSDF(glyph.path, transform, glyph.width, glyph.height);
+	}
+
+	/**
+	 * Computes a signed distance field: the distance of each pixel center to the flattened center lines minus half the line width.
+	 * Values are mapped from [-spread, +spread] to [255, 0], so inside the lines is above 128.
+	 */
+	private byte[] computeSDF(Path2D.Double path, AffineTransform transform, int width, int height) {
+		float[] minDistSq = new float[width*height];
+		Arrays.fill(minDistSq, Float.POSITIVE_INFINITY);
+		double range = strokeWidth/2 + sdfSpread;
+
+		double[] coords = new double[6];
+		double startX = 0, startY = 0, lastX = 0, lastY = 0;
+		for (PathIterator it = new FlatteningPathIterator(path.getPathIterator(transform), FLATNESS); !it.isDone(); it.next()) {
+			switch (it.currentSegment(coords)) {
+			case PathIterator.SEG_MOVETO:
+				startX = lastX = coords[0];
+				startY = lastY = coords[1];
+				addSegment(minDistSq, width, height, range, lastX, lastY, lastX, lastY);
+				break;
+			case PathIterator.SEG_LINETO:
+				addSegment(minDistSq, width, height, range, lastX, lastY, coords[0], coords[1]);
+				lastX = coords[0];
+				lastY = coords[1];
+				break;
+			case PathIterator.SEG_CLOSE:
+				addSegment(minDistSq, width, height, range, lastX, lastY, startX, startY);
+				lastX = startX;
+				lastY = startY;
+				break;
+			}
+		}
+
+		byte[] sdf = new byte[width*height];
+		double halfWidth = strokeWidth/2;
+		for (int i=0; i<sdf.length; i++) {
+			double d = Math.sqrt(minDistSq[i]) - halfWidth;
+			double v = 0.5 - d/(2*sdfSpread);
+			sdf[i] = (byte) Math.round(255*Math.max(0, Math.min(1, v)));
+		}
+		return sdf;
+	}
+
+	private static void addSegment(float[] minDistSq, int width, int height, double range, double x1, double y1, double x2, double y2) {
+		int xMin = Math.max(0       , (int) Math.floor(Math.min(x1, x2)-range));
+		int xMax = Math.min(width -1, (int) Math.ceil (Math.max(x1, x2)+range));
+		int yMin = Math.max(0       , (int) Math.floor(Math.min(y1, y2)-range));
+		int yMax = Math.min(height-1, (int) Math.ceil (Math.max(y1, y2)+range));
+
+		double dx = x2-x1;
+		double dy = y2-y1;
+		double lengthSq = dx*dx+dy*dy;
+		for (int y=yMin; y<=yMax; y++) {
+			double py = y+0.5;
+			for (int x=xMin; x<=xMax; x++) {
+				double px = x+0.5;
+				double t = lengthSq==0 ? 0 : Math.max(0, Math.min(1, ((px-x1)*dx + (py-y1)*dy)/lengthSq));
+				double ex = px - (x1+t*dx);
+				double ey = py - (y1+t*dy);
+				float distSq = (float) (ex*ex+ey*ey);
+				int i = y*width+x;
+				if (distSq<minDistSq[i]) minDistSq[i] = distSq;
+			}
+		}
+	}
+
+	/**
+	 * Packs the glyphs into shelves (rows) sorted by height.
+	 * @return height of the atlas or -1, if a glyph doesn't fit into the atlas width
+	 */
+	private static int pack(Glyph[] glyphs, int atlasWidth) {
+		Glyph[] sorted = glyphs.clone();
+		Arrays.sort(sorted, (g1, g2) -> Integer.compare(g2.height, g1.height));
+
+		int x = 0, y = 0, shelfHeight = 0;
+		for (Glyph glyph : sorted) {
+			if (glyph.width==0 || glyph.height==0) continue;
+			if (glyph.width>atlasWidth) return -1;
+			if (x+glyph.width>atlasWidth) {
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
+			}
+			glyph.atlasX = x;
+			glyph.atlasY = y;
+			x += glyph.width;
+			shelfHeight = Math.max(shelfHeight, glyph.height);
+		}
+		return Math.max(1, y+shelfHeight);
+	}
+
+	private static void writeAtlas(File file, Glyph[] glyphs, int atlasWidth, int atlasHeight, boolean sdf) throws IOException {
+		BufferedImage atlas = new BufferedImage(atlasWidth, atlasHeight, BufferedImage.TYPE_BYTE_GRAY);
+		for (Glyph glyph : glyphs) {
+			byte[] data = sdf ? glyph.sdf : glyph.bitmap;
+			if (data!=null)
+				atlas.getRaster().setDataElements(glyph.atlasX, glyph.atlasY, glyph.width, glyph.height, data);
+		}
+		AtomicFile.write(file, out -> {
+			if (!ImageIO.write(atlas, "png", out))
+				throw new IOException("No PNG writer available");
+		});
+	}
+
+	private void writeMetrics(File file, Glyph[] glyphs, int atlasWidth, int atlasHeight) throws IOException {
+		AtomicFile.writeText(file, out -> {
+			out.printf(Locale.ENGLISH, "# AlphaChar font atlas%n");
+			out.printf(Locale.ENGLISH, "atlas=%d,%d%n", atlasWidth, atlasHeight);
+			out.printf(Locale.ENGLISH, "scale_px=%s%n", scale);
+			out.printf(Locale.ENGLISH, "lineWidth_px=%s%n", strokeWidth);
+			out.printf(Locale.ENGLISH, "sdfSpread_px=%d%n", sdfSpread);
+			out.printf(Locale.ENGLISH, "# char, x, y, width, height, originX, originY (position of model point (0,0) in the glyph rectangle)%n");
+			for (Glyph glyph : glyphs)
+				writeMetrics(out, glyph);
+		});
+	}
+
+	private static void writeMetrics(PrintWriter out, Glyph glyph) {
+		out.printf(Locale.ENGLISH, "U+%04X,%d,%d,%d,%d,%1.3f,%1.3f%n", (int) glyph.ch, glyph.atlasX, glyph.atlasY, glyph.width, glyph.height, glyph.originX, glyph.originY);
+	}
+}
@@ -0,0 +1,326 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Binary font format with a glyph offset table.
+ * <pre>
+ * Header     : int magic "ACFB", short version, short reserved, int glyphCount
+ * Glyph table: glyphCount entries sorted by char { char ch, short formCount, int offset, int length }
+ * Glyph data : per form { byte tag (bit 7: values stored as float, bit 0-6: form type), short valueCount, values }
+ * </pre>
+ * Values are stored as float only, if this is lossless for all values of a form.
+ * A font in this format is also used as a section of a {@link ProjectBundle}.
+ */
+final class BinaryFontFormat {
+
+	static final String EXTENSION = "AlphaCharFontBin";
+
+	private static final int MAGIC = 0x41434642; // "ACFB"
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int TABLE_ENTRY_SIZE = 12;
+	private static final int FORM_HEADER_SIZE = 3;
+	private static final int FLAG_FLOAT = 0x80;
+	private static final int MAX_COUNT = 0xFFFF;
+	private static final Metrics.Metric OPEN_TIME    = Metrics.timer("BinaryFontFormat.open");
+	private static final Metrics.Metric DECODE_TIME  = Metrics.timer("BinaryFontFormat.decode");
+	private static final Metrics.Metric WRITE_TIME   = Metrics.timer("BinaryFontFormat.write");
+	private static final Metrics.Metric WRITE_GLYPHS = Metrics.value("BinaryFontFormat.write.glyphs");
+
+	private BinaryFontFormat() {}
+
+	static boolean isBinaryFontFile(File file) {
+		return file!=null && file.getName().toLowerCase().endsWith("."+EXTENSION.toLowerCase());
+	}
+
+	static MappedFont open(File file) throws IOException {
+		long start = System.nanoTime();
+		MappedFont font = new MappedFont(file);
+		OPEN_TIME.stop(start);
+		return font;
+	}
+
+	/**
+	 * Opens a binary font, that is a part of a mapped file (e.g. a section of a {@link ProjectBundle}).
+	 * @param buffer contains exactly the binary font
+	 */
+	static MappedFont open(File file, ByteBuffer buffer) throws IOException {
+		long start = System.nanoTime();
+		MappedFont font = new MappedFont(file, buffer.slice());
+		OPEN_TIME.stop(start);
+		return font;
+	}
+
+	static void write(File file, Map<Character, Form[]> font) throws IOException {
+		long start = System.nanoTime();
+		Vector<EncodedGlyph> glyphs = encodeGlyphs(font);
+
+		AtomicFile.write(file, stream -> {
+			DataOutputStream out = new DataOutputStream(stream);
+			writeTo(out, glyphs);
+			out.flush();
+		});
+		WRITE_TIME.stop(start);
+		WRITE_GLYPHS.record(glyphs.size());
+	}
+
+	/**
+	 * @return the complete binary font
+	 */
+	static byte[] encode(Map<Character, Form[]> font) throws IOException {
+		Vector<EncodedGlyph> glyphs = encodeGlyphs(font);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeTo(out, glyphs);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @throws IOException if a glyph has too many forms or a form has too many values for the 16 bit count fields
+	 */
+	private static Vector<EncodedGlyph> encodeGlyphs(Map<Character, Form[]> font) throws IOException {
+		Vector<Character> chars = new Vector<>(font.keySet());
+		chars.sort(null);
+
+		Vector<EncodedGlyph> glyphs = new Vector<>(chars.size());
+		int offset = HEADER_SIZE + TABLE_ENTRY_SIZE*chars.size();
+		for (Character ch : chars) {
+			EncodedGlyph glyph = new EncodedGlyph(ch, font.get(ch), offset);
+			if (glyph.forms.size()>MAX_COUNT)
+				throw new IOException(String.format("Glyph '%s' has too many forms for a binary font (%d > %d)", ch, glyph.forms.size(), MAX_COUNT));
+			for (EncodedForm form : glyph.forms)
+				if (form.values.length>MAX_COUNT)
+					throw new IOException(String.format("A form of glyph '%s' has too many values for a binary font (%d > %d)", ch, form.values.length, MAX_COUNT));
+			if ((long)offset+glyph.length>Integer.MAX_VALUE)
+				throw new IOException("Font is too large for a binary font");
+			glyphs.add(glyph);
+			offset += glyph.length;
+		}
+		return glyphs;
+	}
+
+	private static void writeTo(DataOutputStream out, Vector<EncodedGlyph> glyphs) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeShort(0);
+		out.writeInt(glyphs.size());
+		for (EncodedGlyph glyph : glyphs) {
+			out.writeChar (glyph.ch);
+			out.writeShort(glyph.forms.size());
+			out.writeInt  (glyph.offset);
+			out.writeInt  (glyph.length);
+		}
+		for (EncodedGlyph glyph : glyphs)
+			glyph.writeTo(out);
+	}
+
+	static void convert(File sourceFile, File targetFile, Form.Factory factory) throws IOException {
+		Assert(sourceFile!=null);
+		Assert(targetFile!=null);
+		Assert(factory!=null);
+
+		HashMap<Character, Form[]> font = new HashMap<>();
+		if (isBinaryFontFile(sourceFile)) {
+			MappedFont source = open(sourceFile);
+			for (char ch : source.getChars())
+				font.put(ch, source.decode(ch, factory));
+		} else {
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(sourceFile), StandardCharsets.UTF_8))) {
+				FontTextFormat.read(in, factory, (ch, forms) -> { font.put(ch, forms); return true; });
+			}
+		}
+
+		if (isBinaryFontFile(targetFile))
+			write(targetFile, font);
+		else
+			FontTextFormat.write(targetFile, font);
+	}
+
+	private static boolean isFloatLossless(double[] values) {
+		for (double value : values)
+			if (Double.doubleToLongBits((float) value) != Double.doubleToLongBits(value))
+				return false;
+		return true;
+	}
+
+	private static void Assert(boolean condition) {
+		AlphaCharEditor.Assert(condition);
+	}
+
+	private static class EncodedGlyph {
+		final char ch;
+		final int offset;
+		final int length;
+		final Vector<EncodedForm> forms;
+
+		EncodedGlyph(char ch, Form[] forms, int offset) {
+			this.ch = ch;
+			this.offset = offset;
+			this.forms = new Vector<>();
+			int length = 0;
+			if (forms!=null)
+				for (Form form : forms) {
+					EncodedForm encodedForm = EncodedForm.create(form);
+					if (encodedForm==null) continue;
+					this.forms.add(encodedForm);
+					length += encodedForm.getLength();
+				}
+			this.length = length;
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			for (EncodedForm form : forms)
+				form.writeTo(out);
+		}
+	}
+
+	private static class EncodedForm {
+		final Forms.Type type;
+		final double[] values;
+		final boolean asFloat;
+
+		private EncodedForm(Forms.Type type, double[] values) {
+			this.type = type;
+			this.values = values;
+			this.asFloat = isFloatLossless(values);
+		}
+
+		static EncodedForm create(Form form) {
+			Forms.Type type = Forms.Type.of(form);
+			double[] values = Forms.getValues(form);
+			if (type==null || values==null) return null;
+			return new EncodedForm(type, values);
+		}
+
+		int getLength() {
+			return FORM_HEADER_SIZE + values.length*(asFloat ? 4 : 8);
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			out.writeByte(type.ordinal() | (asFloat ? FLAG_FLOAT : 0));
+			out.writeShort(values.length);
+			for (double value : values)
+				if (asFloat) out.writeFloat((float) value);
+				else         out.writeDouble(value);
+		}
+	}
+
+	static class MappedFont implements GlyphSource {
+
+		private final File file;
+		private final ByteBuffer buffer;
+		private final int glyphCount;
+		private volatile char[] chars;
+
+		private MappedFont(File file) throws IOException {
+			this(file, map(file));
+		}
+
+		private MappedFont(File file, ByteBuffer buffer) throws IOException {
+			this.file = file;
+			this.buffer = buffer;
+			if (buffer.capacity()<HEADER_SIZE || buffer.getInt(0)!=MAGIC)
+				throw new IOException(String.format("File \"%s\" is not a binary font file.", file));
+			if (buffer.getShort(4)!=VERSION)
+				throw new IOException(String.format("Binary font file \"%s\" has an unsupported version: %d", file, buffer.getShort(4)));
+			glyphCount = buffer.getInt(8);
+			if (glyphCount<0 || HEADER_SIZE + (long)glyphCount*TABLE_ENTRY_SIZE > buffer.capacity())
+				throw new IOException(String.format("Binary font file \"%s\" is corrupted.", file));
+			chars = null;
+		}
+
+		private static ByteBuffer map(File file) throws IOException {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		}
+
+		File getFile() {
+			return file;
+		}
+
+		@Override public int size() {
+			return glyphCount;
+		}
+
+		@Override public boolean contains(char ch) {
+			return findEntry(ch)>=0;
+		}
+
+		@Override public char[] getChars() {
+			char[] chars = this.chars;
+			if (chars==null) {
+				chars = new char[glyphCount];
+				for (int i=0; i<glyphCount; i++)
+					chars[i] = buffer.getChar(getEntryPos(i));
+				this.chars = chars;
+			}
+			return chars;
+		}
+
+		@Override public Form[] decode(char ch, Form.Factory factory) {
+			long start = System.nanoTime();
+			int index = findEntry(ch);
+			if (index<0) return null;
+			int entryPos = getEntryPos(index);
+			int formCount = buffer.getShort(entryPos+2) & 0xFFFF;
+			int pos       = buffer.getInt  (entryPos+4);
+
+			Form[] forms = new Form[formCount];
+			for (int i=0; i<formCount; i++) {
+				int tag        = buffer.get     (pos  ) & 0xFF;
+				int valueCount = buffer.getShort(pos+1) & 0xFFFF;
+				pos += FORM_HEADER_SIZE;
+
+				boolean asFloat = (tag & FLAG_FLOAT)!=0;
+				double[] values = new double[valueCount];
+				for (int v=0; v<valueCount; v++) {
+					if (asFloat) { values[v] = buffer.getFloat (pos); pos += 4; }
+					else         { values[v] = buffer.getDouble(pos); pos += 8; }
+				}
+
+				Forms.Type[] types = Forms.Type.values();
+				int typeIndex = tag & ~FLAG_FLOAT;
+				if (typeIndex>=types.length)
+					throw new IllegalStateException(String.format("Unknown form type %d in glyph '%s' of binary font file \"%s\"", typeIndex, ch, file));
+				forms[i] = Forms.create(types[typeIndex], values, factory);
+			}
+			DECODE_TIME.stop(start);
+			return forms;
+		}
+
+		private int getEntryPos(int index) {
+			return HEADER_SIZE + index*TABLE_ENTRY_SIZE;
+		}
+
+		private int findEntry(char ch) {
+			int lo = 0;
+			int hi = glyphCount-1;
+			while (lo<=hi) {
+				int mid = (lo+hi) >>> 1;
+				char midCh = buffer.getChar(getEntryPos(mid));
+				if      (midCh<ch) lo = mid+1;
+				else if (midCh>ch) hi = mid-1;
+				else return mid;
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,455 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.function.Supplier;
+
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.ToolTipManager;
+
+import net.schwarzbaer.java.lib.gui.Canvas;
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+class CharRaster extends Canvas implements Scrollable {
+	private static final Color COLOR_TEXT           = Color.BLACK;
+	private static final Color COLOR_TEXT_NOTEXISTS = Color.LIGHT_GRAY;
+	private static final Color COLOR_BACKGROUND     = Color.WHITE;
+	private static final Color COLOR_CHAR_EXISTS      = new Color(0xf0f0f0);
+	private static final Color COLOR_CHAR_HIGHLIGHTED = Color.CYAN;
+	private static final Color COLOR_CHAR_SELECTED    = Color.GREEN;
+	private static final Color COLOR_MARKER           = Color.RED;
+	private static final int MARKER_SIZE = 6;
+
+	private static final long serialVersionUID = 6444819062135187504L;
+
+	private static final int VISIBLE_COLUMNS = 10;
+	private static final int VISIBLE_ROWS    = 8;
+	private static final int MAX_THUMBNAILS  = 4096;
+	private static final Metrics.Metric PAINT_TIME = Metrics.timer("CharRaster.paint");
+
+	private final int fieldWidth;
+	private final int fieldHeight;
+	private final int offsetX;
+	private final int offsetY;
+	private final int border;
+	private final SelectionListener listener;
+	private final GlyphThumbnails thumbnails;
+
+	private GlyphProvider font = null;
+	private MarkerSource markers = null;
+	private CharBlock block;
+	private char[][] groups;
+	/** index of first field of each group in the list of all fields */
+	private int[] groupStart;
+	/** first row of each group */
+	private int[] groupRow;
+	private int columns;
+	private int rowCount;
+	/** field index of each char or -1, if char isn't shown */
+	private final int[] fieldIndex;
+
+	private int highlightedField = -1;
+	private Character selectedChar = null;
+
+	CharRaster(SelectionListener listener) {
+		this.listener = listener;
+		AlphaCharEditor.Assert(this.listener!=null);
+		this.fieldWidth  = 22;
+		this.fieldHeight = 26;
+		this.offsetX =  8;
+		this.offsetY = 17;
+		this.border = 3;
+		this.thumbnails = new GlyphThumbnails(fieldWidth-4, fieldHeight-4, 1.2f, MAX_THUMBNAILS, this::repaintChar);
+
+		fieldIndex = new int[Character.MAX_VALUE+1];
+		columns = VISIBLE_COLUMNS;
+		setBlock(CharBlock.DEFAULT);
+
+		MouseAdapter m = new MouseAdapter() {
+			@Override public void mouseClicked(MouseEvent e) { setSelectedField   (e.getPoint()); }
+			@Override public void mouseEntered(MouseEvent e) { setHighlightedField(e.getPoint()); }
+			@Override public void mouseMoved  (MouseEvent e) { setHighlightedField(e.getPoint()); }
+			@Override public void mouseExited (MouseEvent e) { setHighlightedField(null); }
+		};
+		addMouseListener(m);
+		addMouseMotionListener(m);
+		ToolTipManager.sharedInstance().registerComponent(this);
+
+		addComponentListener(new ComponentAdapter() {
+			@Override public void componentResized(ComponentEvent e) {
+				int newColumns = computeColumns(getWidth());
+				if (newColumns!=columns) updateLayout(newColumns);
+			}
+		});
+	}
+
+	interface SelectionListener {
+		void selectedCharChanged(Character selectedChar);
+	}
+
+	interface GlyphProvider {
+		boolean hasGlyph(char ch);
+		/** @return all characters of the font in ascending order */
+		char[] getChars();
+		Form[] getForms(Character ch);
+		/**
+		 * @return a task, that creates the forms of a glyph and can run on any thread, or <code>null</code>, if there is no glyph.
+		 * By default the forms are created right now.
+		 */
+		default Supplier<Form[]> getFormsLater(char ch) {
+			Form[] forms = getForms(ch);
+			return forms==null ? null : () -> forms;
+		}
+	}
+
+	/**
+	 * Source of markers (e.g. found problems), that are shown in the fields of chars.
+	 */
+	interface MarkerSource {
+		boolean hasMarker(char ch);
+		/** @return text shown as tool tip of a marked char */
+		String getMarkerText(char ch);
+	}
+
+	void setMarkers(MarkerSource markers) {
+		this.markers = markers;
+		repaint();
+	}
+
+	CharBlock getBlock() {
+		return block;
+	}
+
+	void setBlock(CharBlock block) {
+		AlphaCharEditor.Assert(block!=null);
+		this.block = block;
+		updateGroups();
+	}
+
+	private void updateGroups() {
+		setGroups(block.getGroups(font));
+	}
+
+	private void setGroups(char[][] groups) {
+		this.groups = groups;
+		groupStart = new int[groups.length];
+		Arrays.fill(fieldIndex, -1);
+		int index = 0;
+		for (int g=0; g<groups.length; g++) {
+			groupStart[g] = index;
+			for (char ch : groups[g]) fieldIndex[ch] = index++;
+		}
+		groupRow = new int[groups.length];
+		highlightedField = -1;
+		updateLayout(columns);
+	}
+
+	private int computeColumns(int width) {
+		return Math.max(1, (width-2*border)/fieldWidth);
+	}
+
+	private void updateLayout(int columns) {
+		this.columns = columns;
+		int row = 0;
+		for (int g=0; g<groups.length; g++) {
+			groupRow[g] = row;
+			row += (groups[g].length+columns-1)/columns;
+		}
+		rowCount = row;
+		setPreferredSize(2*border + columns*fieldWidth, 2*border + rowCount*fieldHeight);
+		revalidate();
+		repaint();
+	}
+
+	void updateCharList(GlyphProvider font, Character selectedChar) {
+		this.font = font;
+		this.selectedChar = selectedChar;
+		if (block.dependsOnFont()) updateGroups();
+		else repaint();
+	}
+
+	/**
+	 * Adds chars loaded into the current font. The chars are merged into the char list, which isn't rebuilt from the whole font.
+	 */
+	void addChars(char[] chars) {
+		if (!block.dependsOnFont() || font==null) { repaint(); return; }
+		char[] added = new char[chars.length];
+		int count = 0;
+		for (char ch : chars)
+			if (fieldIndex[ch]<0 && font.hasGlyph(ch)) {
+				fieldIndex[ch] = 0; // marks duplicates in chars
+				added[count++] = ch;
+			}
+		if (count==0) { repaint(); return; }
+		Arrays.sort(added, 0, count);
+
+		char[] current = groups.length==0 ? new char[0] : groups[0];
+		char[] merged = new char[current.length+count];
+		int i = 0, j = 0, k = 0;
+		while (i<current.length && j<count)
+			merged[k++] = current[i]<added[j] ? current[i++] : added[j++];
+		while (i<current.length) merged[k++] = current[i++];
+		while (j<count) merged[k++] = added[j++];
+		setGroups(new char[][] { merged });
+	}
+
+	void updateChar(Character ch) {
+		if (ch==null) return;
+		thumbnails.invalidate(ch);
+		if (block.dependsOnFont() && fieldIndex[ch]<0 && font!=null && font.hasGlyph(ch)) {
+			updateGroups();
+			return;
+		}
+		repaintChar(ch);
+	}
+
+	GlyphThumbnails getThumbnails() {
+		return thumbnails;
+	}
+
+	void invalidateThumbnails() {
+		thumbnails.clear();
+		repaint();
+	}
+
+	private void repaintChar(char ch) {
+		repaintField(fieldIndex[ch]);
+	}
+
+	private void setSelectedField(Point p) {
+		setSelectedChar(getCharAt(getField(p)));
+	}
+
+	/**
+	 * Selects the given char, scrolls it into view and notifies the {@link SelectionListener}.
+	 */
+	void setSelectedChar(Character ch) {
+		if (ch==null ? selectedChar==null : ch.equals(selectedChar)) return;
+		int oldField = selectedChar==null ? -1 : fieldIndex[selectedChar];
+		int field = ch==null ? -1 : fieldIndex[ch];
+		selectedChar = ch;
+		repaintField(oldField);
+		repaintField(field);
+		Rectangle rect = getFieldRect(field);
+		if (rect!=null) scrollRectToVisible(rect);
+		listener.selectedCharChanged(selectedChar);
+	}
+
+	private void setHighlightedField(Point p) {
+		int field = getField(p);
+		if (getCharAt(field)==null) field = -1;
+		if (field==highlightedField) return;
+		repaintField(highlightedField);
+		highlightedField = field;
+		repaintField(highlightedField);
+	}
+
+	private void repaintField(int field) {
+		Rectangle rect = getFieldRect(field);
+		if (rect!=null) repaint(rect);
+	}
+
+	private Rectangle getFieldRect(int field) {
+		if (field<0) return null;
+		int g = findGroupOfField(field);
+		int i = field-groupStart[g];
+		int x = i % columns;
+		int y = i / columns + groupRow[g];
+		return new Rectangle(border+x*fieldWidth, border+y*fieldHeight, fieldWidth, fieldHeight);
+	}
+
+	private int findGroupOfField(int field) {
+		int g = Arrays.binarySearch(groupStart, field);
+		if (g>=0) {
+			// skip empty groups
+			while (g+1<groupStart.length && groupStart[g+1]==field) g++;
+			return g;
+		}
+		return -g-2;
+	}
+
+	private int getField(Point p) {
+		if (p==null) return -1;
+		int x = p.x-border;
+		int y = p.y-border;
+		if (x<0 || x>=columns*fieldWidth) return -1;
+		if (y<0 || y>=rowCount*fieldHeight) return -1;
+		return getField(x/fieldWidth, y/fieldHeight);
+	}
+
+	private int getField(int column, int row) {
+		int g = Arrays.binarySearch(groupRow, row);
+		if (g>=0) {
+			// skip empty groups
+			while (g+1<groupRow.length && groupRow[g+1]==row) g++;
+		} else
+			g = -g-2;
+		if (g<0) return -1;
+		int i = (row-groupRow[g])*columns + column;
+		if (i>=groups[g].length) return -1;
+		return groupStart[g]+i;
+	}
+
+	@Override
+	public String getToolTipText(MouseEvent event) {
+		Character ch = getCharAt(getField(event.getPoint()));
+		if (ch==null || markers==null || !markers.hasMarker(ch)) return null;
+		return String.format("'%s': %s", ch, markers.getMarkerText(ch));
+	}
+
+	private Character getCharAt(int field) {
+		if (field<0) return null;
+		int g = findGroupOfField(field);
+		return groups[g][field-groupStart[g]];
+	}
+
+	@Override
+	protected void paintCanvas(Graphics g, int x, int y, int width, int height) {
+		long start = System.nanoTime();
+		Rectangle clip = g.getClipBounds();
+		if (clip==null) clip = new Rectangle(x, y, width, height);
+		g.setColor(COLOR_BACKGROUND);
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		if (g instanceof Graphics2D) {
+			Graphics2D g2 = (Graphics2D) g;
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+			int firstRow = Math.max(0, (clip.y-border)/fieldHeight);
+			int lastRow  = Math.min(rowCount-1, (clip.y+clip.height-border)/fieldHeight);
+			int selectedField = selectedChar==null ? -1 : fieldIndex[selectedChar];
+
+			for (int iy=firstRow; iy<=lastRow; iy++) {
+				for (int ix=0; ix<columns; ix++) {
+					int field = getField(ix, iy);
+					if (field<0) break;
+					char ch = getCharAt(field);
+					boolean exist = font!=null && font.hasGlyph(ch);
+					Color color;
+					if (field==selectedField)
+						color = COLOR_CHAR_SELECTED;
+					else if (field==highlightedField)
+						color = COLOR_CHAR_HIGHLIGHTED;
+					else
+						color = exist ? COLOR_CHAR_EXISTS : COLOR_BACKGROUND;
+					g2.setPaint(color);
+					g2.fillRect(border+ix*fieldWidth+1, border+iy*fieldHeight+1, fieldWidth-2, fieldHeight-2);
+					BufferedImage thumbnail = null;
+					if (exist) {
+						thumbnail = thumbnails.get(ch);
+						if (thumbnail==null && !thumbnails.isRequested(ch)) thumbnails.request(ch, font.getFormsLater(ch));
+					}
+					if (thumbnail!=null)
+						g2.drawImage(thumbnail, border+ix*fieldWidth+2, border+iy*fieldHeight+2, null);
+					else {
+						g2.setPaint(exist ? COLOR_TEXT : COLOR_TEXT_NOTEXISTS);
+						g2.drawString(Character.toString(ch), border+ix*fieldWidth+offsetX, border+iy*fieldHeight+offsetY);
+					}
+					if (markers!=null && markers.hasMarker(ch)) {
+						int mx = border+(ix+1)*fieldWidth-1;
+						int my = border+iy*fieldHeight+1;
+						g2.setPaint(COLOR_MARKER);
+						g2.fillPolygon(new int[] { mx-MARKER_SIZE, mx, mx }, new int[] { my, my, my+MARKER_SIZE }, 3);
+					}
+				}
+			}
+		}
+		PAINT_TIME.stop(start);
+	}
+
+	@Override public Dimension getPreferredScrollableViewportSize() {
+		return new Dimension(2*border + VISIBLE_COLUMNS*fieldWidth, 2*border + VISIBLE_ROWS*fieldHeight);
+	}
+	@Override public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return orientation==SwingConstants.VERTICAL ? fieldHeight : fieldWidth;
+	}
+	@Override public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		if (orientation!=SwingConstants.VERTICAL) return visibleRect.width;
+		return Math.max(fieldHeight, (visibleRect.height/fieldHeight-1)*fieldHeight);
+	}
+	@Override public boolean getScrollableTracksViewportWidth() { return true; }
+	@Override public boolean getScrollableTracksViewportHeight() { return false; }
+
+	static class CharBlock {
+		static final CharBlock DEFAULT = new CharBlock("Default", new char[][] {
+			createCharArray('A','Z'),
+			createCharArray('a','z'),
+			createCharArray('0','9'),
+			new char[] { 'ä','ö','ü', 'Ä','Ö','Ü', 'ß' }
+		});
+		static final CharBlock FONT = new CharBlock("Characters in Font", null);
+
+		private final String name;
+		private final char[][] groups;
+
+		private CharBlock(String name, char[][] groups) {
+			this.name = name;
+			this.groups = groups;
+		}
+
+		boolean dependsOnFont() {
+			return groups==null;
+		}
+
+		char[][] getGroups(GlyphProvider font) {
+			if (groups!=null) return groups;
+			if (font==null) return new char[0][];
+			return new char[][] { font.getChars() };
+		}
+
+		@Override public String toString() {
+			return name;
+		}
+
+		private static char[] createCharArray(char first, char last) {
+			char[] chars = new char[last-first+1];
+			for (int i=0; i<chars.length; ++i) chars[i] = (char) (first+i);
+			return chars;
+		}
+
+		static Vector<CharBlock> getAllBlocks() {
+			Vector<CharBlock> blocks = new Vector<>();
+			blocks.add(DEFAULT);
+			blocks.add(FONT);
+
+			Vector<char[]> allGroups = new Vector<>();
+			Vector<CharBlock> unicodeBlocks = new Vector<>();
+			Character.UnicodeBlock currentBlock = null;
+			int first = 0;
+			for (int ch=0; ch<=Character.MAX_VALUE+1; ch++) {
+				Character.UnicodeBlock unicodeBlock = ch<=Character.MAX_VALUE ? Character.UnicodeBlock.of(ch) : null;
+				if (unicodeBlock==currentBlock) continue;
+				if (currentBlock!=null && !isSurrogateBlock(currentBlock)) {
+					char[] chars = createCharArray((char) first, (char) (ch-1));
+					allGroups.add(chars);
+					unicodeBlocks.add(new CharBlock(String.format("%04X: %s", first, currentBlock.toString().replace('_', ' ')), new char[][] { chars }));
+				}
+				currentBlock = unicodeBlock;
+				first = ch;
+			}
+
+			blocks.add(new CharBlock("All Characters", allGroups.toArray(new char[allGroups.size()][])));
+			blocks.addAll(unicodeBlocks);
+			return blocks;
+		}
+
+		private static boolean isSurrogateBlock(Character.UnicodeBlock block) {
+			return block==Character.UnicodeBlock.HIGH_SURROGATES
+				|| block==Character.UnicodeBlock.HIGH_PRIVATE_USE_SURROGATES
+				|| block==Character.UnicodeBlock.LOW_SURROGATES;
+		}
+	}
+}
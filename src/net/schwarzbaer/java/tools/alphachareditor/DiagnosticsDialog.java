@@ -0,0 +1,119 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.Vector;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import net.schwarzbaer.java.lib.gui.FileChooser;
+
+/**
+ * Shows all {@link Metrics} in a table, that is refreshed every second.
+ */
+class DiagnosticsDialog extends JDialog {
+	private static final long serialVersionUID = 2165497950453263153L;
+	private static final String[] COLUMNS = { "Metric", "Count", "Last", "Mean", "Min", "Median", "95%", "Max", "Unit" };
+
+	private final MetricsTableModel tableModel;
+	private final Timer refreshTimer;
+	private final FileChooser fileChooser;
+
+	DiagnosticsDialog(Window parent) {
+		super(parent, "Diagnostics", ModalityType.MODELESS);
+		tableModel = new MetricsTableModel();
+		fileChooser = new FileChooser("Metrics-File", "txt");
+		JTable table = new JTable(tableModel);
+		table.getColumnModel().getColumn(0).setPreferredWidth(220);
+
+		JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 3, 0));
+		buttonPanel.add(createButton("Reset", ()->{ Metrics.resetAll(); refresh(); }));
+		buttonPanel.add(createButton("Save to File ...", this::saveToFile));
+		buttonPanel.add(createButton("Close", ()->dispose()));
+
+		JPanel contentPane = new JPanel(new BorderLayout(3,3));
+		contentPane.setBorder(BorderFactory.createEmptyBorder(3,3,3,3));
+		contentPane.add(new JScrollPane(table), BorderLayout.CENTER);
+		contentPane.add(buttonPanel, BorderLayout.SOUTH);
+		setContentPane(contentPane);
+		setSize(900, 400);
+		setLocationRelativeTo(parent);
+
+		refreshTimer = new Timer(1000, e->refresh());
+		addWindowListener(new WindowAdapter() {
+			@Override public void windowClosed(WindowEvent e) { refreshTimer.stop(); }
+		});
+		refresh();
+		refreshTimer.start();
+	}
+
+	private static JButton createButton(String title, Runnable action) {
+		JButton button = new JButton(title);
+		button.addActionListener(e->action.run());
+		return button;
+	}
+
+	private void refresh() {
+		tableModel.setData(Metrics.getSnapshots());
+	}
+
+	private void saveToFile() {
+		if (fileChooser.showSaveDialog(this)!=FileChooser.APPROVE_OPTION) return;
+		File file = fileChooser.getSelectedFile();
+		try {
+			AtomicFile.writeText(file, out -> {
+				out.printf("AlphaCharEditor metrics, %1$tF %1$tT%n%n", System.currentTimeMillis());
+				Metrics.writeTo(out);
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+			JOptionPane.showMessageDialog(this, String.format("Can't write metrics to file \"%s\":%n%s", file, e.getMessage()), "Error", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	private static class MetricsTableModel extends AbstractTableModel {
+		private static final long serialVersionUID = -6520437934219876430L;
+		private Vector<Metrics.Snapshot> data = new Vector<>();
+
+		void setData(Vector<Metrics.Snapshot> data) {
+			boolean sameRows = data.size()==this.data.size();
+			this.data = data;
+			if (sameRows && !data.isEmpty()) fireTableRowsUpdated(0, data.size()-1);
+			else fireTableDataChanged();
+		}
+
+		@Override public int getRowCount() { return data.size(); }
+		@Override public int getColumnCount() { return COLUMNS.length; }
+		@Override public String getColumnName(int column) { return COLUMNS[column]; }
+
+		@Override
+		public Object getValueAt(int rowIndex, int columnIndex) {
+			Metrics.Snapshot s = data.get(rowIndex);
+			switch (columnIndex) {
+			case 0: return s.name;
+			case 1: return s.count;
+			case 2: return s.format(s.last);
+			case 3: return s.format(s.mean);
+			case 4: return s.format(s.min);
+			case 5: return s.format(s.median);
+			case 6: return s.format(s.p95);
+			case 7: return s.format(s.max);
+			case 8: return s.unit.label;
+			}
+			return null;
+		}
+	}
+}
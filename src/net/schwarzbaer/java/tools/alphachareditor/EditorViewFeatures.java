@@ -0,0 +1,49 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+
+import javax.swing.JPopupMenu;
+
+import net.schwarzbaer.java.lib.gui.ZoomableCanvas;
+import net.schwarzbaer.java.tools.lineeditor.EditorViewFeature;
+
+/**
+ * Combines several {@link EditorViewFeature}s into one. Features are drawn in the given order.
+ */
+class EditorViewFeatures implements EditorViewFeature
+{
+	private final EditorViewFeature[] features;
+
+	EditorViewFeatures(EditorViewFeature... features) {
+		this.features = features;
+	}
+
+	@Override
+	public void setEditorView(Component editorView)
+	{
+		for (EditorViewFeature feature : features)
+			feature.setEditorView(editorView);
+	}
+
+	@Override
+	public void draw(Graphics2D g2, int x, int y, int width, int height, ZoomableCanvas.ViewState viewState, Iterable<? extends FeatureLineForm> forms)
+	{
+		for (EditorViewFeature feature : features)
+			feature.draw(g2, x, y, width, height, viewState, forms);
+	}
+
+	@Override
+	public void addToEditorViewContextMenu(JPopupMenu contextMenu)
+	{
+		for (EditorViewFeature feature : features)
+			feature.addToEditorViewContextMenu(contextMenu);
+	}
+
+	@Override
+	public void prepareContextMenuToShow()
+	{
+		for (EditorViewFeature feature : features)
+			feature.prepareContextMenuToShow();
+	}
+}
@@ -0,0 +1,86 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Vector;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Journal of glyph changes next to a font file (<code>&lt;font file&gt;.journal</code>).
+ * Each incremental save appends the changed glyphs in the text format of the font.
+ * A section without forms marks an emptied glyph. Later sections override earlier ones and the font file itself.
+ */
+final class FontJournal {
+
+	private static final String EXTENSION = ".journal";
+	private static final long MIN_COMPACTION_SIZE = 64*1024;
+	private static final Metrics.Metric APPEND_TIME   = Metrics.timer("FontJournal.append");
+	private static final Metrics.Metric APPEND_GLYPHS = Metrics.value("FontJournal.append.glyphs");
+	private static final Metrics.Metric REPLAY_TIME   = Metrics.timer("FontJournal.replay");
+
+	private FontJournal() {}
+
+	static File getFile(File fontFile) {
+		return new File(fontFile.getPath()+EXTENSION);
+	}
+
+	/**
+	 * @return <code>true</code>, if the journal has grown larger than half of the font file (but at least 64kB)
+	 */
+	static boolean needsCompaction(File fontFile) {
+		File journalFile = getFile(fontFile);
+		if (!journalFile.isFile()) return false;
+		return journalFile.length() > Math.max(MIN_COMPACTION_SIZE, fontFile.length()/2);
+	}
+
+	static void append(File fontFile, Map<Character, Form[]> glyphs) throws IOException {
+		long start = System.nanoTime();
+		File journalFile = getFile(fontFile);
+		Vector<Character> chars = new Vector<>(glyphs.keySet());
+		chars.sort(null);
+
+		try (FileOutputStream stream = new FileOutputStream(journalFile, true);
+		     PrintWriter out = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+			for (Character ch : chars)
+				FontTextFormat.writeGlyph(out, ch, glyphs.get(ch));
+			out.flush();
+			if (out.checkError()) throw new IOException(String.format("Can't write to journal \"%s\"", journalFile));
+			stream.getFD().sync();
+		}
+		APPEND_TIME.stop(start);
+		APPEND_GLYPHS.record(chars.size());
+	}
+
+	/**
+	 * Replays the journal of the given font file, if there is one.
+	 */
+	static void replay(File fontFile, Form.Factory factory, FontTextFormat.GlyphHandler handler) throws IOException {
+		File journalFile = getFile(fontFile);
+		if (!journalFile.isFile()) return;
+
+		long start = System.nanoTime();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+			FontTextFormat.read(in, factory, handler);
+		}
+		REPLAY_TIME.stop(start);
+	}
+
+	/**
+	 * Deletes the journal of the given font file, after the font file was rewritten.
+	 * @throws IOException if the journal can't be deleted, because it would be replayed over the rewritten font
+	 */
+	static void delete(File fontFile) throws IOException {
+		File journalFile = getFile(fontFile);
+		if (journalFile.isFile() && !journalFile.delete())
+			throw new IOException(String.format("Can't delete journal \"%s\"", journalFile));
+	}
+}
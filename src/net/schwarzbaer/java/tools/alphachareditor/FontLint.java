@@ -0,0 +1,336 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.SwingWorker;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Checks the glyphs of a font for geometry problems: invalid values, zero length lines, degenerated arcs,
+ * coordinates far outside of the editor area and duplicate forms.
+ * <p>
+ * A full check of a font runs in the background on a fork-join pool ({@link #checkAll(CharRaster.GlyphProvider)}).
+ * Afterwards only changed glyphs have to be re-checked ({@link #checkGlyph(char, Form[])}).
+ * Except of {@link #check(Form[], Rectangle2D)} all methods have to be called on the event thread.
+ */
+class FontLint implements CharRaster.MarkerSource {
+
+	private static final double MIN_LENGTH = 1e-3;
+	private static final double MIN_ANGLE  = 1e-4;
+	private static final int SPLIT_THRESHOLD = 256;
+	private static final Metrics.Metric CHECK_ALL_TIME   = Metrics.timer("FontLint.checkAll");
+	private static final Metrics.Metric CHECK_GLYPH_TIME = Metrics.timer("FontLint.checkGlyph");
+	private static final Metrics.Metric ISSUES           = Metrics.value("FontLint.issues");
+
+	enum Kind {
+		InvalidValue     ("invalid value"),
+		ZeroLengthLine   ("zero length line"),
+		ZeroLengthSegment("zero length segment"),
+		ZeroRadiusArc    ("arc with zero radius"),
+		EmptyArc         ("arc with identical angles"),
+		OutOfBounds      ("far outside of the editor area"),
+		DuplicateForm    ("duplicate form"),
+		;
+		final String label;
+		Kind(String label) { this.label = label; }
+	}
+
+	static final class Issue {
+		final int formIndex;
+		final Kind kind;
+
+		private Issue(int formIndex, Kind kind) {
+			this.formIndex = formIndex;
+			this.kind = kind;
+		}
+
+		@Override public String toString() {
+			return String.format("%s (form %d)", kind.label, formIndex+1);
+		}
+	}
+
+	interface Listener {
+		void checkFinished(int glyphCount, long duration_ns);
+	}
+
+	private final Rectangle2D bounds;
+	private final Listener listener;
+	private final TreeMap<Character, Issue[]> issues;
+	/** glyphs changed while a full check is running; they are re-checked afterwards */
+	private final HashMap<Character, Form[]> changedWhileChecking;
+	private CheckWorker worker;
+
+	FontLint(Rectangle2D bounds, Listener listener) {
+		this.bounds = bounds;
+		this.listener = listener;
+		issues = new TreeMap<>();
+		changedWhileChecking = new HashMap<>();
+		worker = null;
+	}
+
+	/**
+	 * Starts a full check of a font in the background. A running check is cancelled.
+	 * @param font read-only font, that can be accessed by other threads
+	 */
+	void checkAll(CharRaster.GlyphProvider font) {
+		cancel();
+		worker = new CheckWorker(font, font.getChars());
+		worker.execute();
+	}
+
+	void cancel() {
+		if (worker!=null) worker.cancel(true);
+		worker = null;
+		changedWhileChecking.clear();
+	}
+
+	void clear() {
+		cancel();
+		issues.clear();
+	}
+
+	/**
+	 * Re-checks a changed glyph.
+	 */
+	void checkGlyph(char ch, Form[] forms) {
+		long start = System.nanoTime();
+		setIssues(ch, check(forms, bounds));
+		CHECK_GLYPH_TIME.stop(start);
+		if (worker!=null) changedWhileChecking.put(ch, forms);
+	}
+
+	private void setIssues(char ch, Issue[] glyphIssues) {
+		if (glyphIssues==null) issues.remove(ch);
+		else issues.put(ch, glyphIssues);
+	}
+
+	Issue[] getIssues(char ch) {
+		return issues.get(ch);
+	}
+
+	int getCharCount() {
+		return issues.size();
+	}
+
+	int getIssueCount() {
+		int count = 0;
+		for (Issue[] glyphIssues : issues.values())
+			count += glyphIssues.length;
+		return count;
+	}
+
+	/**
+	 * @return next char with issues after the given one (wraps around) or <code>null</code>, if there are no issues
+	 */
+	Character getNextChar(Character ch) {
+		if (issues.isEmpty()) return null;
+		Character next = ch==null ? null : issues.higherKey(ch);
+		return next!=null ? next : issues.firstKey();
+	}
+
+	@Override
+	public boolean hasMarker(char ch) {
+		return issues.containsKey(ch);
+	}
+
+	@Override
+	public String getMarkerText(char ch) {
+		Issue[] glyphIssues = issues.get(ch);
+		if (glyphIssues==null) return null;
+		StringBuilder sb = new StringBuilder();
+		for (Issue issue : glyphIssues) {
+			if (sb.length()>0) sb.append(", ");
+			sb.append(issue);
+		}
+		return sb.toString();
+	}
+
+	private class CheckWorker extends SwingWorker<Issue[][], Void> {
+		private final CharRaster.GlyphProvider font;
+		private final char[] chars;
+		private final long start;
+
+		CheckWorker(CharRaster.GlyphProvider font, char[] chars) {
+			this.font = font;
+			this.chars = chars;
+			this.start = System.nanoTime();
+		}
+
+		@Override
+		protected Issue[][] doInBackground() {
+			return checkAll(font, chars, bounds, ForkJoinPool.commonPool());
+		}
+
+		@Override
+		protected void done() {
+			if (worker!=this || isCancelled()) return;
+			worker = null;
+			Issue[][] result;
+			try {
+				result = get();
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+				return;
+			}
+			issues.clear();
+			for (int i=0; i<chars.length; i++)
+				if (result[i]!=null) issues.put(chars[i], result[i]);
+			for (Map.Entry<Character, Form[]> entry : changedWhileChecking.entrySet())
+				setIssues(entry.getKey(), check(entry.getValue(), bounds));
+			changedWhileChecking.clear();
+			long duration = System.nanoTime()-start;
+			CHECK_ALL_TIME.record(duration);
+			ISSUES.record(getIssueCount());
+			listener.checkFinished(chars.length, duration);
+		}
+	}
+
+	/**
+	 * Checks the given chars of a font in parallel.
+	 * @return issues of each char (<code>null</code>, if a glyph has no issues)
+	 */
+	static Issue[][] checkAll(CharRaster.GlyphProvider font, char[] chars, Rectangle2D bounds, ForkJoinPool pool) {
+		Issue[][] result = new Issue[chars.length][];
+		pool.invoke(new CheckTask(font, chars, bounds, result, 0, chars.length));
+		return result;
+	}
+
+	private static class CheckTask extends RecursiveAction {
+		private static final long serialVersionUID = -4236610377651528794L;
+		private final CharRaster.GlyphProvider font;
+		private final char[] chars;
+		private final Rectangle2D bounds;
+		private final Issue[][] result;
+		private final int from;
+		private final int to;
+
+		CheckTask(CharRaster.GlyphProvider font, char[] chars, Rectangle2D bounds, Issue[][] result, int from, int to) {
+			this.font = font;
+			this.chars = chars;
+			this.bounds = bounds;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to-from <= SPLIT_THRESHOLD) {
+				for (int i=from; i<to; i++)
+					result[i] = check(font.getForms(chars[i]), bounds);
+				return;
+			}
+			int mid = (from+to)>>>1;
+			invokeAll(new CheckTask(font, chars, bounds, result, from, mid), new CheckTask(font, chars, bounds, result, mid, to));
+		}
+	}
+
+	/**
+	 * Checks the forms of a glyph.
+	 * @return found issues or <code>null</code>, if there are none
+	 */
+	static Issue[] check(Form[] forms, Rectangle2D bounds) {
+		if (forms==null || forms.length==0) return null;
+		Vector<Issue> result = null;
+		HashMap<FormKey, Integer> seen = new HashMap<>();
+		for (int i=0; i<forms.length; i++) {
+			Forms.Type type = Forms.Type.of(forms[i]);
+			double[] values = Forms.getValues(forms[i]);
+			if (type==null || values==null) continue;
+			Kind kind = check(type, values, bounds);
+			if (kind==null && seen.putIfAbsent(new FormKey(type, values), i)!=null)
+				kind = Kind.DuplicateForm;
+			if (kind!=null) {
+				if (result==null) result = new Vector<>();
+				result.add(new Issue(i, kind));
+			}
+		}
+		return result==null ? null : result.toArray(new Issue[result.size()]);
+	}
+
+	private static Kind check(Forms.Type type, double[] values, Rectangle2D bounds) {
+		for (double v : values)
+			if (!Double.isFinite(v)) return Kind.InvalidValue;
+
+		switch (type) {
+		case Line:
+			if (values.length<4) return Kind.InvalidValue;
+			if (Math.hypot(values[2]-values[0], values[3]-values[1]) < MIN_LENGTH) return Kind.ZeroLengthLine;
+			return isInside(values, 4, bounds) ? null : Kind.OutOfBounds;
+
+		case PolyLine:
+			if (values.length<4 || values.length%2!=0) return Kind.InvalidValue;
+			for (int i=2; i+1<values.length; i+=2)
+				if (Math.hypot(values[i]-values[i-2], values[i+1]-values[i-1]) < MIN_LENGTH)
+					return values.length==4 ? Kind.ZeroLengthLine : Kind.ZeroLengthSegment;
+			return isInside(values, values.length, bounds) ? null : Kind.OutOfBounds;
+
+		case Arc:
+			if (values.length<5) return Kind.InvalidValue;
+			double xC = values[0], yC = values[1], r = values[2];
+			if (r < MIN_LENGTH) return Kind.ZeroRadiusArc;
+			if (Math.abs(values[4]-values[3]) < MIN_ANGLE) return Kind.EmptyArc;
+			return bounds.contains(xC-r, yC-r) && bounds.contains(xC+r, yC+r) ? null : Kind.OutOfBounds;
+		}
+		return null;
+	}
+
+	private static boolean isInside(double[] points, int length, Rectangle2D bounds) {
+		for (int i=0; i+1<length; i+=2)
+			if (!bounds.contains(points[i], points[i+1])) return false;
+		return true;
+	}
+
+	/**
+	 * Key of the geometry of a form, that doesn't depend on the direction of lines and poly lines.
+	 */
+	private static final class FormKey {
+		private final Forms.Type type;
+		private final double[] values;
+		private final int hash;
+
+		FormKey(Forms.Type type, double[] values) {
+			this.type = type;
+			this.values = type==Forms.Type.Arc ? normalize(values.clone()) : getForwardPoints(values);
+			this.hash = 31*type.hashCode() + Arrays.hashCode(this.values);
+		}
+
+		private static double[] getForwardPoints(double[] points) {
+			double[] result = normalize(points.clone());
+			int n = result.length;
+			if (n<4) return result;
+			boolean reverse = result[0]>result[n-2] || (result[0]==result[n-2] && result[1]>result[n-1]);
+			if (reverse)
+				for (int i=0; i<n/2; i+=2) {
+					int j = n-2-i;
+					double x = result[i], y = result[i+1];
+					result[i] = result[j]; result[i+1] = result[j+1];
+					result[j] = x;         result[j+1] = y;
+				}
+			return result;
+		}
+
+		private static double[] normalize(double[] values) {
+			for (int i=0; i<values.length; i++)
+				values[i] += 0.0; // -0.0 -> 0.0
+			return values;
+		}
+
+		@Override public int hashCode() { return hash; }
+
+		@Override public boolean equals(Object obj) {
+			if (this==obj) return true;
+			if (!(obj instanceof FormKey other)) return false;
+			return hash==other.hash && type==other.type && Arrays.equals(values, other.values);
+		}
+	}
+}
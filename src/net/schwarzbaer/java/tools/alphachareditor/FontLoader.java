@@ -0,0 +1,240 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import net.schwarzbaer.java.lib.image.linegeometry.AlphaCharIO;
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+/**
+ * Loads a font in the background. Parsed glyphs are handed over to the {@link Listener} on the event thread
+ * while the file is still being read.
+ * A loader can be started before its listener is set (at startup). Glyphs published until then are kept.
+ * <p>
+ * A text font can be packed into a {@link PackedGlyphStore} instead. Then only the glyphs of the journal are published,
+ * and the store is handed over as {@link #getGlyphSource()}.
+ */
+class FontLoader extends SwingWorker<Integer, FontLoader.Glyph> {
+
+	private static final Metrics.Metric LOAD_TIME   = Metrics.timer("FontLoader.load");
+	private static final Metrics.Metric LOAD_GLYPHS = Metrics.value("FontLoader.load.glyphs");
+	private static final Metrics.Metric PARSE_TIME  = Metrics.timer("FontTextFormat.read");
+
+	static class Glyph {
+		final char ch;
+		final Form[] forms;
+		Glyph(char ch, Form[] forms) {
+			this.ch = ch;
+			this.forms = forms;
+		}
+	}
+
+	interface Listener {
+		void glyphsLoaded(FontLoader loader, List<Glyph> glyphs);
+		void loadingFinished(FontLoader loader, int glyphCount, boolean cancelled, Throwable error);
+	}
+
+	private final File fontFile;
+	private final boolean packGlyphs;
+	private Listener listener;
+	private GlyphSource glyphSource;
+	/** glyphs published before the listener was set */
+	private final Vector<Glyph> pendingGlyphs;
+	private boolean finished;
+
+	/**
+	 * @param fontFile   font file to load or <code>null</code> for the default font
+	 * @param packGlyphs pack the glyphs of a text font or the default font into a {@link PackedGlyphStore}
+	 */
+	FontLoader(File fontFile, boolean packGlyphs) {
+		this.fontFile = fontFile;
+		this.packGlyphs = packGlyphs;
+		this.listener = null;
+		this.glyphSource = null;
+		this.pendingGlyphs = new Vector<>();
+		this.finished = false;
+	}
+
+	/**
+	 * Sets the listener. Glyphs published so far and the result of a finished loader are handed over at once.
+	 * Has to be called on the event thread.
+	 */
+	void setListener(Listener listener) {
+		AlphaCharEditor.Assert(listener!=null && this.listener==null);
+		this.listener = listener;
+		if (!pendingGlyphs.isEmpty() && !isCancelled()) {
+			List<Glyph> glyphs = new Vector<>(pendingGlyphs);
+			pendingGlyphs.clear();
+			listener.glyphsLoaded(this, glyphs);
+		}
+		if (finished) notifyFinished();
+	}
+
+	File getFontFile() {
+		return fontFile;
+	}
+
+	/**
+	 * @return the opened glyph source, if the font file is a binary font file, which is decoded on demand,
+	 *         the packed glyphs, if they were packed, otherwise <code>null</code>
+	 */
+	GlyphSource getGlyphSource() {
+		return glyphSource;
+	}
+
+	/**
+	 * Reads a complete font including its journal without publishing glyphs to the event thread.
+	 * @param fontFile  font file to load or <code>null</code> for the default font
+	 */
+	static HashMap<Character, Form[]> readFont(File fontFile, Form.Factory factory) throws IOException {
+		if (fontFile==null) {
+			HashMap<Character, Form[]> font = AlphaCharIO.readDefaultAlphaCharFont(factory, false);
+			return font==null ? new HashMap<>() : font;
+		}
+
+		HashMap<Character, Form[]> font = new HashMap<>();
+		if (BinaryFontFormat.isBinaryFontFile(fontFile)) {
+			GlyphSource source = BinaryFontFormat.open(fontFile);
+			for (char ch : source.getChars())
+				font.put(ch, source.decode(ch, factory));
+		} else {
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(fontFile), StandardCharsets.UTF_8))) {
+				FontTextFormat.read(in, factory, (ch, forms) -> { font.put(ch, forms); return true; });
+			}
+		}
+		FontJournal.replay(fontFile, factory, (ch, forms) -> { font.put(ch, forms); return true; });
+		return font;
+	}
+
+	@Override
+	protected Integer doInBackground() throws Exception {
+		long start = System.nanoTime();
+		int glyphCount = load();
+		if (!isCancelled()) {
+			LOAD_TIME.stop(start);
+			LOAD_GLYPHS.record(glyphCount);
+		}
+		return glyphCount;
+	}
+
+	private int load() throws IOException {
+		Form.Factory factory = LineEditor.createFormFactory();
+
+		if (fontFile==null) {
+			HashMap<Character, Form[]> font = AlphaCharIO.readDefaultAlphaCharFont(factory, false);
+			if (font==null) return 0;
+			if (packGlyphs) {
+				PackedGlyphStore.Builder builder = new PackedGlyphStore.Builder();
+				for (Map.Entry<Character, Form[]> entry : font.entrySet())
+					builder.add(entry.getKey(), entry.getValue());
+				glyphSource = builder.build();
+				return font.size();
+			}
+			for (Map.Entry<Character, Form[]> entry : font.entrySet())
+				publish(new Glyph(entry.getKey(), entry.getValue()));
+			return font.size();
+		}
+
+		int glyphCount;
+		if (BinaryFontFormat.isBinaryFontFile(fontFile)) {
+			glyphSource = BinaryFontFormat.open(fontFile);
+			glyphCount = glyphSource.size();
+		} else
+			glyphCount = readTextFont(factory);
+
+		if (!isCancelled())
+			FontJournal.replay(fontFile, factory, (ch, forms) -> {
+				if (isCancelled()) return false;
+				publish(new Glyph(ch, forms));
+				return true;
+			});
+		return glyphCount;
+	}
+
+	private int readTextFont(Form.Factory factory) throws IOException {
+		long start = System.nanoTime();
+		long fileSize = Math.max(1, fontFile.length());
+		int[] glyphCount = new int[] { 0 };
+		PackedGlyphStore.Builder builder = packGlyphs ? new PackedGlyphStore.Builder() : null;
+		try (CountingInputStream counter = new CountingInputStream(new FileInputStream(fontFile));
+		     BufferedReader in = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8))) {
+
+			FontTextFormat.read(in, factory, (ch, forms) -> {
+				if (isCancelled()) return false;
+				if (builder!=null) builder.add(ch, forms);
+				else publish(new Glyph(ch, forms));
+				glyphCount[0]++;
+				setProgress((int) Math.min(100, counter.bytesRead*100/fileSize));
+				return true;
+			});
+		}
+		if (!isCancelled()) PARSE_TIME.stop(start);
+		if (builder!=null && !isCancelled())
+			glyphSource = builder.build();
+		return glyphCount[0];
+	}
+
+	@Override
+	protected void process(List<Glyph> glyphs) {
+		if (isCancelled()) return;
+		if (listener==null) pendingGlyphs.addAll(glyphs);
+		else listener.glyphsLoaded(this, glyphs);
+	}
+
+	@Override
+	protected void done() {
+		finished = true;
+		if (listener!=null) notifyFinished();
+	}
+
+	private void notifyFinished() {
+		if (isCancelled()) {
+			listener.loadingFinished(this, -1, true, null);
+			return;
+		}
+		try {
+			listener.loadingFinished(this, get(), false, null);
+		} catch (InterruptedException e) {
+			listener.loadingFinished(this, -1, true, null);
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			listener.loadingFinished(this, -1, false, e.getCause());
+		}
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+		private volatile long bytesRead = 0;
+
+		CountingInputStream(InputStream in) { super(in); }
+
+		@Override public int read() throws IOException {
+			int b = super.read();
+			if (b>=0) bytesRead++;
+			return b;
+		}
+		@Override public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n>0) bytesRead += n;
+			return n;
+		}
+		@Override public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			bytesRead += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Vector;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Streaming reader and writer for the text format of <code>.AlphaCharFont</code> files.
+ * Unlike <code>AlphaCharIO</code> it reports each <code>[AlphaChar 'x']</code> section as soon as it is parsed.
+ */
+final class FontTextFormat {
+
+	private static final String HEADER_PREFIX = "[AlphaChar '";
+	private static final String HEADER_SUFFIX = "']";
+	private static final Metrics.Metric WRITE_TIME   = Metrics.timer("FontTextFormat.write");
+	private static final Metrics.Metric WRITE_GLYPHS = Metrics.value("FontTextFormat.write.glyphs");
+
+	private FontTextFormat() {}
+
+	interface GlyphHandler {
+		/** @return <code>false</code>, if parsing should stop */
+		boolean glyphParsed(char ch, Form[] forms);
+	}
+
+	static void read(BufferedReader in, Form.Factory factory, GlyphHandler handler) throws IOException {
+		Character currentChar = null;
+		ArrayList<Form> forms = new ArrayList<>();
+
+		String line;
+		while ( (line=in.readLine())!=null ) {
+
+			Character ch = parseHeader(line);
+			if (ch!=null) {
+				if (currentChar!=null && !handler.glyphParsed(currentChar, forms.toArray(new Form[forms.size()]))) return;
+				currentChar = ch;
+				forms.clear();
+				continue;
+			}
+
+			if (currentChar!=null) {
+				Form form = parseForm(line, factory);
+				if (form!=null) forms.add(form);
+			}
+		}
+
+		if (currentChar!=null)
+			handler.glyphParsed(currentChar, forms.toArray(new Form[forms.size()]));
+	}
+
+	static Character parseHeader(String line) {
+		if (!line.startsWith(HEADER_PREFIX) || !line.endsWith(HEADER_SUFFIX)) return null;
+		if (line.length() != HEADER_PREFIX.length()+1+HEADER_SUFFIX.length()) return null;
+		return line.charAt(HEADER_PREFIX.length());
+	}
+
+	static Form parseForm(String line, Form.Factory factory) {
+		int pos = line.indexOf('=');
+		if (pos<0) return null;
+
+		Forms.Type type = Forms.Type.parse(line.substring(0, pos));
+		if (type==null) return null;
+
+		double[] values = parseValues(line.substring(pos+1));
+		if (values==null) return null;
+
+		return Forms.create(type, values, factory);
+	}
+
+	private static double[] parseValues(String str) {
+		String[] parts = str.split(";");
+		double[] values = new double[parts.length];
+		try {
+			for (int i=0; i<parts.length; i++)
+				values[i] = Double.parseDouble(parts[i]);
+		} catch (NumberFormatException e) {
+			// skipped like a form of an unknown type
+			return null;
+		}
+		return values;
+	}
+
+	static void write(File file, Map<Character, Form[]> font) throws IOException {
+		long start = System.nanoTime();
+		AtomicFile.writeText(file, out -> {
+			Vector<Character> chars = new Vector<>(font.keySet());
+			chars.sort(null);
+			for (Character ch : chars)
+				writeGlyph(out, ch, font.get(ch));
+		});
+		WRITE_TIME.stop(start);
+		WRITE_GLYPHS.record(font.size());
+	}
+
+	static void writeGlyph(PrintWriter out, char ch, Form[] forms) {
+		out.printf("%s%s%s%n", HEADER_PREFIX, ch, HEADER_SUFFIX);
+		if (forms!=null)
+			for (Form form : forms) {
+				String line = toString(form);
+				if (line!=null) out.printf("%s%n", line);
+			}
+		out.printf("%n");
+	}
+
+	static String toString(Form form) {
+		Forms.Type type = Forms.Type.of(form);
+		double[] values = Forms.getValues(form);
+		if (type==null || values==null) return null;
+
+		StringBuilder sb = new StringBuilder(type.name()).append('=');
+		for (int i=0; i<values.length; i++) {
+			if (i>0) sb.append(';');
+			sb.append(values[i]);
+		}
+		return sb.toString();
+	}
+}
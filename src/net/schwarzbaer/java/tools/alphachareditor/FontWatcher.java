@@ -0,0 +1,301 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import javax.swing.SwingUtilities;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+/**
+ * Watches the project file and the text font files of a project (incl. their journals) for changes by other programs.
+ * <p>
+ * For each font a hash of each glyph section (<code>[AlphaChar 'x']</code>) is kept.
+ * After a change only the sections with a different hash are parsed and handed over to the {@link Listener}.
+ * Bursts of file events (e.g. a script writing a file in several steps) are coalesced.
+ * Sections written by the editor itself are announced via {@link #fontFileWritten(File, Collection)} and aren't reported.
+ * Files are scanned on a single background thread; the listener is called on the event thread.
+ * Binary font files are not watched.
+ */
+class FontWatcher {
+
+	private static final long DEBOUNCE_ms = 250;
+	private static final Metrics.Metric SCAN_TIME    = Metrics.timer("FontWatcher.scan");
+	private static final Metrics.Metric SCAN_CHANGES = Metrics.value("FontWatcher.scan.glyphs");
+
+	interface Listener {
+		/** @param glyphs changed glyphs of the font (emptied glyphs have no forms) */
+		void glyphsChanged(File fontFile, Map<Character, Form[]> glyphs);
+		void projectFileChanged(File projectFile);
+		/** @param message describes a file or folder, that can't be watched or read */
+		void watchFailed(String message);
+	}
+
+	private final Listener listener;
+	private final ScheduledExecutorService scanner;
+	/** watched file (font file, journal or project file) -> file to report */
+	private final ConcurrentHashMap<Path, File> watchedFiles;
+	/** watched directories (accessed on the event thread only) */
+	private final HashMap<Path, WatchKey> watchKeys;
+	/** section hashes of each font file (accessed on the scanner thread only) */
+	private final HashMap<File, long[]> sectionHashes;
+	/** pending scans (accessed on the scanner thread only) */
+	private final HashMap<File, ScheduledFuture<?>> pendingScans;
+	private WatchService watchService;
+	private volatile File projectFile;
+	private Collection<File> fontFiles;
+
+	FontWatcher(Listener listener) {
+		this.listener = listener;
+		AlphaCharEditor.Assert(this.listener!=null);
+		watchedFiles = new ConcurrentHashMap<>();
+		watchKeys = new HashMap<>();
+		sectionHashes = new HashMap<>();
+		pendingScans = new HashMap<>();
+		watchService = null;
+		projectFile = null;
+		fontFiles = new ArrayList<>();
+		scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "FontWatcher.scan");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	boolean isEnabled() {
+		return watchService!=null;
+	}
+
+	void setEnabled(boolean enabled) {
+		if (enabled==isEnabled()) return;
+		if (!enabled) {
+			try { watchService.close(); }
+			catch (IOException e) { e.printStackTrace(); }
+			watchService = null;
+			watchKeys.clear();
+			watchedFiles.clear();
+			scanner.execute(sectionHashes::clear);
+			return;
+		}
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		WatchService service = watchService;
+		Thread thread = new Thread(() -> waitForEvents(service), "FontWatcher");
+		thread.setDaemon(true);
+		thread.start();
+		watch(projectFile, fontFiles);
+	}
+
+	/**
+	 * Sets the files to watch. Has to be called on the event thread.
+	 * @param projectFile project file or <code>null</code>
+	 * @param fontFiles font files of the project; binary font files are ignored
+	 */
+	void watch(File projectFile, Collection<File> fontFiles) {
+		this.projectFile = projectFile;
+		this.fontFiles = fontFiles;
+		if (!isEnabled()) return;
+
+		HashMap<Path, File> files = new HashMap<>();
+		HashSet<File> textFontFiles = new HashSet<>();
+		if (projectFile!=null)
+			files.put(projectFile.getAbsoluteFile().toPath(), projectFile);
+		for (File fontFile : fontFiles)
+			if (fontFile!=null && !BinaryFontFormat.isBinaryFontFile(fontFile)) {
+				textFontFiles.add(fontFile);
+				files.put(fontFile.getAbsoluteFile().toPath(), fontFile);
+				files.put(FontJournal.getFile(fontFile).getAbsoluteFile().toPath(), fontFile);
+			}
+
+		HashSet<Path> dirs = new HashSet<>();
+		for (Path path : files.keySet()) dirs.add(path.getParent());
+		watchKeys.entrySet().removeIf(entry -> {
+			if (dirs.contains(entry.getKey())) return false;
+			entry.getValue().cancel();
+			return true;
+		});
+		for (Path dir : dirs)
+			if (!watchKeys.containsKey(dir))
+				try {
+					watchKeys.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+				} catch (IOException e) {
+					listener.watchFailed(String.format("Can't watch folder \"%s\": %s", dir, e.getMessage()));
+				}
+
+		watchedFiles.clear();
+		watchedFiles.putAll(files);
+		scanner.execute(() -> {
+			sectionHashes.keySet().retainAll(textFontFiles);
+			// new fonts get their initial hashes
+			for (File fontFile : textFontFiles)
+				if (!sectionHashes.containsKey(fontFile))
+					scan(fontFile, ch -> false);
+		});
+	}
+
+	/**
+	 * Takes the sections of glyphs, that the editor has just written to a font file or its journal, as known state, so they aren't reported as changed.
+	 * Has to be called on the event thread after writing.
+	 * @param writtenChars chars of the written glyphs or <code>null</code>, if the whole font file was written
+	 */
+	void fontFileWritten(File fontFile, Collection<Character> writtenChars) {
+		if (!isEnabled() || fontFile==null) return;
+		HashSet<Character> chars = writtenChars==null ? null : new HashSet<>(writtenChars);
+		IntPredicate isWritten = chars==null ? ch -> true : ch -> chars.contains((char) ch);
+		scanner.execute(() -> {
+			if (sectionHashes.containsKey(fontFile))
+				scan(fontFile, isWritten);
+		});
+	}
+
+	private void waitForEvents(WatchService service) {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				Path dir = (Path) key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (!(event.context() instanceof Path name)) continue;
+					File file = watchedFiles.get(dir.resolve(name));
+					if (file!=null) scheduleScan(file);
+				}
+				key.reset();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// watcher was disabled
+		}
+	}
+
+	private void scheduleScan(File file) {
+		scanner.execute(() -> {
+			ScheduledFuture<?> pending = pendingScans.get(file);
+			if (pending!=null) pending.cancel(false);
+			pendingScans.put(file, scanner.schedule(() -> {
+				pendingScans.remove(file);
+				if (file.equals(projectFile))
+					SwingUtilities.invokeLater(() -> listener.projectFileChanged(file));
+				else
+					scan(file, ch -> false);
+			}, DEBOUNCE_ms, TimeUnit.MILLISECONDS));
+		});
+	}
+
+	/**
+	 * @param isWritten chars, whose changed sections were written by the editor and aren't reported
+	 */
+	private void scan(File fontFile, IntPredicate isWritten) {
+		long start = System.nanoTime();
+		Sections sections;
+		try {
+			sections = new Sections(fontFile);
+		} catch (IOException e) {
+			String message = String.format("Can't scan font file \"%s\": %s", fontFile, e.getMessage());
+			SwingUtilities.invokeLater(() -> listener.watchFailed(message));
+			return;
+		}
+		long[] oldHashes = sectionHashes.put(fontFile, sections.hashes);
+		if (oldHashes==null) return;
+
+		HashMap<Character, Form[]> changed = new HashMap<>();
+		Form.Factory factory = LineEditor.createFormFactory();
+		for (int ch=0; ch<sections.hashes.length; ch++)
+			if (sections.hashes[ch]!=oldHashes[ch] && !isWritten.test(ch))
+				changed.put((char) ch, sections.parse((char) ch, factory));
+		SCAN_TIME.stop(start);
+		SCAN_CHANGES.record(changed.size());
+		if (!changed.isEmpty())
+			SwingUtilities.invokeLater(() -> listener.glyphsChanged(fontFile, changed));
+	}
+
+	/**
+	 * Effective glyph sections of a font file and its journal (later sections override earlier ones).
+	 */
+	private static class Sections {
+		/** hash of the section of each char or 0, if there is none */
+		final long[] hashes = new long[Character.MAX_VALUE+1];
+		final String[] texts = new String[2];
+		/** text, start and end of the section of each char */
+		final byte[] text = new byte[Character.MAX_VALUE+1];
+		final int[] start = new int[Character.MAX_VALUE+1];
+		final int[] end   = new int[Character.MAX_VALUE+1];
+
+		Sections(File fontFile) throws IOException {
+			File journalFile = FontJournal.getFile(fontFile);
+			texts[0] = fontFile.isFile() ? new String(Files.readAllBytes(fontFile.toPath()), StandardCharsets.UTF_8) : "";
+			texts[1] = journalFile.isFile() ? new String(Files.readAllBytes(journalFile.toPath()), StandardCharsets.UTF_8) : "";
+			index(0);
+			index(1);
+		}
+
+		private void index(int t) {
+			String str = texts[t];
+			int pos = 0;
+			int current = -1;
+			while (pos<str.length()) {
+				int lineEnd = str.indexOf('\n', pos);
+				if (lineEnd<0) lineEnd = str.length();
+				int contentEnd = lineEnd>pos && str.charAt(lineEnd-1)=='\r' ? lineEnd-1 : lineEnd;
+				Character ch = contentEnd>pos && str.charAt(pos)=='[' ? FontTextFormat.parseHeader(str.substring(pos, contentEnd)) : null;
+				if (ch!=null) {
+					if (current>=0) setSection(current, t, pos);
+					current = ch;
+					start[current] = lineEnd+1;
+				}
+				pos = lineEnd+1;
+			}
+			if (current>=0) setSection(current, t, str.length());
+		}
+
+		private void setSection(int ch, int t, int sectionEnd) {
+			text[ch] = (byte) t;
+			end[ch] = Math.max(start[ch], sectionEnd);
+			hashes[ch] = getHash(texts[t], start[ch], end[ch]);
+		}
+
+		/** FNV-1a hash of a section (without carriage returns, so line endings don't matter) */
+		private static long getHash(String str, int from, int to) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i=from; i<to; i++) {
+				char c = str.charAt(i);
+				if (c=='\r') continue;
+				hash = (hash ^ c) * 0x100000001b3L;
+			}
+			return hash==0 ? 1 : hash;
+		}
+
+		Form[] parse(char ch, Form.Factory factory) {
+			if (hashes[ch]==0) return new Form[0];
+			String str = texts[text[ch]];
+			ArrayList<Form> forms = new ArrayList<>();
+			for (String line : str.substring(start[ch], end[ch]).split("\r?\n")) {
+				Form form = FontTextFormat.parseForm(line, factory);
+				if (form!=null) forms.add(form);
+			}
+			return forms.toArray(new Form[forms.size()]);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+
+import net.schwarzbaer.java.lib.gui.ZoomableCanvas;
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.EditorViewFeature;
+
+/**
+ * Highlights the form under the mouse and marks the nearest end point of all forms as a hint.
+ * This hint is independent of the snapping of the line editor, so the editor doesn't necessarily snap to the marked point.
+ * Both are found via a {@link SegmentIndex} of the current glyph.
+ * While a mouse button is pressed in the editor view, the index is checked for forms, that the line editor changes in place.
+ * The context menu of the editor view offers to show all glyphs, that contain the highlighted form.
+ */
+class FormHighlighter implements EditorViewFeature
+{
+	private static final Color COLOR_HOVERED_FORM  = new Color(0xFFD080);
+	private static final Color COLOR_NEAREST_POINT = new Color(0xFF8000);
+	private static final BasicStroke STROKE_HOVERED_FORM  = new BasicStroke(7f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+	private static final BasicStroke STROKE_NEAREST_POINT = new BasicStroke(2f);
+	/** max. distance in pixels between mouse and form or end point */
+	private static final int HOVER_DISTANCE = 8;
+	private static final int NEAREST_POINT_DISTANCE = 10;
+	private static final int NEAREST_POINT_RADIUS = 6;
+
+	interface Listener {
+		void showGlyphsWithForm(int formIndex);
+	}
+
+	private final Listener listener;
+	private final SegmentIndex index = new SegmentIndex();
+	private final ViewTransform viewTransform = new ViewTransform();
+	private final AffineTransform scaling = new AffineTransform();
+	private boolean isEnabled = true;
+	private boolean hasViewTransform = false;
+	private Component editorView = null;
+	private JCheckBoxMenuItem miEnabled = null;
+	private JMenuItem miShowGlyphs = null;
+	private int contextMenuForm = -1;
+
+	private int mouseX, mouseY;
+	private boolean mouseInside = false;
+	private boolean mousePressed = false;
+	private int hoveredForm = -1;
+	private SegmentIndex.Hit nearestPoint = null;
+
+	FormHighlighter(Listener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void setEditorView(Component editorView)
+	{
+		this.editorView = editorView;
+		MouseAdapter m = new MouseAdapter() {
+			@Override public void mousePressed (MouseEvent e) { mousePressed = true; }
+			@Override public void mouseReleased(MouseEvent e) { mousePressed = false; index.updateChangedForms(); updateHits(); }
+			@Override public void mouseMoved   (MouseEvent e) { setMousePos(e.getX(), e.getY(), true); }
+			@Override public void mouseDragged (MouseEvent e) { setMousePos(e.getX(), e.getY(), true); }
+			@Override public void mouseExited  (MouseEvent e) { setMousePos(0, 0, false); }
+		};
+		editorView.addMouseListener(m);
+		editorView.addMouseMotionListener(m);
+	}
+
+	/**
+	 * Sets the forms of the current glyph. Has to be called after each change of the forms.
+	 */
+	void setForms(Form[] forms) {
+		index.setForms(forms);
+		updateHits();
+	}
+
+	private void setMousePos(int x, int y, boolean inside) {
+		mouseX = x;
+		mouseY = y;
+		mouseInside = inside;
+		updateHits();
+	}
+
+	private void updateHits() {
+		if (findHits() && editorView!=null)
+			editorView.repaint();
+	}
+
+	/**
+	 * @return <code>true</code>, if hovered form or nearest point have changed
+	 */
+	private boolean findHits() {
+		int oldHoveredForm = hoveredForm;
+		SegmentIndex.Hit oldNearestPoint = nearestPoint;
+		hoveredForm = -1;
+		nearestPoint = null;
+		if (mousePressed) index.updateChangedForms();
+
+		if (isEnabled && mouseInside && hasViewTransform) {
+			double scale = Math.abs(viewTransform.scaleX);
+			double x = (mouseX-viewTransform.translateX)/viewTransform.scaleX;
+			double y = (mouseY-viewTransform.translateY)/viewTransform.scaleY;
+			SegmentIndex.Hit form = index.findNearestForm(x, y, HOVER_DISTANCE/scale);
+			if (form!=null) hoveredForm = form.formIndex;
+			nearestPoint = index.findNearestEndPoint(x, y, NEAREST_POINT_DISTANCE/scale);
+		}
+
+		boolean nearestPointChanged = oldNearestPoint==null ? nearestPoint!=null : nearestPoint==null || oldNearestPoint.x!=nearestPoint.x || oldNearestPoint.y!=nearestPoint.y;
+		return oldHoveredForm!=hoveredForm || nearestPointChanged;
+	}
+
+	@Override
+	public void addToEditorViewContextMenu(JPopupMenu contextMenu)
+	{
+		contextMenu.add(miEnabled = AlphaCharEditor.createCheckBoxMI("Highlight Form under Mouse", isEnabled, b->{ isEnabled = b; updateHits(); }));
+		contextMenu.add(miShowGlyphs = AlphaCharEditor.createMenuItem("Show Characters with Highlighted Form", e->{ if (contextMenuForm>=0) listener.showGlyphsWithForm(contextMenuForm); }));
+	}
+
+	@Override
+	public void prepareContextMenuToShow()
+	{
+		miEnabled.setSelected(isEnabled);
+		contextMenuForm = hoveredForm;
+		miShowGlyphs.setEnabled(contextMenuForm>=0);
+	}
+
+	@Override
+	public void draw(Graphics2D g2, int x, int y, int width, int height, ZoomableCanvas.ViewState viewState, Iterable<? extends FeatureLineForm> forms)
+	{
+		viewTransform.update(viewState);
+		hasViewTransform = true;
+		if (!isEnabled) return;
+		// the line editor may have moved a point after the last mouse event was handled here
+		if (mousePressed) findHits();
+
+		Object antialiasing = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+		Stroke stroke = g2.getStroke();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+		if (hoveredForm>=0 && hoveredForm<index.getFormCount()) {
+			viewTransform.getScaling(scaling);
+			g2.translate(viewTransform.translateX, viewTransform.translateY);
+			g2.setColor(COLOR_HOVERED_FORM);
+			g2.setStroke(STROKE_HOVERED_FORM);
+			g2.draw(scaling.createTransformedShape(index.getPath(hoveredForm)));
+			g2.translate(-viewTransform.translateX, -viewTransform.translateY);
+		}
+
+		if (nearestPoint!=null) {
+			double sx = viewTransform.translateX + nearestPoint.x*viewTransform.scaleX;
+			double sy = viewTransform.translateY + nearestPoint.y*viewTransform.scaleY;
+			g2.setColor(COLOR_NEAREST_POINT);
+			g2.setStroke(STROKE_NEAREST_POINT);
+			g2.draw(new Ellipse2D.Double(sx-NEAREST_POINT_RADIUS, sy-NEAREST_POINT_RADIUS, 2*NEAREST_POINT_RADIUS, 2*NEAREST_POINT_RADIUS));
+		}
+
+		g2.setStroke(stroke);
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+	}
+}
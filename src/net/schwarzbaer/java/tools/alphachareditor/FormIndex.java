@@ -0,0 +1,238 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Index of all forms of a font, keyed by their normalized and quantized geometry.
+ * <p>
+ * Coordinates are rounded to {@link #QUANTUM}, so forms, that differ only by rounding errors, get the same key.
+ * The direction of lines and poly lines doesn't matter.
+ * The index answers, which glyphs contain a form, and which glyphs are similar to a glyph (share many forms).
+ * After it is built, the index is updated incrementally with each changed glyph.
+ * All methods have to be called on the event thread.
+ */
+class FormIndex {
+
+	static final double QUANTUM = 0.01;
+	private static final double ANGLE_QUANTUM = 1e-4;
+	private static final Metrics.Metric BUILD_TIME  = Metrics.timer("FormIndex.build");
+	private static final Metrics.Metric UPDATE_TIME = Metrics.timer("FormIndex.update");
+	private static final Metrics.Metric QUERY_TIME  = Metrics.timer("FormIndex.findSimilar");
+
+	/** distinct form -> glyphs, that contain it */
+	private final HashMap<FormKey, Posting> postings;
+	/** glyph -> its distinct forms (keys are shared with {@link #postings}) */
+	private final HashMap<Character, FormKey[]> glyphKeys;
+	private boolean isBuilt;
+
+	FormIndex() {
+		postings = new HashMap<>();
+		glyphKeys = new HashMap<>();
+		isBuilt = false;
+	}
+
+	boolean isBuilt() {
+		return isBuilt;
+	}
+
+	void clear() {
+		postings.clear();
+		glyphKeys.clear();
+		isBuilt = false;
+	}
+
+	void build(CharRaster.GlyphProvider font) {
+		long start = System.nanoTime();
+		clear();
+		for (char ch : font.getChars())
+			add(ch, font.getForms(ch));
+		isBuilt = true;
+		BUILD_TIME.stop(start);
+	}
+
+	/**
+	 * Updates a changed glyph. Does nothing, if the index isn't built.
+	 */
+	void update(char ch, Form[] forms) {
+		if (!isBuilt) return;
+		long start = System.nanoTime();
+		remove(ch);
+		add(ch, forms);
+		UPDATE_TIME.stop(start);
+	}
+
+	private void add(char ch, Form[] forms) {
+		if (forms==null || forms.length==0) return;
+		FormKey[] keys = new FormKey[forms.length];
+		int n = 0;
+		for (Form form : forms) {
+			FormKey key = FormKey.of(form);
+			if (key==null) continue;
+			Posting posting = postings.get(key);
+			if (posting==null) postings.put(key, posting = new Posting(key));
+			else key = posting.key;
+			if (posting.add(ch)) keys[n++] = key; // duplicate forms are counted once
+		}
+		if (n>0) glyphKeys.put(ch, n<keys.length ? Arrays.copyOf(keys, n) : keys);
+	}
+
+	private void remove(char ch) {
+		FormKey[] keys = glyphKeys.remove(ch);
+		if (keys==null) return;
+		for (FormKey key : keys) {
+			Posting posting = postings.get(key);
+			if (posting!=null && posting.remove(ch) && posting.size==0)
+				postings.remove(key);
+		}
+	}
+
+	/**
+	 * @return all glyphs, that contain the given form (in ascending order)
+	 */
+	char[] getGlyphsWith(Form form) {
+		FormKey key = FormKey.of(form);
+		Posting posting = key==null ? null : postings.get(key);
+		if (posting==null) return new char[0];
+		char[] chars = Arrays.copyOf(posting.chars, posting.size);
+		Arrays.sort(chars);
+		return chars;
+	}
+
+	static boolean isSameForm(Form form1, Form form2) {
+		FormKey key1 = FormKey.of(form1);
+		return key1!=null && key1.equals(FormKey.of(form2));
+	}
+
+	static final class Match {
+		final char ch;
+		final int sharedForms;
+		/** Jaccard index of the distinct forms of both glyphs (0..1) */
+		final double similarity;
+
+		private Match(char ch, int sharedForms, double similarity) {
+			this.ch = ch;
+			this.sharedForms = sharedForms;
+			this.similarity = similarity;
+		}
+
+		@Override public String toString() {
+			return String.format("'%s' %1.0f%%", ch, similarity*100);
+		}
+	}
+
+	/**
+	 * @return glyphs, that share at least one form with the given glyph, the most similar first
+	 */
+	Match[] findSimilar(char ch, int maxCount) {
+		long start = System.nanoTime();
+		FormKey[] keys = glyphKeys.get(ch);
+		if (keys==null) return new Match[0];
+		HashMap<Character, int[]> shared = new HashMap<>();
+		for (FormKey key : keys) {
+			Posting posting = postings.get(key);
+			for (int i=0; i<posting.size; i++)
+				if (posting.chars[i]!=ch)
+					shared.computeIfAbsent(posting.chars[i], c -> new int[1])[0]++;
+		}
+		Vector<Match> matches = new Vector<>(shared.size());
+		shared.forEach((other, count) -> {
+			int union = keys.length + glyphKeys.get(other).length - count[0];
+			matches.add(new Match(other, count[0], count[0]/(double) union));
+		});
+		matches.sort((m1, m2) -> m1.similarity!=m2.similarity ? Double.compare(m2.similarity, m1.similarity) : Character.compare(m1.ch, m2.ch));
+		if (matches.size()>maxCount) matches.setSize(maxCount);
+		QUERY_TIME.stop(start);
+		return matches.toArray(new Match[matches.size()]);
+	}
+
+	/** @return number of distinct forms */
+	int getFormCount() {
+		return postings.size();
+	}
+
+	int getGlyphCount() {
+		return glyphKeys.size();
+	}
+
+	private static final class Posting {
+		final FormKey key;
+		char[] chars;
+		int size;
+
+		Posting(FormKey key) {
+			this.key = key;
+			chars = new char[2];
+			size = 0;
+		}
+
+		/** all forms of a glyph are added in a row, so a duplicate can only be the last char */
+		boolean add(char ch) {
+			if (size>0 && chars[size-1]==ch) return false;
+			if (size==chars.length) chars = Arrays.copyOf(chars, size*2);
+			chars[size++] = ch;
+			return true;
+		}
+
+		boolean remove(char ch) {
+			for (int i=0; i<size; i++)
+				if (chars[i]==ch) {
+					chars[i] = chars[--size];
+					return true;
+				}
+			return false;
+		}
+	}
+
+	/**
+	 * Quantized geometry of a form, that doesn't depend on the direction of lines and poly lines.
+	 */
+	private static final class FormKey {
+		private final Forms.Type type;
+		private final long[] values;
+		private final int hash;
+
+		private FormKey(Forms.Type type, long[] values) {
+			this.type = type;
+			this.values = values;
+			this.hash = 31*type.hashCode() + Arrays.hashCode(values);
+		}
+
+		static FormKey of(Form form) {
+			Forms.Type type = Forms.Type.of(form);
+			double[] values = Forms.getValues(form);
+			if (type==null || values==null) return null;
+			long[] q = new long[values.length];
+			for (int i=0; i<values.length; i++) {
+				double quantum = type==Forms.Type.Arc && i>=3 ? ANGLE_QUANTUM : QUANTUM;
+				q[i] = Math.round(values[i]/quantum);
+			}
+			if (type!=Forms.Type.Arc) makeForward(q);
+			return new FormKey(type, q);
+		}
+
+		private static void makeForward(long[] points) {
+			int n = points.length;
+			if (n<4) return;
+			boolean reverse = points[0]>points[n-2] || (points[0]==points[n-2] && points[1]>points[n-1]);
+			if (reverse)
+				for (int i=0; i<n/2; i+=2) {
+					int j = n-2-i;
+					long x = points[i], y = points[i+1];
+					points[i] = points[j]; points[i+1] = points[j+1];
+					points[j] = x;         points[j+1] = y;
+				}
+		}
+
+		@Override public int hashCode() { return hash; }
+
+		@Override public boolean equals(Object obj) {
+			if (this==obj) return true;
+			if (!(obj instanceof FormKey other)) return false;
+			return hash==other.hash && type==other.type && Arrays.equals(values, other.values);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.geom.Path2D;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+final class Forms {
+
+	private Forms() {}
+
+	enum Type {
+		PolyLine, Line, Arc;
+
+		static Type of(Form form) {
+			if (form instanceof Form.PolyLine) return PolyLine;
+			if (form instanceof Form.Line    ) return Line;
+			if (form instanceof Form.Arc     ) return Arc;
+			return null;
+		}
+
+		static Type parse(String name) {
+			for (Type type : values())
+				if (type.name().equals(name))
+					return type;
+			return null;
+		}
+	}
+
+	static double[] getValues(Form form) {
+		return form==null ? null : form.getValues();
+	}
+
+	static Form create(Type type, double[] values, Form.Factory factory) {
+		Assert(type!=null);
+		Assert(values!=null);
+		Assert(factory!=null);
+		switch (type) {
+		case PolyLine: return factory.createPolyLine(values);
+		case Line    : return factory.createLine    (values);
+		case Arc     : return factory.createArc     (values);
+		}
+		return null;
+	}
+
+	static Path2D.Double createPath(Form[] forms) {
+		Path2D.Double path = new Path2D.Double();
+		if (forms!=null)
+			for (Form form : forms)
+				appendTo(path, form);
+		return path;
+	}
+
+	static void appendTo(Path2D path, Form form) {
+		Type type = Type.of(form);
+		double[] values = getValues(form);
+		if (type==null || values==null) return;
+		appendTo(path, type, values);
+	}
+
+	static void appendTo(Path2D path, Type type, double[] values) {
+		switch (type) {
+		case PolyLine:
+			if (values.length<4) return;
+			path.moveTo(values[0], values[1]);
+			for (int i=2; i+1<values.length; i+=2)
+				path.lineTo(values[i], values[i+1]);
+			break;
+
+		case Line:
+			if (values.length<4) return;
+			path.moveTo(values[0], values[1]);
+			path.lineTo(values[2], values[3]);
+			break;
+
+		case Arc:
+			if (values.length<5) return;
+			appendArc(path, values[0], values[1], values[2], values[3], values[4]);
+			break;
+		}
+	}
+
+	/**
+	 * Appends an arc from <code>aStart</code> to <code>aEnd</code> (radians) as a sequence of cubic curves with at most 90&deg; each.
+	 */
+	private static void appendArc(Path2D path, double xC, double yC, double r, double aStart, double aEnd) {
+		double span = aEnd-aStart;
+		int n = Math.max(1, (int) Math.ceil(Math.abs(span)/(Math.PI/2)));
+		double step = span/n;
+		double k = 4.0/3.0*Math.tan(step/4);
+
+		double a = aStart;
+		double cos = Math.cos(a);
+		double sin = Math.sin(a);
+		path.moveTo(xC+r*cos, yC+r*sin);
+		for (int i=0; i<n; i++) {
+			double a2 = aStart+(i+1)*step;
+			double cos2 = Math.cos(a2);
+			double sin2 = Math.sin(a2);
+			path.curveTo(
+				xC+r*(cos -k*sin ), yC+r*(sin +k*cos ),
+				xC+r*(cos2+k*sin2), yC+r*(sin2-k*cos2),
+				xC+r*cos2, yC+r*sin2
+			);
+			cos = cos2;
+			sin = sin2;
+		}
+	}
+
+	private static void Assert(boolean condition) {
+		AlphaCharEditor.Assert(condition);
+	}
+}
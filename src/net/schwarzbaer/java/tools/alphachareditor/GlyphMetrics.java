@@ -0,0 +1,181 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.geom.PathIterator;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Metrics of a glyph, that is drawn with round caps and joins at a given line width (like in {@link TextPreview}).
+ * <p>
+ * All values are model units. Like in the text preview the pen position of a glyph is at <code>x = -lineWidth/2</code>,
+ * so a glyph, whose center lines start at <code>x = 0</code>, touches its pen position.
+ * Besides the tight bounds of the stroked glyph, its horizontal extent is kept for each horizontal band of {@link #BAND_HEIGHT}.
+ * These profiles are used to compute kerning.
+ */
+final class GlyphMetrics {
+
+	static final double BAND_HEIGHT = 5;
+	/** y of the upper border of band 0 */
+	private static final double BANDS_ORIGIN = -50;
+	private static final double FLATNESS = 0.05;
+
+	final double lineWidth;
+	/** tight bounds of the stroked glyph (empty glyph: all 0) */
+	final double minX, minY, maxX, maxY;
+	final double advance;
+	final double leftSideBearing;
+	final double rightSideBearing;
+	/** index of the first band of the profiles */
+	private final int firstBand;
+	/** left and right border of the stroked glyph in each band (NaN, if a band is empty) */
+	private final float[] left, right;
+
+	private GlyphMetrics(double lineWidth, double minX, double minY, double maxX, double maxY, double advance, int firstBand, float[] left, float[] right) {
+		this.lineWidth = lineWidth;
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.firstBand = firstBand;
+		this.left = left;
+		this.right = right;
+		this.advance = advance;
+		leftSideBearing  = isEmpty() ? 0 : minX + lineWidth/2;
+		rightSideBearing = isEmpty() ? 0 : advance - (maxX + lineWidth/2);
+	}
+
+	boolean isEmpty() {
+		return left.length==0;
+	}
+
+	static GlyphMetrics compute(Form[] forms, double lineWidth) {
+		double r = lineWidth/2;
+		double[] coords = new double[6];
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+		PathIterator it = Forms.createPath(forms).getPathIterator(null, FLATNESS);
+		for (; !it.isDone(); it.next())
+			if (it.currentSegment(coords)!=PathIterator.SEG_CLOSE) {
+				minX = Math.min(minX, coords[0]); maxX = Math.max(maxX, coords[0]);
+				minY = Math.min(minY, coords[1]); maxY = Math.max(maxY, coords[1]);
+			}
+		if (minX>maxX || !Double.isFinite(minX+minY+maxX+maxY))
+			return new GlyphMetrics(lineWidth, 0, 0, 0, 0, lineWidth, 0, new float[0], new float[0]);
+
+		int firstBand = getBand(minY-r);
+		int bandCount = getBand(maxY+r)-firstBand+1;
+		float[] left  = new float[bandCount];
+		float[] right = new float[bandCount];
+		Arrays.fill(left , Float.NaN);
+		Arrays.fill(right, Float.NaN);
+
+		// each point of a center line covers a disk of radius r; the center lines are sampled densely enough to get the extent of each band
+		double step = BAND_HEIGHT/4;
+		double x0 = 0, y0 = 0;
+		it = Forms.createPath(forms).getPathIterator(null, FLATNESS);
+		for (; !it.isDone(); it.next()) {
+			int type = it.currentSegment(coords);
+			if (type==PathIterator.SEG_CLOSE) continue;
+			double x1 = coords[0], y1 = coords[1];
+			if (type==PathIterator.SEG_MOVETO)
+				addDisk(x1, y1, r, firstBand, left, right);
+			else {
+				int n = Math.max(1, (int) Math.ceil(Math.hypot(x1-x0, y1-y0)/step));
+				for (int i=1; i<=n; i++)
+					addDisk(x0+(x1-x0)*i/n, y0+(y1-y0)*i/n, r, firstBand, left, right);
+			}
+			x0 = x1;
+			y0 = y1;
+		}
+		return new GlyphMetrics(lineWidth, minX-r, minY-r, maxX+r, maxY+r, Math.max(0, maxX) + lineWidth, firstBand, left, right);
+	}
+
+	/**
+	 * Writes these metrics including the profiles. They are read by {@link #read(ByteBuffer)}.
+	 */
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeDouble(lineWidth);
+		out.writeDouble(minX);
+		out.writeDouble(minY);
+		out.writeDouble(maxX);
+		out.writeDouble(maxY);
+		out.writeDouble(advance);
+		out.writeInt(firstBand);
+		out.writeInt(left.length);
+		for (int i=0; i<left.length; i++) {
+			out.writeFloat(left [i]);
+			out.writeFloat(right[i]);
+		}
+	}
+
+	/**
+	 * Reads metrics written by {@link #writeTo(DataOutputStream)} from the current position of the buffer.
+	 */
+	static GlyphMetrics read(ByteBuffer buffer) {
+		double lineWidth = buffer.getDouble();
+		double minX      = buffer.getDouble();
+		double minY      = buffer.getDouble();
+		double maxX      = buffer.getDouble();
+		double maxY      = buffer.getDouble();
+		double advance   = buffer.getDouble();
+		int firstBand = buffer.getInt();
+		int bandCount = buffer.getInt();
+		if (bandCount<0 || bandCount*8L>buffer.remaining())
+			throw new IllegalArgumentException(String.format("Invalid number of bands: %d", bandCount));
+		float[] left  = new float[bandCount];
+		float[] right = new float[bandCount];
+		for (int i=0; i<bandCount; i++) {
+			left [i] = buffer.getFloat();
+			right[i] = buffer.getFloat();
+		}
+		return new GlyphMetrics(lineWidth, minX, minY, maxX, maxY, advance, firstBand, left, right);
+	}
+
+	private static void addDisk(double x, double y, double r, int firstBand, float[] left, float[] right) {
+		int from = Math.max(0, getBand(y-r)-firstBand);
+		int to = Math.min(left.length-1, getBand(y+r)-firstBand);
+		for (int i=from; i<=to; i++) {
+			double bandMinY = BANDS_ORIGIN + (firstBand+i)*BAND_HEIGHT;
+			double dy = y<bandMinY ? bandMinY-y : Math.max(0, y-(bandMinY+BAND_HEIGHT));
+			if (dy>r) continue;
+			double dx = Math.sqrt(r*r-dy*dy);
+			if (Float.isNaN(left[i]) || x-dx<left[i]) left[i] = (float) (x-dx);
+			if (Float.isNaN(right[i]) || x+dx>right[i]) right[i] = (float) (x+dx);
+		}
+	}
+
+	private static int getBand(double y) {
+		return (int) Math.floor((y-BANDS_ORIGIN)/BAND_HEIGHT);
+	}
+
+	/**
+	 * @return the smallest horizontal distance between the glyphs <code>l</code> and <code>r</code>,
+	 *         if <code>r</code> is placed at the advance of <code>l</code>, or <code>NaN</code>, if they share no band
+	 */
+	static double getMinDistance(GlyphMetrics l, GlyphMetrics r) {
+		int from = Math.max(l.firstBand, r.firstBand);
+		int to = Math.min(l.firstBand+l.left.length, r.firstBand+r.left.length);
+		double min = Double.NaN;
+		for (int band=from; band<to; band++) {
+			float lRight = l.right[band-l.firstBand];
+			float rLeft  = r.left [band-r.firstBand];
+			if (Float.isNaN(lRight) || Float.isNaN(rLeft)) continue;
+			double distance = l.advance + rLeft - lRight;
+			if (Double.isNaN(min) || distance<min) min = distance;
+		}
+		return min;
+	}
+
+	/**
+	 * @return the horizontal distance between the bounds of the glyphs <code>l</code> and <code>r</code>,
+	 *         if <code>r</code> is placed at the advance of <code>l</code>
+	 */
+	static double getBoundsDistance(GlyphMetrics l, GlyphMetrics r) {
+		return l.advance + r.minX - l.maxX;
+	}
+}
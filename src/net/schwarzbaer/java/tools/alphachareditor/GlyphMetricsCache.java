@@ -0,0 +1,197 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Cache of the {@link GlyphMetrics} of the active font and automatic pair kerning based on them.
+ * <p>
+ * Metrics are computed, when they are needed first, and recomputed after each change of a glyph.
+ * Kerning moves two glyphs closer together, if their shapes leave more space between them than their bounds
+ * (e.g. "AV" or "To"). It's computed in parallel for all pairs of the first {@link #MAX_KERNING_CHARS} chars of a font.
+ * <p>
+ * Metrics and kerning can be saved next to the font file (<code>&lt;font file&gt;.glyphmetrics</code>), so other programs don't have to compute them:
+ * <pre>
+ * LineWidth=&lt;line width&gt;
+ * [AlphaChar 'x']
+ * Bounds=&lt;minX&gt;;&lt;minY&gt;;&lt;maxX&gt;;&lt;maxY&gt;
+ * Advance=&lt;advance&gt;
+ * SideBearings=&lt;left&gt;;&lt;right&gt;
+ * ...
+ * [Kerning]
+ * Pair=&lt;left char code (hex)&gt;;&lt;right char code (hex)&gt;;&lt;kerning&gt;
+ * ...
+ * </pre>
+ * Except of the static methods all methods have to be called on the event thread.
+ */
+class GlyphMetricsCache {
+
+	/** differs from the extension of the metrics of a {@link BatchRasterizer} atlas, whose output base name may be the font file */
+	static final String EXTENSION = ".glyphmetrics";
+	static final int MAX_KERNING_CHARS = 1024;
+	/** part of the space between the shapes of two glyphs (beyond the space between their bounds), that is removed by kerning */
+	private static final double KERNING_FACTOR = 0.5;
+	private static final double MIN_KERNING = 0.5;
+	private static final Metrics.Metric COMPUTE_ALL_TIME = Metrics.timer("GlyphMetrics.computeAll");
+	private static final Metrics.Metric KERNING_TIME     = Metrics.timer("GlyphMetrics.computeKerning");
+	private static final Metrics.Metric KERNING_PAIRS    = Metrics.value("GlyphMetrics.kerningPairs");
+	private static final Metrics.Metric WRITE_TIME       = Metrics.timer("GlyphMetrics.write");
+
+	private final HashMap<Character, GlyphMetrics> cache;
+	private double lineWidth;
+
+	GlyphMetricsCache(double lineWidth) {
+		cache = new HashMap<>();
+		this.lineWidth = lineWidth;
+	}
+
+	void setLineWidth(double lineWidth) {
+		if (this.lineWidth==lineWidth) return;
+		this.lineWidth = lineWidth;
+		cache.clear();
+	}
+
+	void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Recomputes the metrics of a changed glyph.
+	 */
+	void update(char ch, Form[] forms) {
+		cache.put(ch, GlyphMetrics.compute(forms, lineWidth));
+	}
+
+	/**
+	 * Drops the metrics of a changed glyph. They are computed again, when they are needed.
+	 */
+	void remove(char ch) {
+		cache.remove(ch);
+	}
+
+	HashMap<Character, GlyphMetrics> getCachedMetrics() {
+		return new HashMap<>(cache);
+	}
+
+	/**
+	 * Takes metrics, that were computed in the background. Metrics of glyphs changed in the meantime are kept.
+	 */
+	void addComputedMetrics(double lineWidth, char[] chars, GlyphMetrics[] metrics) {
+		if (this.lineWidth!=lineWidth) return;
+		for (int i=0; i<chars.length; i++)
+			cache.putIfAbsent(chars[i], metrics[i]);
+	}
+
+	/**
+	 * Takes metrics, that were stored before (e.g. in a {@link ProjectBundle}). Metrics for another line width are ignored.
+	 */
+	void addStoredMetrics(Map<Character, GlyphMetrics> metrics) {
+		for (Map.Entry<Character, GlyphMetrics> entry : metrics.entrySet())
+			if (entry.getValue().lineWidth==lineWidth)
+				cache.putIfAbsent(entry.getKey(), entry.getValue());
+	}
+
+	static File getFile(File fontFile) {
+		return new File(fontFile.getPath()+EXTENSION);
+	}
+
+	/**
+	 * Computes the metrics of all given chars in parallel. Already known metrics are reused.
+	 * @param font read-only font, that can be accessed by other threads
+	 */
+	static GlyphMetrics[] computeAll(CharRaster.GlyphProvider font, char[] chars, Map<Character, GlyphMetrics> known, double lineWidth, ForkJoinPool pool) {
+		long start = System.nanoTime();
+		GlyphMetrics[] metrics = new GlyphMetrics[chars.length];
+		pool.submit(() -> IntStream.range(0, chars.length).parallel().forEach(i -> {
+			GlyphMetrics m = known.get(chars[i]);
+			metrics[i] = m!=null ? m : GlyphMetrics.compute(font.getForms(chars[i]), lineWidth);
+		})).join();
+		COMPUTE_ALL_TIME.stop(start);
+		return metrics;
+	}
+
+	static final class KerningPair {
+		final char left;
+		final char right;
+		final double value;
+
+		private KerningPair(char left, char right, double value) {
+			this.left = left;
+			this.right = right;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Computes the kerning of all pairs of the first {@link #MAX_KERNING_CHARS} non-empty, visible chars in parallel.
+	 * @return pairs with a kerning (sorted by left and right char)
+	 */
+	static KerningPair[] computeKerning(char[] chars, GlyphMetrics[] metrics, ForkJoinPool pool) {
+		long start = System.nanoTime();
+		int[] kerned = new int[Math.min(chars.length, MAX_KERNING_CHARS)];
+		int n = 0;
+		for (int i=0; i<chars.length && n<kerned.length; i++)
+			if (!metrics[i].isEmpty() && !Character.isWhitespace(chars[i]))
+				kerned[n++] = i;
+		int count = n;
+
+		KerningPair[][] pairs = new KerningPair[count][];
+		pool.submit(() -> IntStream.range(0, count).parallel().forEach(l -> {
+			GlyphMetrics left = metrics[kerned[l]];
+			Vector<KerningPair> row = new Vector<>();
+			for (int i=0; i<count; i++) {
+				double kerning = computeKerning(left, metrics[kerned[i]]);
+				if (kerning<=-MIN_KERNING)
+					row.add(new KerningPair(chars[kerned[l]], chars[kerned[i]], Math.round(kerning*10)/10.0));
+			}
+			pairs[l] = row.toArray(new KerningPair[row.size()]);
+		})).join();
+
+		Vector<KerningPair> result = new Vector<>();
+		for (KerningPair[] row : pairs)
+			for (KerningPair pair : row)
+				result.add(pair);
+		KERNING_TIME.stop(start);
+		KERNING_PAIRS.record(result.size());
+		return result.toArray(new KerningPair[result.size()]);
+	}
+
+	/**
+	 * @return kerning of a pair of glyphs (&lt;= 0)
+	 */
+	static double computeKerning(GlyphMetrics left, GlyphMetrics right) {
+		double minDistance = GlyphMetrics.getMinDistance(left, right);
+		if (Double.isNaN(minDistance)) return 0; // no overlapping bands (e.g. "T" and ".")
+		return -KERNING_FACTOR * Math.max(0, minDistance - GlyphMetrics.getBoundsDistance(left, right));
+	}
+
+	static void write(File file, double lineWidth, char[] chars, GlyphMetrics[] metrics, KerningPair[] kerning) throws IOException {
+		long start = System.nanoTime();
+		AtomicFile.writeText(file, out -> {
+			out.printf("LineWidth=%s%n", lineWidth);
+			for (int i=0; i<chars.length; i++) {
+				GlyphMetrics m = metrics[i];
+				out.printf("[AlphaChar '%s']%n", chars[i]);
+				if (!m.isEmpty())
+					out.printf("Bounds=%s;%s;%s;%s%n", round(m.minX), round(m.minY), round(m.maxX), round(m.maxY));
+				out.printf("Advance=%s%n", round(m.advance));
+				out.printf("SideBearings=%s;%s%n", round(m.leftSideBearing), round(m.rightSideBearing));
+			}
+			out.printf("[Kerning]%n");
+			for (KerningPair pair : kerning)
+				out.printf("Pair=%X;%X;%s%n", (int) pair.left, (int) pair.right, pair.value);
+		});
+		WRITE_TIME.stop(start);
+	}
+
+	private static double round(double value) {
+		return Math.round(value*100)/100.0;
+	}
+}
@@ -0,0 +1,14 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Read-only store of glyphs, that creates the <code>Form</code> objects of a glyph only on request.
+ */
+interface GlyphSource {
+	int size();
+	boolean contains(char ch);
+	/** @return all characters of this source in ascending order */
+	char[] getChars();
+	Form[] decode(char ch, Form.Factory factory);
+}
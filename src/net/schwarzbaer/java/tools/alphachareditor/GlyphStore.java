@@ -0,0 +1,143 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.WeakHashMap;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Content hashed store of immutable glyph geometry.
+ * <p>
+ * Geometrically identical forms and glyphs are interned, so they are stored only once,
+ * no matter how many fonts of a project or versions in the undo history contain them.
+ * Snapshots, that aren't referenced anymore, are dropped from the store automatically.
+ * Forms created from a snapshot are independent copies, so editing them never changes a snapshot (copy-on-write).
+ */
+final class GlyphStore {
+
+	// rough object sizes (64 bit VM with compressed pointers)
+	static final long OBJECT_OVERHEAD = 16;
+	static final long ARRAY_OVERHEAD  = 16;
+	static final long REFERENCE_SIZE  = 4;
+
+	private static final WeakHashMap<FormSnapshot, WeakReference<FormSnapshot>> formPool = new WeakHashMap<>();
+	private static final WeakHashMap<GlyphSnapshot, WeakReference<GlyphSnapshot>> glyphPool = new WeakHashMap<>();
+
+	private GlyphStore() {}
+
+	static final class FormSnapshot {
+		final Forms.Type type;
+		private final double[] values;
+		private final int hash;
+
+		private FormSnapshot(Forms.Type type, double[] values) {
+			this.type = type;
+			this.values = values;
+			this.hash = 31*type.hashCode() + Arrays.hashCode(values);
+		}
+
+		Form createForm(Form.Factory factory) {
+			return Forms.create(type, values.clone(), factory);
+		}
+
+		long getSize() {
+			return OBJECT_OVERHEAD + 2*REFERENCE_SIZE + 4 + ARRAY_OVERHEAD + values.length*8L;
+		}
+
+		@Override public int hashCode() { return hash; }
+
+		@Override public boolean equals(Object obj) {
+			if (this==obj) return true;
+			if (!(obj instanceof FormSnapshot other)) return false;
+			return hash==other.hash && type==other.type && Arrays.equals(values, other.values);
+		}
+	}
+
+	static final class GlyphSnapshot {
+		private final FormSnapshot[] forms;
+		private final int hash;
+
+		private GlyphSnapshot(FormSnapshot[] forms) {
+			this.forms = forms;
+			this.hash = Arrays.hashCode(forms);
+		}
+
+		int getFormCount() {
+			return forms.length;
+		}
+
+		Form[] createForms(Form.Factory factory) {
+			Form[] result = new Form[forms.length];
+			for (int i=0; i<forms.length; i++)
+				result[i] = forms[i].createForm(factory);
+			return result;
+		}
+
+		boolean isSameAs(GlyphSnapshot other) {
+			return equals(other);
+		}
+
+		/**
+		 * @return size of all forms of this snapshot, that aren't shared with <code>other</code>
+		 */
+		long getSizeNotSharedWith(GlyphSnapshot other) {
+			long size = OBJECT_OVERHEAD + REFERENCE_SIZE + 4 + ARRAY_OVERHEAD + forms.length*REFERENCE_SIZE;
+			for (FormSnapshot form : forms)
+				if (other==null || !other.contains(form))
+					size += form.getSize();
+			return size;
+		}
+
+		private boolean contains(FormSnapshot form) {
+			for (FormSnapshot f : forms)
+				if (f==form) return true;
+			return false;
+		}
+
+		@Override public int hashCode() { return hash; }
+
+		@Override public boolean equals(Object obj) {
+			if (this==obj) return true;
+			if (!(obj instanceof GlyphSnapshot other)) return false;
+			if (hash!=other.hash || forms.length!=other.forms.length) return false;
+			for (int i=0; i<forms.length; i++)
+				if (forms[i]!=other.forms[i]) return false; // interned
+			return true;
+		}
+	}
+
+	/**
+	 * @return the interned snapshot of the given forms
+	 */
+	static synchronized GlyphSnapshot intern(Form[] forms) {
+		if (forms==null) forms = new Form[0];
+		FormSnapshot[] snapshots = new FormSnapshot[forms.length];
+		int n = 0;
+		for (Form form : forms) {
+			Forms.Type type = Forms.Type.of(form);
+			double[] values = Forms.getValues(form);
+			if (type!=null && values!=null)
+				snapshots[n++] = intern(formPool, new FormSnapshot(type, values.clone()));
+		}
+		return intern(glyphPool, new GlyphSnapshot(n<snapshots.length ? Arrays.copyOf(snapshots, n) : snapshots));
+	}
+
+	private static <T> T intern(WeakHashMap<T, WeakReference<T>> pool, T value) {
+		WeakReference<T> ref = pool.get(value);
+		T existing = ref==null ? null : ref.get();
+		if (existing!=null) return existing;
+		pool.put(value, new WeakReference<>(value));
+		return value;
+	}
+
+	/** @return number of distinct forms in the store */
+	static synchronized int getFormCount() {
+		return formPool.size();
+	}
+
+	/** @return number of distinct glyphs in the store */
+	static synchronized int getGlyphCount() {
+		return glyphPool.size();
+	}
+}
@@ -0,0 +1,197 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Bounded LRU cache of small glyph previews. Previews are rendered by background threads.
+ * All methods have to be called on the event thread.
+ */
+class GlyphThumbnails {
+
+	private static final Color COLOR_GLYPH = Color.BLACK;
+	/** lower end of the vertical range, that is always scaled into a thumbnail (bottom of the default guide lines) */
+	private static final double GLYPH_BOTTOM = 100;
+	private static final Metrics.Metric RENDER_TIME = Metrics.timer("GlyphThumbnails.render");
+
+	private final int width;
+	private final int height;
+	private final float strokeWidth;
+	private final Consumer<Character> thumbnailReady;
+	private final LinkedHashMap<Character, BufferedImage> cache;
+	private final HashMap<Character, Object> pending;
+	/** chars without forms, for which no thumbnail is rendered */
+	private final HashSet<Character> empty;
+	private final ThreadPoolExecutor executor;
+
+	GlyphThumbnails(int width, int height, float strokeWidth, int maxEntries, Consumer<Character> thumbnailReady) {
+		this.width = width;
+		this.height = height;
+		this.strokeWidth = strokeWidth;
+		this.thumbnailReady = thumbnailReady;
+		AlphaCharEditor.Assert(this.thumbnailReady!=null);
+		AlphaCharEditor.Assert(maxEntries>0);
+
+		cache = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = -2263218186669637301L;
+			@Override protected boolean removeEldestEntry(Map.Entry<Character, BufferedImage> eldest) {
+				return size()>maxEntries;
+			}
+		};
+		pending = new HashMap<>();
+		empty = new HashSet<>();
+
+		// LIFO queue: recently requested thumbnails (= currently visible fields) are rendered first
+		LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>() {
+			private static final long serialVersionUID = 4468958046698154549L;
+			@Override public boolean offer(Runnable r) { return offerFirst(r); }
+		};
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors()/2);
+		executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, queue, r -> {
+			Thread thread = new Thread(r, "GlyphThumbnails");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return the cached thumbnail of the given char or <code>null</code>, if it's not rendered yet.
+	 */
+	BufferedImage get(char ch) {
+		return cache.get(ch);
+	}
+
+	/**
+	 * @return <code>true</code>, if the thumbnail of the given char is cached or pending, or if the char has no forms
+	 */
+	boolean isRequested(char ch) {
+		return cache.containsKey(ch) || pending.containsKey(ch) || empty.contains(ch);
+	}
+
+	/**
+	 * Starts rendering of a thumbnail, if it's not already requested.
+	 * The forms are created and rendered by a background thread. <code>thumbnailReady</code> is called after it's finished.
+	 * @param forms creates the forms of the glyph on any thread
+	 */
+	void request(char ch, Supplier<Form[]> forms) {
+		if (isRequested(ch) || forms==null) return;
+
+		Object token = new Object();
+		pending.put(ch, token);
+		executor.execute(() -> {
+			long start = System.nanoTime();
+			Form[] glyph = forms.get();
+			BufferedImage result = glyph==null || glyph.length==0 ? null : render(Forms.createPath(glyph));
+			if (result!=null) RENDER_TIME.stop(start);
+			SwingUtilities.invokeLater(() -> {
+				if (pending.get(ch)!=token) return; // invalidated in the meantime
+				pending.remove(ch);
+				if (result==null) { empty.add(ch); return; }
+				cache.put(ch, result);
+				thumbnailReady.accept(ch);
+			});
+		});
+	}
+
+	int getWidth() {
+		return width;
+	}
+
+	int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the alpha values of all cached thumbnails row by row (all thumbnails have the same color)
+	 */
+	HashMap<Character, byte[]> exportAlphas() {
+		HashMap<Character, byte[]> alphas = new HashMap<>();
+		int[] pixels = new int[width*height];
+		for (Map.Entry<Character, BufferedImage> entry : cache.entrySet()) {
+			entry.getValue().getRGB(0, 0, width, height, pixels, 0, width);
+			byte[] alpha = new byte[pixels.length];
+			for (int i=0; i<pixels.length; i++)
+				alpha[i] = (byte) (pixels[i]>>>24);
+			alphas.put(entry.getKey(), alpha);
+		}
+		return alphas;
+	}
+
+	/**
+	 * Adds thumbnails exported by {@link #exportAlphas()}. Already cached thumbnails are kept.
+	 * Nothing is added, if the thumbnails have another size.
+	 */
+	void importAlphas(int width, int height, Map<Character, byte[]> alphas) {
+		if (width!=this.width || height!=this.height) return;
+		int color = COLOR_GLYPH.getRGB() & 0xFFFFFF;
+		int[] pixels = new int[width*height];
+		for (Map.Entry<Character, byte[]> entry : alphas.entrySet()) {
+			byte[] alpha = entry.getValue();
+			if (alpha.length!=pixels.length || cache.containsKey(entry.getKey())) continue;
+			for (int i=0; i<pixels.length; i++)
+				pixels[i] = (alpha[i]&0xFF)<<24 | color;
+			BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			image.setRGB(0, 0, width, height, pixels, 0, width);
+			cache.put(entry.getKey(), image);
+		}
+	}
+
+	void invalidate(char ch) {
+		cache.remove(ch);
+		pending.remove(ch);
+		empty.remove(ch);
+	}
+
+	void clear() {
+		cache.clear();
+		pending.clear();
+		empty.clear();
+		executor.getQueue().clear();
+	}
+
+	private BufferedImage render(Path2D.Double path) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Rectangle2D bounds = path.getBounds2D();
+		if (bounds.getWidth()==0 && bounds.getHeight()==0) return image;
+
+		double glyphTop    = Math.min(bounds.getMinY(), 0);
+		double glyphBottom = Math.max(bounds.getMaxY(), GLYPH_BOTTOM);
+		double glyphHeight = glyphBottom-glyphTop;
+		double margin = strokeWidth;
+		double scale = Math.min((height-2*margin)/glyphHeight, (width-2*margin)/Math.max(bounds.getWidth(), 1e-9));
+
+		AffineTransform transform = new AffineTransform();
+		transform.translate(width/2.0, margin + (height-2*margin-glyphHeight*scale)/2);
+		transform.scale(scale, scale);
+		transform.translate(-bounds.getCenterX(), -glyphTop);
+
+		Graphics2D g2 = image.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		g2.setColor(COLOR_GLYPH);
+		g2.setStroke(new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+		g2.draw(path.createTransformedShape(transform));
+		g2.dispose();
+		return image;
+	}
+}
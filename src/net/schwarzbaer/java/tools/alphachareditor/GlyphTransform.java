@@ -0,0 +1,319 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+/**
+ * Transform, that is applied to all glyphs of a font at once (e.g. to make an italic or condensed variant of a font).
+ * <p>
+ * The steps of the transform are applied in this order:
+ * <ol>
+ * <li>vertical remapping: y is mapped piecewise linearly from the positions of guide lines to new positions (e.g. to raise the x-height),</li>
+ * <li>scaling and slanting relative to the point (0,{@link #BASE_LINE}) followed by a translation,</li>
+ * <li>weight: offset copies of all forms at both sides of their center lines, that make the glyph bolder.</li>
+ * </ol>
+ * Arcs stay arcs, if they are only scaled uniformly and moved. Otherwise they are replaced by poly lines.
+ * Instances are immutable and can be used by several threads.
+ */
+final class GlyphTransform {
+
+	/** y of the base line of the default guide lines; it keeps its position, when glyphs are slanted or scaled */
+	static final double BASE_LINE = 100;
+	/** max. distance between an arc and the poly line, that replaces it */
+	private static final double ARC_TOLERANCE = 0.05;
+	/** max. length of the offset of a corner of a poly line relative to the weight */
+	private static final double MAX_MITER = 2;
+	private static final Metrics.Metric APPLY_ALL_TIME = Metrics.timer("GlyphTransform.applyAll");
+
+	final double slant_deg;
+	final double scaleX;
+	final double scaleY;
+	final double translateX;
+	final double translateY;
+	/** guide line positions (ascending) and their new positions (ascending) */
+	private final double[] remapFrom, remapTo;
+	/** all parts of the remapping have the same slope */
+	private final boolean isLinearRemap;
+	final double weight;
+	/** affine part: x' = m00*x + m01*y + m02, y' = m11*y + m12 */
+	private final double m00, m01, m02, m11, m12;
+
+	/**
+	 * @param remapFrom positions of guide lines (ascending)
+	 * @param remapTo   new positions of these guide lines (ascending)
+	 * @throws IllegalArgumentException, if the parameters describe no valid transform
+	 */
+	GlyphTransform(double slant_deg, double scaleX, double scaleY, double translateX, double translateY, double[] remapFrom, double[] remapTo, double weight) {
+		if (Math.abs(slant_deg)>=80) throw new IllegalArgumentException("Slant has to be between -80° and 80°");
+		if (!(scaleX>0) || !(scaleY>0)) throw new IllegalArgumentException("Scale factors have to be positive");
+		if (!(weight>=0)) throw new IllegalArgumentException("Weight can't be negative");
+		if (remapFrom.length!=remapTo.length) throw new IllegalArgumentException("Vertical remapping needs the same number of old and new positions");
+		for (int i=1; i<remapFrom.length; i++)
+			if (!(remapFrom[i-1]<remapFrom[i]) || !(remapTo[i-1]<remapTo[i]))
+				throw new IllegalArgumentException("Positions of vertical remapping have to be ascending");
+		this.slant_deg = slant_deg;
+		this.scaleX = scaleX;
+		this.scaleY = scaleY;
+		this.translateX = translateX;
+		this.translateY = translateY;
+		this.remapFrom = remapFrom.clone();
+		this.remapTo = remapTo.clone();
+		this.weight = weight;
+		boolean isLinearRemap = true;
+		for (int i=1; i+1<remapFrom.length; i++)
+			if (getRemapSlope(i)!=getRemapSlope(0))
+				isLinearRemap = false;
+		this.isLinearRemap = isLinearRemap;
+
+		// y1 = BASE_LINE + scaleY*(y-BASE_LINE);  x1 = scaleX*x + tan(slant)*(BASE_LINE-y1)
+		double k = Math.tan(Math.toRadians(slant_deg));
+		m00 = scaleX;
+		m01 = -k*scaleY;
+		m02 = k*scaleY*BASE_LINE + translateX;
+		m11 = scaleY;
+		m12 = BASE_LINE*(1-scaleY) + translateY;
+	}
+
+	boolean isIdentity() {
+		if (slant_deg!=0 || scaleX!=1 || scaleY!=1 || translateX!=0 || translateY!=0 || weight!=0) return false;
+		for (int i=0; i<remapFrom.length; i++)
+			if (remapFrom[i]!=remapTo[i]) return false;
+		return true;
+	}
+
+	@Override public String toString() {
+		return String.format("slant %s°, scale %s x %s, translate %s;%s, remap %s -> %s, weight %s",
+				slant_deg, scaleX, scaleY, translateX, translateY, Arrays.toString(remapFrom), Arrays.toString(remapTo), weight);
+	}
+
+	/**
+	 * Transforms all given glyphs in parallel.
+	 * @return transformed forms of each glyph
+	 */
+	static Form[][] applyAll(Form[][] glyphs, GlyphTransform transform, ForkJoinPool pool) {
+		long start = System.nanoTime();
+		Form[][] result = new Form[glyphs.length][];
+		pool.submit(() -> IntStream.range(0, glyphs.length).parallel().forEach(i -> {
+			result[i] = transform.apply(glyphs[i], LineEditor.createFormFactory());
+		})).join();
+		APPLY_ALL_TIME.stop(start);
+		return result;
+	}
+
+	Form[] apply(Form[] forms, Form.Factory factory) {
+		if (forms==null) return null;
+		Vector<Form> result = new Vector<>(weight>0 ? forms.length*3 : forms.length);
+		for (Form form : forms) {
+			Forms.Type type = Forms.Type.of(form);
+			double[] values = Forms.getValues(form);
+			if (type==null || values==null) continue;
+			int n = result.size();
+			transform(type, values, factory, result);
+			if (weight>0)
+				for (int i=n, end=result.size(); i<end; i++) {
+					addOffsetForm(result.get(i),  weight, factory, result);
+					addOffsetForm(result.get(i), -weight, factory, result);
+				}
+		}
+		return result.toArray(new Form[result.size()]);
+	}
+
+	private void transform(Forms.Type type, double[] values, Form.Factory factory, Vector<Form> result) {
+		switch (type) {
+		case Line:
+		case PolyLine:
+			if (values.length<4) return;
+			double[] points = mapPoints(insertRemapBreaks(values));
+			if (type==Forms.Type.Line && points.length==4)
+				result.add(Forms.create(Forms.Type.Line, points, factory));
+			else
+				result.add(Forms.create(Forms.Type.PolyLine, points, factory));
+			break;
+
+		case Arc:
+			if (values.length<5) return;
+			double xC = values[0], yC = values[1], r = values[2];
+			int segment = getRemapSegment(yC-r);
+			double slope = getRemapSlope(segment);
+			// uniformly scaled and moved arc
+			if ((isLinearRemap || segment==getRemapSegment(yC+r)) && m01==0 && m00==m11*slope) {
+				double[] center = mapPoints(new double[] { xC, yC });
+				result.add(Forms.create(Forms.Type.Arc, new double[] { center[0], center[1], r*m00, values[3], values[4] }, factory));
+			} else
+				result.add(Forms.create(Forms.Type.PolyLine, mapPoints(insertRemapBreaks(flattenArc(xC, yC, r, values[3], values[4]))), factory));
+			break;
+		}
+	}
+
+	private static double[] flattenArc(double xC, double yC, double r, double aStart, double aEnd) {
+		double span = aEnd-aStart;
+		double step = r>ARC_TOLERANCE ? 2*Math.acos(1-ARC_TOLERANCE/r) : Math.PI/2;
+		int n = Math.max(1, (int) Math.ceil(Math.abs(span)/Math.min(step, Math.PI/8)));
+		double[] points = new double[2*(n+1)];
+		for (int i=0; i<=n; i++) {
+			double a = aStart+span*i/n;
+			points[2*i  ] = xC+r*Math.cos(a);
+			points[2*i+1] = yC+r*Math.sin(a);
+		}
+		return points;
+	}
+
+	/**
+	 * Inserts a point at each crossing of a line segment with an inner guide line of the remapping, so straight segments stay straight within each part of the remapping.
+	 */
+	private double[] insertRemapBreaks(double[] points) {
+		if (isLinearRemap) return points;
+		double[] result = new double[points.length];
+		int n = 0;
+		for (int i=0; i+1<points.length; i+=2) {
+			if (i>0) {
+				double x0 = points[i-2], y0 = points[i-1];
+				double x1 = points[i  ], y1 = points[i+1];
+				for (int j0=1; j0+1<remapFrom.length; j0++) {
+					int j = y0<y1 ? j0 : remapFrom.length-1-j0; // in direction of the segment
+					double y = remapFrom[j];
+					if (Math.min(y0,y1)<y && y<Math.max(y0,y1)) {
+						if (n+2>result.length) result = Arrays.copyOf(result, result.length*2);
+						result[n++] = x0+(x1-x0)*(y-y0)/(y1-y0);
+						result[n++] = y;
+					}
+				}
+			}
+			if (n+2>result.length) result = Arrays.copyOf(result, result.length*2);
+			result[n++] = points[i];
+			result[n++] = points[i+1];
+		}
+		return n<result.length ? Arrays.copyOf(result, n) : result;
+	}
+
+	private double[] mapPoints(double[] points) {
+		double[] result = new double[points.length];
+		for (int i=0; i+1<points.length; i+=2) {
+			double x = points[i];
+			double y = remapY(points[i+1]);
+			result[i  ] = m00*x + m01*y + m02;
+			result[i+1] = m11*y + m12;
+		}
+		return result;
+	}
+
+	private double remapY(double y) {
+		if (remapFrom.length==0) return y;
+		if (remapFrom.length==1) return y + remapTo[0]-remapFrom[0];
+		int segment = getRemapSegment(y);
+		return remapTo[segment] + (y-remapFrom[segment])*getRemapSlope(segment);
+	}
+
+	/** @return index of the part of the remapping, that applies to y (outside of the guide lines the nearest part is extended) */
+	private int getRemapSegment(double y) {
+		if (remapFrom.length<2) return 0;
+		int i = Arrays.binarySearch(remapFrom, y);
+		if (i<0) i = -i-2;
+		return Math.max(0, Math.min(remapFrom.length-2, i));
+	}
+
+	private double getRemapSlope(int segment) {
+		if (remapFrom.length<2) return 1;
+		return (remapTo[segment+1]-remapTo[segment]) / (remapFrom[segment+1]-remapFrom[segment]);
+	}
+
+	private static void addOffsetForm(Form form, double offset, Form.Factory factory, Vector<Form> result) {
+		Forms.Type type = Forms.Type.of(form);
+		double[] values = Forms.getValues(form);
+		switch (type) {
+		case Line:
+		case PolyLine:
+			double[] points = getOffsetPoints(values, offset);
+			if (points!=null) result.add(Forms.create(type==Forms.Type.Line && points.length==4 ? Forms.Type.Line : Forms.Type.PolyLine, points, factory));
+			break;
+		case Arc:
+			if (values[2]+offset>0)
+				result.add(Forms.create(Forms.Type.Arc, new double[] { values[0], values[1], values[2]+offset, values[3], values[4] }, factory));
+			break;
+		}
+	}
+
+	/**
+	 * @return points of a poly line, that is moved by <code>offset</code> to the left of the given poly line (mitered corners), or <code>null</code>, if it has no length
+	 */
+	private static double[] getOffsetPoints(double[] points, double offset) {
+		// points without zero length segments
+		double[] p = new double[points.length];
+		int n = 0;
+		for (int i=0; i+1<points.length; i+=2)
+			if (n==0 || points[i]!=p[n-2] || points[i+1]!=p[n-1]) {
+				p[n++] = points[i];
+				p[n++] = points[i+1];
+			}
+		int count = n/2;
+		if (count<2) return null;
+		boolean closed = count>2 && p[0]==p[n-2] && p[1]==p[n-1];
+
+		// unit normals of the segments
+		double[] normals = new double[2*(count-1)];
+		for (int i=0; i<count-1; i++) {
+			double dx = p[2*i+2]-p[2*i], dy = p[2*i+3]-p[2*i+1];
+			double length = Math.hypot(dx, dy);
+			normals[2*i  ] = -dy/length;
+			normals[2*i+1] =  dx/length;
+		}
+
+		double[] result = new double[n];
+		for (int i=0; i<count; i++) {
+			int s1 = i>0 ? i-1 : closed ? count-2 : 0;
+			int s2 = i<count-1 ? i : closed ? 0 : count-2;
+			double nx = normals[2*s1]+normals[2*s2];
+			double ny = normals[2*s1+1]+normals[2*s2+1];
+			double length = Math.hypot(nx, ny);
+			double miter;
+			if (length<1e-9) { // reversal
+				nx = normals[2*s1];
+				ny = normals[2*s1+1];
+				miter = 1;
+			} else {
+				nx /= length;
+				ny /= length;
+				miter = Math.min(MAX_MITER, 1/(nx*normals[2*s1]+ny*normals[2*s1+1]));
+			}
+			result[2*i  ] = p[2*i  ]+nx*offset*miter;
+			result[2*i+1] = p[2*i+1]+ny*offset*miter;
+		}
+		return result;
+	}
+
+	/**
+	 * Glyphs of a font with a transform applied. Glyphs are transformed, when they are requested first (e.g. when they become visible).
+	 * Has to be used on the event thread.
+	 */
+	static final class Preview implements CharRaster.GlyphProvider {
+		private final CharRaster.GlyphProvider font;
+		private final GlyphTransform transform;
+		private final HashMap<Character, Form[]> cache;
+		private final Form.Factory factory;
+
+		Preview(CharRaster.GlyphProvider font, GlyphTransform transform) {
+			this.font = font;
+			this.transform = transform;
+			cache = new HashMap<>();
+			factory = LineEditor.createFormFactory();
+		}
+
+		@Override public boolean hasGlyph(char ch) { return font.hasGlyph(ch); }
+		@Override public char[] getChars() { return font.getChars(); }
+
+		@Override
+		public Form[] getForms(Character ch) {
+			if (ch==null) return null;
+			Form[] forms = cache.get(ch);
+			if (forms==null && !cache.containsKey(ch))
+				cache.put(ch, forms = transform.apply(font.getForms(ch), factory));
+			return forms;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of simple metrics (durations and values) with count, min, max, mean and percentiles of the latest samples.
+ * Metrics can be recorded from any thread.
+ * <pre>
+ * private static final Metrics.Metric PAINT_TIME = Metrics.timer("CharRaster.paint");
+ * long start = System.nanoTime();
+ * ...
+ * PAINT_TIME.stop(start);
+ * </pre>
+ */
+final class Metrics {
+
+	private static final int SAMPLE_COUNT = 512;
+	private static final ConcurrentHashMap<String, Metric> registry = new ConcurrentHashMap<>();
+
+	private Metrics() {}
+
+	enum Unit {
+		Nanoseconds("ms") { @Override String format(double value) { return String.format("%1.3f", value/1e6); } },
+		Count      (""  ) { @Override String format(double value) { return value==Math.rint(value) ? String.format("%d", (long) value) : String.format("%1.1f", value); } },
+		;
+		final String label;
+		Unit(String label) { this.label = label; }
+		abstract String format(double value);
+	}
+
+	/** @return the registered duration metric with the given name (created, if necessary) */
+	static Metric timer(String name) {
+		return registry.computeIfAbsent(name, n -> new Metric(n, Unit.Nanoseconds));
+	}
+
+	/** @return the registered value metric with the given name (created, if necessary) */
+	static Metric value(String name) {
+		return registry.computeIfAbsent(name, n -> new Metric(n, Unit.Count));
+	}
+
+	/** @return snapshots of all metrics sorted by name */
+	static Vector<Snapshot> getSnapshots() {
+		Vector<Snapshot> snapshots = new Vector<>();
+		for (Metric metric : registry.values())
+			snapshots.add(metric.getSnapshot());
+		snapshots.sort((s1, s2) -> s1.name.compareTo(s2.name));
+		return snapshots;
+	}
+
+	static void resetAll() {
+		for (Metric metric : registry.values())
+			metric.reset();
+	}
+
+	static void writeTo(PrintWriter out) {
+		out.printf("%-36s %8s %12s %12s %12s %12s %12s %12s %4s%n", "Metric", "Count", "Last", "Mean", "Min", "Median", "95%", "Max", "Unit");
+		for (Snapshot s : getSnapshots())
+			out.printf("%-36s %8d %12s %12s %12s %12s %12s %12s %4s%n", s.name, s.count,
+					s.format(s.last), s.format(s.mean), s.format(s.min), s.format(s.median), s.format(s.p95), s.format(s.max), s.unit.label);
+	}
+
+	static final class Metric {
+		final String name;
+		final Unit unit;
+		private long count;
+		private long total;
+		private long min;
+		private long max;
+		private long last;
+		/** ring buffer of the latest samples */
+		private final long[] samples;
+
+		private Metric(String name, Unit unit) {
+			this.name = name;
+			this.unit = unit;
+			this.samples = new long[SAMPLE_COUNT];
+			reset();
+		}
+
+		synchronized void reset() {
+			count = 0;
+			total = 0;
+			min = Long.MAX_VALUE;
+			max = Long.MIN_VALUE;
+			last = 0;
+		}
+
+		synchronized void record(long value) {
+			samples[(int) (count % SAMPLE_COUNT)] = value;
+			count++;
+			total += value;
+			last = value;
+			if (value<min) min = value;
+			if (value>max) max = value;
+		}
+
+		/**
+		 * Records the time since <code>start</code> (a value of {@link System#nanoTime()}).
+		 */
+		void stop(long start) {
+			record(System.nanoTime()-start);
+		}
+
+		synchronized Snapshot getSnapshot() {
+			long[] latest = Arrays.copyOf(samples, (int) Math.min(count, SAMPLE_COUNT));
+			Arrays.sort(latest);
+			return new Snapshot(name, unit, count, last,
+					count==0 ? 0 : total/(double)count,
+					count==0 ? 0 : min,
+					count==0 ? 0 : max,
+					getPercentile(latest, 0.50),
+					getPercentile(latest, 0.95));
+		}
+
+		private static long getPercentile(long[] sorted, double p) {
+			if (sorted.length==0) return 0;
+			return sorted[(int) Math.min(sorted.length-1, Math.floor(p*sorted.length))];
+		}
+	}
+
+	static final class Snapshot {
+		final String name;
+		final Unit unit;
+		final long count;
+		final long last;
+		final double mean;
+		final long min;
+		final long max;
+		/** median of the latest samples */
+		final long median;
+		/** 95% percentile of the latest samples */
+		final long p95;
+
+		private Snapshot(String name, Unit unit, long count, long last, double mean, long min, long max, long median, long p95) {
+			this.name = name;
+			this.unit = unit;
+			this.count = count;
+			this.last = last;
+			this.mean = mean;
+			this.min = min;
+			this.max = max;
+			this.median = median;
+			this.p95 = p95;
+		}
+
+		String format(double value) {
+			return count==0 ? "--" : unit.format(value);
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BasicStroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+/**
+ * Exports the glyphs of a font as filled outlines.
+ * The center lines of each glyph are expanded with round caps and joins (like in {@link ThickLines}) and merged into closed contours.
+ * The result is written to an SVG font and to a plain outline file with flattened contours.
+ * <p>
+ * Glyphs are expanded in parallel in chunks. Finished chunks are written in order as soon as possible
+ * and only a few chunks are in progress at once, so the memory usage doesn't depend on the size of the font.
+ * <p>
+ * Usage: <code>AlphaCharEditor -exportOutlines [options] (&lt;font file&gt; | -default) &lt;output base name&gt;</code>
+ */
+final class OutlineExporter {
+
+	static final String COMMAND_LINE_SWITCH = "-exportOutlines";
+	static final String SVG_EXTENSION = "svg";
+	static final String OUTLINES_EXTENSION = "outlines";
+
+	/** y of the base line in model units (height of the guide line box) */
+	private static final double MODEL_HEIGHT = 100;
+	/** depth below the base line in model units, that is declared in the SVG font */
+	private static final double DESCENT = 50;
+	private static final int CHUNK_SIZE = 64;
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final Metrics.Metric EXPORT_TIME = Metrics.timer("OutlineExporter.export");
+	private static final Metrics.Metric EXPAND_TIME = Metrics.timer("OutlineExporter.expandChunk");
+
+	private final double lineWidth;
+	private final double flatness;
+	private final BasicStroke stroke;
+	/** model coordinates -> SVG font coordinates (y upwards, left side of the outline at x=0) */
+	private final AffineTransform toFontUnits;
+
+	OutlineExporter(double lineWidth, double flatness) {
+		this.lineWidth = lineWidth;
+		this.flatness = flatness;
+		this.stroke = new BasicStroke((float) lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+		this.toFontUnits = new AffineTransform(1, 0, 0, -1, lineWidth/2, MODEL_HEIGHT);
+	}
+
+	static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		double lineWidth = 20;
+		double flatness = 0.1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File fontFile = null;
+		boolean defaultFont = false;
+		String outputBase = null;
+
+		try {
+			for (int i=0; i<args.length; i++) {
+				switch (args[i]) {
+				case "-stroke"  : lineWidth = Double .parseDouble(args[++i]); break;
+				case "-flatness": flatness  = Double .parseDouble(args[++i]); break;
+				case "-threads" : threads   = Integer.parseInt  (args[++i]); break;
+				case "-default" : defaultFont = true; break;
+				default:
+					if (!defaultFont && fontFile==null) fontFile = new File(args[i]);
+					else if (outputBase==null) outputBase = args[i];
+					else throw new IllegalArgumentException("Unexpected argument: "+args[i]);
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.printf("Error: %s%n", e.getMessage());
+			outputBase = null;
+		}
+		if (outputBase==null || (fontFile==null && !defaultFont) || lineWidth<=0 || flatness<=0 || threads<=0) {
+			printUsage();
+			System.exit(1);
+			return;
+		}
+
+		try {
+			Form.Factory factory = LineEditor.createFormFactory();
+			HashMap<Character, Form[]> font = FontLoader.readFont(defaultFont ? null : fontFile, factory);
+			char[] chars = new char[font.size()];
+			int n = 0;
+			for (Character ch : font.keySet()) chars[n++] = ch;
+			Arrays.sort(chars);
+			String fontName = defaultFont ? "AlphaCharDefault" : getBaseName(fontFile);
+			long start = System.nanoTime();
+			new OutlineExporter(lineWidth, flatness).export(fontName, font::get, chars,
+					new File(outputBase+"."+SVG_EXTENSION), new File(outputBase+"."+OUTLINES_EXTENSION), threads, null);
+			System.out.printf("Outlines of %d glyphs exported with %d thread(s) in %1.1f ms%n", chars.length, threads, (System.nanoTime()-start)/1e6);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private static void printUsage() {
+		System.out.printf("Usage: AlphaCharEditor %s [options] (<font file> | -default) <output base name>%n", COMMAND_LINE_SWITCH);
+		System.out.printf("Options:%n");
+		System.out.printf("   -stroke <units>      line width in model units                        [20]%n");
+		System.out.printf("   -flatness <units>    max. deviation of the flattened contours         [0.1]%n");
+		System.out.printf("   -threads <n>         number of threads                                [all cores]%n");
+		System.out.printf("Writes <output base name>.%s (SVG font) and <output base name>.%s (flattened contours)%n", SVG_EXTENSION, OUTLINES_EXTENSION);
+	}
+
+	static String getBaseName(File file) {
+		String name = file.getName();
+		int pos = name.lastIndexOf('.');
+		return pos>0 ? name.substring(0, pos) : name;
+	}
+
+	interface GlyphSupplier {
+		/** has to be thread-safe */
+		Form[] getForms(char ch);
+	}
+
+	/**
+	 * @param progress gets the number of exported chars after each chunk (called by the calling thread) or <code>null</code>
+	 * @throws InterruptedIOException, if the calling thread was interrupted
+	 */
+	void export(String fontName, GlyphSupplier font, char[] chars, File svgFile, File outlinesFile, int threads, IntConsumer progress) throws IOException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "OutlineExporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			AtomicFile.write(svgFile, svgStream -> AtomicFile.write(outlinesFile, outlinesStream -> {
+				Writer svg      = new BufferedWriter(new OutputStreamWriter(svgStream, StandardCharsets.UTF_8));
+				Writer outlines = new BufferedWriter(new OutputStreamWriter(outlinesStream, StandardCharsets.UTF_8));
+				writeHeaders(svg, outlines, fontName);
+
+				ArrayDeque<Future<Chunk>> inProgress = new ArrayDeque<>();
+				int next = 0;
+				int done = 0;
+				while (next<chars.length || !inProgress.isEmpty()) {
+					while (next<chars.length && inProgress.size()<threads*CHUNKS_PER_THREAD) {
+						int from = next;
+						int to = Math.min(chars.length, next+CHUNK_SIZE);
+						inProgress.add(executor.submit(() -> expand(font, chars, from, to)));
+						next = to;
+					}
+					Chunk chunk = getNext(inProgress);
+					svg.write(chunk.svg);
+					outlines.write(chunk.outlines);
+					done += chunk.glyphCount;
+					if (progress!=null) progress.accept(done);
+				}
+
+				writeFooter(svg);
+				svg.flush();
+				outlines.flush();
+			}));
+		} finally {
+			executor.shutdownNow();
+		}
+		EXPORT_TIME.stop(start);
+	}
+
+	private static Chunk getNext(ArrayDeque<Future<Chunk>> inProgress) throws IOException {
+		try {
+			return inProgress.poll().get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Export was cancelled");
+		} catch (ExecutionException e) {
+			throw new IOException("Can't expand glyphs: "+e.getCause(), e.getCause());
+		}
+	}
+
+	private static class Chunk {
+		final String svg;
+		final String outlines;
+		final int glyphCount;
+
+		Chunk(String svg, String outlines, int glyphCount) {
+			this.svg = svg;
+			this.outlines = outlines;
+			this.glyphCount = glyphCount;
+		}
+	}
+
+	private Chunk expand(GlyphSupplier font, char[] chars, int from, int to) {
+		long start = System.nanoTime();
+		StringBuilder svg = new StringBuilder();
+		StringBuilder outlines = new StringBuilder();
+		for (int i=from; i<to; i++) {
+			char ch = chars[i];
+			Form[] forms = font.getForms(ch);
+			if (forms==null || forms.length==0) continue;
+			Path2D.Double path = Forms.createPath(forms);
+			Area outline = new Area(stroke.createStrokedShape(path));
+			double advance = Math.max(0, path.getBounds2D().getMaxX()) + lineWidth;
+
+			if (isValidXmlChar(ch)) {
+				svg.append(String.format("<glyph unicode=\"&#x%X;\" horiz-adv-x=\"", (int) ch));
+				appendNumber(svg, advance);
+				svg.append("\" d=\"");
+				appendSvgPath(svg, outline.getPathIterator(toFontUnits));
+				svg.append("\"/>\n");
+			}
+
+			outlines.append(String.format("[AlphaChar '%s']%n", ch));
+			outlines.append("Advance=");
+			appendNumber(outlines, advance);
+			outlines.append(System.lineSeparator());
+			appendContours(outlines, outline.getPathIterator(null, flatness));
+		}
+		EXPAND_TIME.stop(start);
+		return new Chunk(svg.toString(), outlines.toString(), to-from);
+	}
+
+	private void writeHeaders(Writer svg, Writer outlines, String fontName) throws IOException {
+		String name = escapeXml(fontName);
+		svg.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+		svg.write("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\">\n");
+		svg.write("<defs>\n");
+		svg.write(String.format("<font id=\"%s\" horiz-adv-x=\"%s\">%n", name, toString(MODEL_HEIGHT/2+lineWidth)));
+		svg.write(String.format("<font-face font-family=\"%s\" units-per-em=\"%s\" ascent=\"%s\" descent=\"%s\"/>%n", name, toString(MODEL_HEIGHT), toString(MODEL_HEIGHT+lineWidth/2), toString(-DESCENT)));
+		svg.write(String.format("<missing-glyph horiz-adv-x=\"%s\"/>%n", toString(MODEL_HEIGHT/2+lineWidth)));
+
+		outlines.write(String.format("# Outlines of font \"%s\" with line width %s (model units, y downwards, base line at y=%s)%n", fontName, toString(lineWidth), toString(MODEL_HEIGHT)));
+		outlines.write(String.format("# Each contour is a closed polygon: Contour=x1;y1;x2;y2;...%n"));
+	}
+
+	private static void writeFooter(Writer svg) throws IOException {
+		svg.write("</font>\n");
+		svg.write("</defs>\n");
+		svg.write("</svg>\n");
+	}
+
+	private static void appendSvgPath(StringBuilder sb, PathIterator it) {
+		double[] coords = new double[6];
+		for (; !it.isDone(); it.next()) {
+			int type = it.currentSegment(coords);
+			switch (type) {
+			case PathIterator.SEG_MOVETO : sb.append('M'); appendPoints(sb, coords, 1); break;
+			case PathIterator.SEG_LINETO : sb.append('L'); appendPoints(sb, coords, 1); break;
+			case PathIterator.SEG_QUADTO : sb.append('Q'); appendPoints(sb, coords, 2); break;
+			case PathIterator.SEG_CUBICTO: sb.append('C'); appendPoints(sb, coords, 3); break;
+			case PathIterator.SEG_CLOSE  : sb.append('Z'); break;
+			}
+		}
+	}
+
+	private static void appendPoints(StringBuilder sb, double[] coords, int count) {
+		for (int i=0; i<count*2; i++) {
+			if (i>0) sb.append(' ');
+			appendNumber(sb, coords[i]);
+		}
+	}
+
+	private static void appendContours(StringBuilder sb, PathIterator it) {
+		double[] coords = new double[6];
+		boolean open = false;
+		for (; !it.isDone(); it.next()) {
+			int type = it.currentSegment(coords);
+			if (type==PathIterator.SEG_CLOSE) {
+				if (open) sb.append(System.lineSeparator());
+				open = false;
+				continue;
+			}
+			if (type==PathIterator.SEG_MOVETO) {
+				if (open) sb.append(System.lineSeparator());
+				sb.append("Contour=");
+				open = true;
+			} else
+				sb.append(';');
+			appendNumber(sb, coords[0]);
+			sb.append(';');
+			appendNumber(sb, coords[1]);
+		}
+		if (open) sb.append(System.lineSeparator());
+	}
+
+	/** appends a number rounded to 1/100 units without unnecessary digits */
+	private static void appendNumber(StringBuilder sb, double value) {
+		long hundredths = Math.round(value*100);
+		if (hundredths<0) { sb.append('-'); hundredths = -hundredths; }
+		sb.append(hundredths/100);
+		int fraction = (int) (hundredths%100);
+		if (fraction!=0) {
+			sb.append('.');
+			sb.append(fraction/10);
+			if (fraction%10!=0) sb.append(fraction%10);
+		}
+	}
+
+	private static String toString(double value) {
+		StringBuilder sb = new StringBuilder();
+		appendNumber(sb, value);
+		return sb.toString();
+	}
+
+	/** chars, that can't be written to an XML 1.0 file, not even as reference */
+	private static boolean isValidXmlChar(char ch) {
+		if (ch<0x20) return ch=='\t' || ch=='\n' || ch=='\r';
+		return !Character.isSurrogate(ch) && ch!=0xFFFE && ch!=0xFFFF;
+	}
+
+	private static String escapeXml(String str) {
+		return str.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;").replace("'", "&apos;");
+	}
+}
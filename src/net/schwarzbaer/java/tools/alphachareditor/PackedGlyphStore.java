@@ -0,0 +1,231 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.util.Arrays;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Compact in-memory store of the glyphs of a font.
+ * <p>
+ * The values of all forms of all glyphs are packed into one <code>float[]</code> and one <code>double[]</code>
+ * (like in a {@link BinaryFontFormat binary font file} only values, that can't be stored as float without loss, are stored as double).
+ * Each form is a type tag and an offset into these values, each glyph is a range of forms,
+ * and a table indexed by char leads to the glyphs.
+ * So a font needs a few primitive arrays instead of a map entry, an array and an object per glyph and form.
+ * <code>Form</code> objects are created only, when a glyph is decoded.
+ * A store is immutable and can be used by several threads. It's created by a {@link Builder}.
+ */
+final class PackedGlyphStore implements GlyphSource {
+
+	private static final Forms.Type[] TYPES = Forms.Type.values();
+	private static final int FLAG_FLOAT = 0x80;
+	private static final Metrics.Metric BUILD_TIME = Metrics.timer("PackedGlyphStore.build");
+	private static final Metrics.Metric STORE_SIZE = Metrics.value("PackedGlyphStore.size_kB");
+
+	/** all chars in ascending order */
+	private final char[] chars;
+	private final int firstChar;
+	/** char - {@link #firstChar} -> glyph index or -1 */
+	private final int[] charIndex;
+	/** glyph index -> index of its first form (one more entry as end of the last glyph) */
+	private final int[] glyphForms;
+	/** form index -> {@link Forms.Type} ordinal | {@link #FLAG_FLOAT} */
+	private final byte[] formTypes;
+	/** form index -> index of its first value in {@link #floatValues} or {@link #doubleValues} */
+	private final int[] formOffsets;
+	private final int[] formLengths;
+	private final float[] floatValues;
+	private final double[] doubleValues;
+
+	private PackedGlyphStore(char[] chars, int[] glyphForms, byte[] formTypes, int[] formOffsets, int[] formLengths, float[] floatValues, double[] doubleValues) {
+		this.chars = chars;
+		this.glyphForms = glyphForms;
+		this.formTypes = formTypes;
+		this.formOffsets = formOffsets;
+		this.formLengths = formLengths;
+		this.floatValues = floatValues;
+		this.doubleValues = doubleValues;
+		firstChar = chars.length==0 ? 0 : chars[0];
+		charIndex = new int[chars.length==0 ? 0 : chars[chars.length-1]-firstChar+1];
+		Arrays.fill(charIndex, -1);
+		for (int i=0; i<chars.length; i++)
+			charIndex[chars[i]-firstChar] = i;
+	}
+
+	private int getGlyphIndex(char ch) {
+		int i = ch-firstChar;
+		return i<0 || i>=charIndex.length ? -1 : charIndex[i];
+	}
+
+	@Override public int size() {
+		return chars.length;
+	}
+
+	@Override public boolean contains(char ch) {
+		return getGlyphIndex(ch)>=0;
+	}
+
+	@Override public char[] getChars() {
+		return chars;
+	}
+
+	int getFormCount() {
+		return formTypes.length;
+	}
+
+	/** @return estimated heap usage in bytes */
+	long getSize() {
+		return GlyphStore.OBJECT_OVERHEAD + 8*GlyphStore.REFERENCE_SIZE + 4
+				+ 8*GlyphStore.ARRAY_OVERHEAD + chars.length*2L + charIndex.length*4L + glyphForms.length*4L
+				+ formTypes.length + formOffsets.length*4L + formLengths.length*4L + floatValues.length*4L + doubleValues.length*8L;
+	}
+
+	@Override public Form[] decode(char ch, Form.Factory factory) {
+		int glyph = getGlyphIndex(ch);
+		if (glyph<0) return null;
+		int first = glyphForms[glyph];
+		Form[] forms = new Form[glyphForms[glyph+1]-first];
+		for (int i=0; i<forms.length; i++) {
+			int form = first+i;
+			int tag = formTypes[form] & 0xFF;
+			int offset = formOffsets[form];
+			double[] values;
+			if ((tag & FLAG_FLOAT)!=0) {
+				values = new double[formLengths[form]];
+				for (int v=0; v<values.length; v++)
+					values[v] = floatValues[offset+v];
+			} else
+				values = Arrays.copyOfRange(doubleValues, offset, offset+formLengths[form]);
+			forms[i] = Forms.create(TYPES[tag & ~FLAG_FLOAT], values, factory);
+		}
+		return forms;
+	}
+
+	/**
+	 * Collects glyphs in any order. If a char is added several times, the last glyph is kept.
+	 */
+	static final class Builder {
+		private char[] glyphChars;
+		/** glyph -> first form (in order of adding) */
+		private int[] glyphForms;
+		private int glyphCount;
+		private byte[] formTypes;
+		private int[] formValues;
+		private int formCount;
+		private double[] values;
+		private int valueCount;
+
+		Builder() {
+			glyphChars = new char[256];
+			glyphForms = new int[257];
+			glyphCount = 0;
+			formTypes = new byte[1024];
+			formValues = new int[1025];
+			formCount = 0;
+			values = new double[8192];
+			valueCount = 0;
+		}
+
+		Builder add(char ch, Form[] forms) {
+			if (glyphCount>=glyphChars.length) {
+				glyphChars = Arrays.copyOf(glyphChars, glyphChars.length*2);
+				glyphForms = Arrays.copyOf(glyphForms, glyphChars.length+1);
+			}
+			glyphChars[glyphCount] = ch;
+			glyphForms[glyphCount] = formCount;
+			if (forms!=null)
+				for (Form form : forms) {
+					Forms.Type type = Forms.Type.of(form);
+					double[] formValues = Forms.getValues(form);
+					if (type==null || formValues==null) continue;
+					addForm(type, formValues);
+				}
+			glyphCount++;
+			glyphForms[glyphCount] = formCount;
+			return this;
+		}
+
+		private void addForm(Forms.Type type, double[] formValues) {
+			if (formCount>=formTypes.length) {
+				formTypes = Arrays.copyOf(formTypes, formTypes.length*2);
+				this.formValues = Arrays.copyOf(this.formValues, formTypes.length+1);
+			}
+			if (valueCount+formValues.length>values.length)
+				values = Arrays.copyOf(values, Math.max(values.length*2, valueCount+formValues.length));
+			formTypes[formCount] = (byte) type.ordinal();
+			this.formValues[formCount] = valueCount;
+			System.arraycopy(formValues, 0, values, valueCount, formValues.length);
+			valueCount += formValues.length;
+			formCount++;
+			this.formValues[formCount] = valueCount;
+		}
+
+		/**
+		 * Packs all glyphs in ascending order of their chars without unused space.
+		 */
+		PackedGlyphStore build() {
+			long start = System.nanoTime();
+			// last added glyph of each char
+			int[] latest = new int[0x10000];
+			Arrays.fill(latest, -1);
+			for (int i=0; i<glyphCount; i++)
+				latest[glyphChars[i]] = i;
+
+			int n = 0, forms = 0, floatCount = 0, doubleCount = 0;
+			for (int ch=0; ch<latest.length; ch++) {
+				int glyph = latest[ch];
+				if (glyph<0) continue;
+				n++;
+				for (int form=glyphForms[glyph]; form<glyphForms[glyph+1]; form++) {
+					int length = formValues[form+1]-formValues[form];
+					if (isFloatLossless(form)) floatCount += length;
+					else doubleCount += length;
+					forms++;
+				}
+			}
+
+			char[] packedChars = new char[n];
+			int[] packedGlyphForms = new int[n+1];
+			byte[] packedFormTypes = new byte[forms];
+			int[] packedFormOffsets = new int[forms];
+			int[] packedFormLengths = new int[forms];
+			float[] packedFloats = new float[floatCount];
+			double[] packedDoubles = new double[doubleCount];
+			int g = 0, f = 0, fv = 0, dv = 0;
+			for (int ch=0; ch<latest.length; ch++) {
+				int glyph = latest[ch];
+				if (glyph<0) continue;
+				packedChars[g] = (char) ch;
+				packedGlyphForms[g++] = f;
+				for (int form=glyphForms[glyph]; form<glyphForms[glyph+1]; form++) {
+					int length = formValues[form+1]-formValues[form];
+					packedFormLengths[f] = length;
+					if (isFloatLossless(form)) {
+						packedFormTypes[f] = (byte) (formTypes[form] | FLAG_FLOAT);
+						packedFormOffsets[f++] = fv;
+						for (int v=formValues[form]; v<formValues[form+1]; v++)
+							packedFloats[fv++] = (float) values[v];
+					} else {
+						packedFormTypes[f] = formTypes[form];
+						packedFormOffsets[f++] = dv;
+						System.arraycopy(values, formValues[form], packedDoubles, dv, length);
+						dv += length;
+					}
+				}
+			}
+			packedGlyphForms[g] = f;
+
+			PackedGlyphStore store = new PackedGlyphStore(packedChars, packedGlyphForms, packedFormTypes, packedFormOffsets, packedFormLengths, packedFloats, packedDoubles);
+			BUILD_TIME.stop(start);
+			STORE_SIZE.record(store.getSize()/1024);
+			return store;
+		}
+
+		private boolean isFloatLossless(int form) {
+			for (int v=formValues[form]; v<formValues[form+1]; v++)
+				if (Double.doubleToLongBits((float) values[v]) != Double.doubleToLongBits(values[v]))
+					return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Single file, that contains a whole project: the project settings with the guide lines, all fonts of the project
+ * and optionally cached metrics and thumbnails of the active font.
+ * <pre>
+ * Header       : int magic "ACPB", short version, short sectionCount
+ * Section table: sectionCount entries { short type, short reserved, int offset, int length }
+ * Sections     : SETTINGS   project settings as UTF-8 text (like a project file, each font is a line "BundledFont=&lt;name&gt;")
+ *                FONT       one section per font in order of the settings, a complete {@link BinaryFontFormat binary font} with its glyph table
+ *                METRICS    (optional) int font, int count, per glyph { char ch, {@link GlyphMetrics} }
+ *                THUMBNAILS (optional) int font, short width, short height, int count, per thumbnail { char ch, alpha values row by row }
+ * </pre>
+ * Sections are stored in this order, so a bundle can be read sequentially.
+ * The editor maps a bundle into memory instead and decodes the glyphs of its fonts on demand.
+ */
+final class ProjectBundle {
+
+	static final String EXTENSION = "AlphaCharProjectBundle";
+
+	private static final int MAGIC = 0x41435042; // "ACPB"
+	private static final short VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	private static final int SECTION_ENTRY_SIZE = 12;
+	private static final short SECTION_SETTINGS   = 1;
+	private static final short SECTION_FONT       = 2;
+	private static final short SECTION_METRICS    = 3;
+	private static final short SECTION_THUMBNAILS = 4;
+	private static final Metrics.Metric OPEN_TIME  = Metrics.timer("ProjectBundle.open");
+	private static final Metrics.Metric WRITE_TIME = Metrics.timer("ProjectBundle.write");
+	private static final Metrics.Metric WRITE_SIZE = Metrics.value("ProjectBundle.write.size_kB");
+
+	private ProjectBundle() {}
+
+	/**
+	 * Metrics and thumbnails of a font of a project.
+	 * @param font       index of the font in the project
+	 * @param metrics    metrics of the glyphs or <code>null</code>
+	 * @param thumbnails alpha values of thumbnails (see {@link GlyphThumbnails#exportAlphas()}) or <code>null</code>
+	 */
+	record Caches(int font, Map<Character, GlyphMetrics> metrics, int thumbnailWidth, int thumbnailHeight, Map<Character, byte[]> thumbnails) {}
+
+	static boolean isBundleFile(File file) {
+		return file!=null && file.getName().toLowerCase().endsWith("."+EXTENSION.toLowerCase());
+	}
+
+	/**
+	 * @param settings project settings
+	 * @param fonts    all glyphs of each font of the project
+	 * @param caches   cached data of a font or <code>null</code>
+	 */
+	static void write(File file, String settings, List<? extends Map<Character, Form[]>> fonts, Caches caches) throws IOException {
+		long start = System.nanoTime();
+		Vector<Section> sections = new Vector<>();
+		sections.add(new Section(SECTION_SETTINGS, settings.getBytes(StandardCharsets.UTF_8)));
+		for (Map<Character, Form[]> font : fonts)
+			sections.add(new Section(SECTION_FONT, BinaryFontFormat.encode(font)));
+		if (caches!=null && caches.metrics()!=null && !caches.metrics().isEmpty())
+			sections.add(new Section(SECTION_METRICS, encodeMetrics(caches)));
+		if (caches!=null && caches.thumbnails()!=null && !caches.thumbnails().isEmpty())
+			sections.add(new Section(SECTION_THUMBNAILS, encodeThumbnails(caches)));
+
+		long size = HEADER_SIZE + SECTION_ENTRY_SIZE*sections.size();
+		for (Section section : sections) size += section.data.length;
+		if (size>Integer.MAX_VALUE)
+			throw new IOException(String.format("Project is too large for a project bundle (%d bytes)", size));
+
+		AtomicFile.write(file, stream -> {
+			DataOutputStream out = new DataOutputStream(stream);
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeShort(sections.size());
+			int offset = HEADER_SIZE + SECTION_ENTRY_SIZE*sections.size();
+			for (Section section : sections) {
+				out.writeShort(section.type);
+				out.writeShort(0);
+				out.writeInt(offset);
+				out.writeInt(section.data.length);
+				offset += section.data.length;
+			}
+			for (Section section : sections)
+				out.write(section.data);
+			out.flush();
+		});
+		WRITE_TIME.stop(start);
+		WRITE_SIZE.record(size/1024);
+	}
+
+	private static byte[] encodeMetrics(Caches caches) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(caches.font());
+		out.writeInt(caches.metrics().size());
+		for (Map.Entry<Character, GlyphMetrics> entry : caches.metrics().entrySet()) {
+			out.writeChar(entry.getKey());
+			entry.getValue().writeTo(out);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static byte[] encodeThumbnails(Caches caches) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(caches.font());
+		out.writeShort(caches.thumbnailWidth());
+		out.writeShort(caches.thumbnailHeight());
+		int size = caches.thumbnailWidth()*caches.thumbnailHeight();
+		int count = 0;
+		for (byte[] alpha : caches.thumbnails().values())
+			if (alpha.length==size) count++;
+		out.writeInt(count);
+		for (Map.Entry<Character, byte[]> entry : caches.thumbnails().entrySet()) {
+			if (entry.getValue().length!=size) continue;
+			out.writeChar(entry.getKey());
+			out.write(entry.getValue());
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	static Bundle open(File file) throws IOException {
+		long start = System.nanoTime();
+		Bundle bundle = new Bundle(file);
+		OPEN_TIME.stop(start);
+		return bundle;
+	}
+
+	private static class Section {
+		final short type;
+		final byte[] data;
+
+		Section(short type, byte[] data) {
+			this.type = type;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * A project bundle mapped into memory. Fonts are opened on the mapped sections, so their glyphs are decoded on demand.
+	 */
+	static class Bundle {
+
+		private final File file;
+		private final ByteBuffer buffer;
+		private final short[] sectionTypes;
+		private final int[] sectionOffsets;
+		private final int[] sectionLengths;
+
+		private Bundle(File file) throws IOException {
+			this.file = file;
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if (buffer.capacity()<HEADER_SIZE || buffer.getInt(0)!=MAGIC)
+				throw new IOException(String.format("File \"%s\" is not a project bundle.", file));
+			if (buffer.getShort(4)!=VERSION)
+				throw new IOException(String.format("Project bundle \"%s\" has an unsupported version: %d", file, buffer.getShort(4)));
+
+			int sectionCount = buffer.getShort(6) & 0xFFFF;
+			if (HEADER_SIZE + (long)sectionCount*SECTION_ENTRY_SIZE > buffer.capacity())
+				throw new IOException(String.format("Project bundle \"%s\" is corrupted.", file));
+			sectionTypes   = new short[sectionCount];
+			sectionOffsets = new int  [sectionCount];
+			sectionLengths = new int  [sectionCount];
+			for (int i=0; i<sectionCount; i++) {
+				int pos = HEADER_SIZE + i*SECTION_ENTRY_SIZE;
+				sectionTypes  [i] = buffer.getShort(pos);
+				sectionOffsets[i] = buffer.getInt(pos+4);
+				sectionLengths[i] = buffer.getInt(pos+8);
+				if (sectionOffsets[i]<0 || sectionLengths[i]<0 || (long)sectionOffsets[i]+sectionLengths[i] > buffer.capacity())
+					throw new IOException(String.format("Project bundle \"%s\" is corrupted.", file));
+			}
+		}
+
+		File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return the content of the <code>index</code>th section of the given type or <code>null</code>, if there is no such section
+		 */
+		private ByteBuffer getSection(short type, int index) {
+			for (int i=0; i<sectionTypes.length; i++)
+				if (sectionTypes[i]==type && index--==0)
+					return buffer.slice(sectionOffsets[i], sectionLengths[i]);
+			return null;
+		}
+
+		private int getSectionCount(short type) {
+			int count = 0;
+			for (short sectionType : sectionTypes)
+				if (sectionType==type) count++;
+			return count;
+		}
+
+		String getSettings() throws IOException {
+			ByteBuffer section = getSection(SECTION_SETTINGS, 0);
+			if (section==null)
+				throw new IOException(String.format("Project bundle \"%s\" contains no project settings.", file));
+			return StandardCharsets.UTF_8.decode(section).toString();
+		}
+
+		int getFontCount() {
+			return getSectionCount(SECTION_FONT);
+		}
+
+		BinaryFontFormat.MappedFont getFont(int index) throws IOException {
+			ByteBuffer section = getSection(SECTION_FONT, index);
+			if (section==null)
+				throw new IOException(String.format("Project bundle \"%s\" contains no font %d.", file, index));
+			return BinaryFontFormat.open(file, section);
+		}
+
+		/**
+		 * @return cached metrics and thumbnails or <code>null</code>, if the bundle contains none
+		 */
+		Caches readCaches() throws IOException {
+			ByteBuffer metricsSection    = getSection(SECTION_METRICS, 0);
+			ByteBuffer thumbnailsSection = getSection(SECTION_THUMBNAILS, 0);
+			if (metricsSection==null && thumbnailsSection==null) return null;
+			try {
+				int font = -1;
+				HashMap<Character, GlyphMetrics> metrics = null;
+				if (metricsSection!=null) {
+					font = metricsSection.getInt();
+					int count = metricsSection.getInt();
+					metrics = new HashMap<>();
+					for (int i=0; i<count; i++) {
+						char ch = metricsSection.getChar();
+						metrics.put(ch, GlyphMetrics.read(metricsSection));
+					}
+				}
+				int width = 0, height = 0;
+				HashMap<Character, byte[]> thumbnails = null;
+				if (thumbnailsSection!=null) {
+					int thumbnailsFont = thumbnailsSection.getInt();
+					if (font>=0 && thumbnailsFont!=font)
+						throw new IOException(String.format("Project bundle \"%s\" contains cached data of different fonts.", file));
+					font = thumbnailsFont;
+					width  = thumbnailsSection.getShort() & 0xFFFF;
+					height = thumbnailsSection.getShort() & 0xFFFF;
+					int count = thumbnailsSection.getInt();
+					thumbnails = new HashMap<>();
+					for (int i=0; i<count; i++) {
+						char ch = thumbnailsSection.getChar();
+						byte[] alpha = new byte[width*height];
+						thumbnailsSection.get(alpha);
+						thumbnails.put(ch, alpha);
+					}
+				}
+				return new Caches(font, metrics, width, height, thumbnails);
+			} catch (RuntimeException e) {
+				throw new IOException(String.format("Cached data of project bundle \"%s\" is corrupted.", file), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,440 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.swing.SwingUtilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+/**
+ * Headless HTTP server on the loopback interface, that renders text with a font into PNG images.
+ * <p>
+ * <code>GET /render?text=&lt;text&gt;&amp;size=&lt;px&gt;&amp;stroke=&lt;units&gt;&amp;spacing=&lt;units&gt;</code>
+ * returns a gray scale PNG with black text on white (lines separated by <code>\n</code>).
+ * <code>GET /metrics</code> returns all {@link Metrics} as text.
+ * <p>
+ * Rasterized glyphs are kept in a LRU cache, that is shared by all requests and keyed by char, size and line width.
+ * Text images are composed from these glyph bitmaps without any drawing, so small requests are cheap.
+ * Requests are handled on virtual threads, if the VM supports them, otherwise on a thread pool.
+ * A text font file is watched by a {@link FontWatcher}; changed glyphs are replaced and dropped from the cache.
+ * <p>
+ * Usage: <code>AlphaCharEditor -serve [options] (&lt;font file&gt; | -default)</code>
+ */
+final class RenderServer {
+
+	static final String COMMAND_LINE_SWITCH = "-serve";
+
+	/** height of the guide line box in model units, that is mapped to <code>size</code> pixels */
+	private static final double MODEL_HEIGHT = 100;
+	/** height of a text line in model units (guide line box and space for descenders) */
+	private static final double LINE_HEIGHT = 150;
+	private static final int MAX_SIZE = 512;
+	private static final int MAX_TEXT_LENGTH = 4096;
+	private static final long MAX_IMAGE_PIXELS = 16*1024*1024;
+	private static final Metrics.Metric REQUEST_TIME  = Metrics.timer("RenderServer.render");
+	private static final Metrics.Metric RASTER_TIME   = Metrics.timer("RenderServer.rasterizeGlyph");
+	private static final Metrics.Metric CACHE_SIZE_KB = Metrics.value("RenderServer.glyphCache.size_kB");
+	private static final Metrics.Metric RELOADED_GLYPHS = Metrics.value("RenderServer.reloadedGlyphs");
+
+	private final File fontFile;
+	private final ConcurrentHashMap<Character, Form[]> font;
+	private final GlyphCache cache;
+
+	private RenderServer(File fontFile, Map<Character, Form[]> font, long cacheBudget) {
+		this.fontFile = fontFile;
+		this.font = new ConcurrentHashMap<>(font);
+		this.cache = new GlyphCache(cacheBudget);
+	}
+
+	static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		// otherwise small responses on kept-alive connections are delayed by Nagle's algorithm
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		int port = 8731;
+		int cacheBudget_MB = 64;
+		File fontFile = null;
+		boolean defaultFont = false;
+
+		try {
+			for (int i=0; i<args.length; i++) {
+				switch (args[i]) {
+				case "-port"   : port           = Integer.parseInt(args[++i]); break;
+				case "-cacheMB": cacheBudget_MB = Integer.parseInt(args[++i]); break;
+				case "-default": defaultFont = true; break;
+				default:
+					if (!defaultFont && fontFile==null) fontFile = new File(args[i]);
+					else throw new IllegalArgumentException("Unexpected argument: "+args[i]);
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.printf("Error: %s%n", e.getMessage());
+			port = -1;
+		}
+		if ((fontFile==null && !defaultFont) || port<0 || port>0xFFFF || cacheBudget_MB<=0) {
+			printUsage();
+			System.exit(1);
+			return;
+		}
+
+		try {
+			HashMap<Character, Form[]> font = FontLoader.readFont(defaultFont ? null : fontFile, LineEditor.createFormFactory());
+			new RenderServer(defaultFont ? null : fontFile, font, cacheBudget_MB*1024L*1024L).start(port);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private static void printUsage() {
+		System.out.printf("Usage: AlphaCharEditor %s [options] (<font file> | -default)%n", COMMAND_LINE_SWITCH);
+		System.out.printf("Options:%n");
+		System.out.printf("   -port <port>         TCP port on the loopback interface               [8731]%n");
+		System.out.printf("   -cacheMB <MB>        memory budget of the glyph cache                 [64]%n");
+		System.out.printf("Requests:%n");
+		System.out.printf("   GET /render?text=<text>&size=<px>&stroke=<units>&spacing=<units>       [size=32, stroke=20, spacing=15]%n");
+		System.out.printf("   GET /metrics%n");
+	}
+
+	private void start(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+		server.setExecutor(createExecutor());
+		server.createContext("/render", this::handleRender);
+		server.createContext("/metrics", this::handleMetrics);
+		server.start();
+		System.out.printf("Render server listening on http://%s:%d/render (%d glyphs)%n", server.getAddress().getHostString(), server.getAddress().getPort(), font.size());
+
+		if (fontFile!=null && !BinaryFontFormat.isBinaryFontFile(fontFile))
+			SwingUtilities.invokeLater(() -> {
+				FontWatcher watcher = new FontWatcher(new FontWatcher.Listener() {
+					@Override public void glyphsChanged(File file, Map<Character, Form[]> glyphs) { fontChanged(glyphs); }
+					@Override public void projectFileChanged(File projectFile) {}
+					@Override public void watchFailed(String message) { System.err.printf("Error: %s%n", message); }
+				});
+				watcher.setEnabled(true);
+				watcher.watch(null, List.of(fontFile));
+			});
+	}
+
+	/**
+	 * @return an executor, that starts a virtual thread for each task (Java 21+), or a thread pool
+	 */
+	private static ExecutorService createExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			int threads = 4*Runtime.getRuntime().availableProcessors();
+			return Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r, "RenderServer");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	private void fontChanged(Map<Character, Form[]> glyphs) {
+		glyphs.forEach((ch, forms) -> {
+			if (forms.length==0) font.remove(ch);
+			else font.put(ch, forms);
+		});
+		cache.removeChars(glyphs.keySet());
+		RELOADED_GLYPHS.record(glyphs.size());
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		StringWriter text = new StringWriter();
+		try (PrintWriter out = new PrintWriter(text)) {
+			Metrics.writeTo(out);
+		}
+		send(exchange, 200, "text/plain; charset=UTF-8", text.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void handleRender(HttpExchange exchange) throws IOException {
+		long start = System.nanoTime();
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				send(exchange, 405, "text/plain", "Only GET is supported".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			HashMap<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+			String text = params.getOrDefault("text", "");
+			int size = Integer.parseInt(params.getOrDefault("size", "32"));
+			double stroke = Double.parseDouble(params.getOrDefault("stroke", "20"));
+			double spacing = Double.parseDouble(params.getOrDefault("spacing", "15"));
+			if (text.length()>MAX_TEXT_LENGTH || size<=0 || size>MAX_SIZE || !(stroke>0 && stroke<=MODEL_HEIGHT) || !(Math.abs(spacing)<=MODEL_HEIGHT))
+				throw new IllegalArgumentException("Parameter out of range");
+
+			byte[] png = render(text, size, stroke, spacing);
+			send(exchange, 200, "image/png", png);
+			REQUEST_TIME.stop(start);
+		} catch (IllegalArgumentException e) {
+			send(exchange, 400, "text/plain", ("Bad request: "+e.getMessage()).getBytes(StandardCharsets.UTF_8));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static HashMap<String, String> parseQuery(String query) {
+		HashMap<String, String> params = new HashMap<>();
+		if (query==null) return params;
+		for (String param : query.split("&")) {
+			int pos = param.indexOf('=');
+			if (pos<0) continue;
+			params.put(URLDecoder.decode(param.substring(0, pos), StandardCharsets.UTF_8), URLDecoder.decode(param.substring(pos+1), StandardCharsets.UTF_8));
+		}
+		return params;
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private byte[] render(String text, int size, double stroke, double spacing) {
+		double scale = size/MODEL_HEIGHT;
+		String[] lines = text.split("\n", -1);
+		CachedGlyph[][] glyphs = new CachedGlyph[lines.length][];
+		int width = 1;
+		for (int l=0; l<lines.length; l++) {
+			glyphs[l] = new CachedGlyph[lines[l].length()];
+			double x = 0;
+			for (int i=0; i<glyphs[l].length; i++) {
+				glyphs[l][i] = getGlyph(lines[l].charAt(i), size, stroke);
+				x += glyphs[l][i].advance + spacing;
+			}
+			width = Math.max(width, (int) Math.ceil((x-spacing)*scale));
+		}
+		int lineHeight = (int) Math.ceil(LINE_HEIGHT*scale);
+		if ((long) width*lineHeight*lines.length > MAX_IMAGE_PIXELS)
+			throw new IllegalArgumentException("Image is too large");
+
+		BufferedImage image = new BufferedImage(width, lineHeight*lines.length, BufferedImage.TYPE_BYTE_GRAY);
+		byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		Arrays.fill(pixels, (byte) 0xFF);
+		for (int l=0; l<lines.length; l++) {
+			double x = 0;
+			for (CachedGlyph glyph : glyphs[l]) {
+				draw(glyph, pixels, width, image.getHeight(), (int) Math.round(x*scale), l*lineHeight);
+				x += glyph.advance + spacing;
+			}
+		}
+
+		return encodePNG(pixels, width, image.getHeight());
+	}
+
+	/**
+	 * Writes an 8 bit gray scale PNG. It's several times faster than <code>ImageIO</code> for small images.
+	 */
+	static byte[] encodePNG(byte[] pixels, int width, int height) {
+		byte[] raw = new byte[(width+1)*height];
+		for (int y=0; y<height; y++) // filter type 0 (none) for each row
+			System.arraycopy(pixels, y*width, raw, y*(width+1)+1, width);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length/4+64);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished())
+			compressed.write(buffer, 0, deflater.deflate(buffer));
+		deflater.end();
+
+		ByteBuffer header = ByteBuffer.allocate(13);
+		header.putInt(width).putInt(height);
+		header.put((byte) 8).put((byte) 0).put((byte) 0).put((byte) 0).put((byte) 0); // bit depth, gray, deflate, no filter, no interlace
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.size()+64);
+		out.writeBytes(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' });
+		writeChunk(out, "IHDR", header.array());
+		writeChunk(out, "IDAT", compressed.toByteArray());
+		writeChunk(out, "IEND", new byte[0]);
+		return out.toByteArray();
+	}
+
+	private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data);
+		ByteBuffer buffer = ByteBuffer.allocate(12+data.length);
+		buffer.putInt(data.length).put(typeBytes).put(data).putInt((int) crc.getValue());
+		out.writeBytes(buffer.array());
+	}
+
+	private static void draw(CachedGlyph glyph, byte[] pixels, int width, int height, int penX, int penY) {
+		for (int y=0; y<glyph.height; y++) {
+			int py = penY+glyph.offsetY+y;
+			if (py<0 || py>=height) continue;
+			for (int x=0; x<glyph.width; x++) {
+				int px = penX+glyph.offsetX+x;
+				if (px<0 || px>=width) continue;
+				int coverage = glyph.bitmap[y*glyph.width+x] & 0xFF;
+				int i = py*width+px;
+				int value = Math.min(pixels[i] & 0xFF, 255-coverage);
+				pixels[i] = (byte) value;
+			}
+		}
+	}
+
+	private CachedGlyph getGlyph(char ch, int size, double stroke) {
+		GlyphKey key = new GlyphKey(ch, size, stroke);
+		CachedGlyph glyph = cache.get(key);
+		if (glyph==null) {
+			// rasterized outside of the cache lock; concurrent requests may rasterize the same glyph twice
+			int version = cache.getVersion();
+			glyph = rasterize(font.get(ch), size, stroke);
+			cache.put(key, glyph, version);
+		}
+		return glyph;
+	}
+
+	/**
+	 * Rasterizes a glyph like {@link TextPreview}: the pen position is at <code>x = -stroke/2</code>.
+	 */
+	private static CachedGlyph rasterize(Form[] forms, int size, double stroke) {
+		long start = System.nanoTime();
+		double scale = size/MODEL_HEIGHT;
+		Path2D.Double path = Forms.createPath(forms);
+		Rectangle2D bounds = path.getBounds2D();
+		double advance = (path.getCurrentPoint()==null ? 0 : Math.max(0, bounds.getMaxX())) + stroke;
+		if (path.getCurrentPoint()==null)
+			return new CachedGlyph(advance, 0, 0, 0, 0, new byte[0]);
+
+		double margin = stroke*scale/2 + 1;
+		double originX = stroke*scale/2;
+		int minX = (int) Math.floor(originX + bounds.getMinX()*scale - margin);
+		int minY = (int) Math.floor(bounds.getMinY()*scale - margin);
+		int width  = (int) Math.ceil(originX + bounds.getMaxX()*scale + margin) - minX;
+		int height = (int) Math.ceil(bounds.getMaxY()*scale + margin) - minY;
+
+		AffineTransform transform = new AffineTransform();
+		transform.translate(originX-minX, -minY);
+		transform.scale(scale, scale);
+
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g2 = image.createGraphics();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		g2.setColor(Color.WHITE);
+		g2.setStroke(new BasicStroke((float) (stroke*scale), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+		g2.draw(path.createTransformedShape(transform));
+		g2.dispose();
+		byte[] bitmap = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		RASTER_TIME.stop(start);
+		return new CachedGlyph(advance, minX, minY, width, height, bitmap);
+	}
+
+	private record GlyphKey(char ch, int size, double stroke) {}
+
+	private static final class CachedGlyph {
+		/** advance in model units */
+		final double advance;
+		/** position of the bitmap relative to the pen position (top of the guide line box) in pixels */
+		final int offsetX, offsetY;
+		final int width, height;
+		final byte[] bitmap;
+
+		CachedGlyph(double advance, int offsetX, int offsetY, int width, int height, byte[] bitmap) {
+			this.advance = advance;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.width = width;
+			this.height = height;
+			this.bitmap = bitmap;
+		}
+
+		long getSize() {
+			return GlyphStore.OBJECT_OVERHEAD + 8 + 4*4 + GlyphStore.REFERENCE_SIZE + GlyphStore.ARRAY_OVERHEAD + bitmap.length;
+		}
+	}
+
+	/**
+	 * LRU cache of rasterized glyphs with a memory budget.
+	 * Its version is incremented, when glyphs are removed after a change of the font,
+	 * so a glyph rasterized from old forms isn't cached.
+	 */
+	private static final class GlyphCache {
+		private final LinkedHashMap<GlyphKey, CachedGlyph> glyphs;
+		private final long budget;
+		private long usedBytes;
+		private int version;
+
+		GlyphCache(long budget) {
+			this.budget = budget;
+			glyphs = new LinkedHashMap<>(1024, 0.75f, true);
+			usedBytes = 0;
+			version = 0;
+		}
+
+		synchronized int getVersion() {
+			return version;
+		}
+
+		synchronized CachedGlyph get(GlyphKey key) {
+			return glyphs.get(key);
+		}
+
+		/**
+		 * @param version version of the cache, before the forms of the glyph were read
+		 */
+		synchronized void put(GlyphKey key, CachedGlyph glyph, int version) {
+			if (version!=this.version) return;
+			CachedGlyph old = glyphs.put(key, glyph);
+			if (old!=null) usedBytes -= old.getSize();
+			usedBytes += glyph.getSize();
+			for (Iterator<CachedGlyph> it = glyphs.values().iterator(); usedBytes>budget && it.hasNext(); ) {
+				usedBytes -= it.next().getSize();
+				it.remove();
+			}
+			CACHE_SIZE_KB.record(usedBytes/1024);
+		}
+
+		synchronized void removeChars(Set<Character> chars) {
+			version++;
+			for (Iterator<Map.Entry<GlyphKey, CachedGlyph>> it = glyphs.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<GlyphKey, CachedGlyph> entry = it.next();
+				if (chars.contains(entry.getKey().ch())) {
+					usedBytes -= entry.getValue().getSize();
+					it.remove();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,309 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Uniform grid over the flattened segments and the end points of the forms of a glyph.
+ * Finding the form or end point next to a position only tests the segments in the grid cells around it,
+ * so the costs of a query don't grow with the number of forms.
+ * Flattened forms are cached and reused by {@link #setForms(Form[])} as long as their values don't change.
+ * Forms, that were changed in place, are flattened again by {@link #updateChangedForms()}.
+ */
+class SegmentIndex {
+
+	private static final double FLATNESS = 0.05;
+	private static final int TARGET_ITEMS_PER_CELL = 4;
+	private static final int MAX_GRID_SIZE = 256;
+
+	private Form[] sourceForms = null;
+	private IdentityHashMap<Form, FlatForm> flatForms = new IdentityHashMap<>();
+	private FlatForm[] forms = new FlatForm[0];
+
+	private final Grid segmentGrid = new Grid();
+	private final Grid pointGrid = new Grid();
+	// segments: form index, x1,y1,x2,y2
+	private int[] segmentForm = new int[0];
+	private double[] segments = new double[0];
+	// end points: form index, x,y
+	private int[] pointForm = new int[0];
+	private double[] points = new double[0];
+
+	private static class FlatForm {
+		final Forms.Type type;
+		final double[] values;
+		final Path2D.Double path;
+		/** flattened segments: x1,y1,x2,y2, ... */
+		final double[] segments;
+		/** end points (incl. inner points of poly lines): x,y, ... */
+		final double[] points;
+
+		FlatForm(Forms.Type type, double[] values) {
+			this.type = type;
+			this.values = values;
+			this.path = new Path2D.Double();
+			Forms.appendTo(path, type, values);
+			this.segments = flatten(path);
+			this.points = getEndPoints(type, values);
+		}
+	}
+
+	static class Hit {
+		final int formIndex;
+		final double distance;
+		final double x, y;
+
+		private Hit(int formIndex, double distance, double x, double y) {
+			this.formIndex = formIndex;
+			this.distance = distance;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	void setForms(Form[] newForms) {
+		sourceForms = newForms;
+		IdentityHashMap<Form, FlatForm> oldFlatForms = flatForms;
+		flatForms = new IdentityHashMap<>();
+		FlatForm[] list = new FlatForm[newForms==null ? 0 : newForms.length];
+		int n = 0;
+		int segmentCount = 0;
+		int pointCount = 0;
+		if (newForms!=null)
+			for (Form form : newForms) {
+				Forms.Type type = Forms.Type.of(form);
+				double[] values = Forms.getValues(form);
+				if (type==null || values==null) continue;
+				FlatForm flatForm = oldFlatForms.get(form);
+				if (flatForm==null || flatForm.type!=type || !Arrays.equals(flatForm.values, values))
+					flatForm = new FlatForm(type, values);
+				flatForms.put(form, flatForm);
+				list[n++] = flatForm;
+				segmentCount += flatForm.segments.length/4;
+				pointCount += flatForm.points.length/2;
+			}
+		forms = n<list.length ? Arrays.copyOf(list, n) : list;
+
+		segmentForm = new int[segmentCount];
+		segments = new double[segmentCount*4];
+		pointForm = new int[pointCount];
+		points = new double[pointCount*2];
+		int s = 0, p = 0;
+		for (int f=0; f<forms.length; f++) {
+			FlatForm flatForm = forms[f];
+			System.arraycopy(flatForm.segments, 0, segments, s*4, flatForm.segments.length);
+			for (int i=flatForm.segments.length/4; i>0; i--) segmentForm[s++] = f;
+			System.arraycopy(flatForm.points, 0, points, p*2, flatForm.points.length);
+			for (int i=flatForm.points.length/2; i>0; i--) pointForm[p++] = f;
+		}
+
+		segmentGrid.build(segments, 4, segmentCount);
+		pointGrid.build(points, 2, pointCount);
+	}
+
+	/**
+	 * Rebuilds the index, if the values of any form have been changed in place since the last {@link #setForms(Form[])} (e.g. while a point is dragged).
+	 * @return <code>true</code>, if any form has changed
+	 */
+	boolean updateChangedForms() {
+		if (sourceForms==null) return false;
+		for (Form form : sourceForms) {
+			FlatForm flatForm = flatForms.get(form);
+			if (flatForm==null) continue;
+			double[] values = Forms.getValues(form);
+			if (values!=null && !Arrays.equals(flatForm.values, values)) {
+				setForms(sourceForms);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	int getFormCount() {
+		return forms.length;
+	}
+
+	Path2D.Double getPath(int formIndex) {
+		return forms[formIndex].path;
+	}
+
+	/**
+	 * @return the form with the smallest distance to the given position, if it's not farther away than <code>maxDistance</code>, otherwise <code>null</code>
+	 */
+	Hit findNearestForm(double x, double y, double maxDistance) {
+		int[] best = new int[] { -1 };
+		double[] bestDistSq = new double[] { maxDistance*maxDistance };
+		segmentGrid.visit(x-maxDistance, y-maxDistance, x+maxDistance, y+maxDistance, i -> {
+			double distSq = getDistanceSq(x, y, segments[i*4], segments[i*4+1], segments[i*4+2], segments[i*4+3]);
+			if (distSq<=bestDistSq[0]) { bestDistSq[0] = distSq; best[0] = i; }
+		});
+		if (best[0]<0) return null;
+		return new Hit(segmentForm[best[0]], Math.sqrt(bestDistSq[0]), x, y);
+	}
+
+	/**
+	 * @return the end point with the smallest distance to the given position, if it's not farther away than <code>maxDistance</code>, otherwise <code>null</code>
+	 */
+	Hit findNearestEndPoint(double x, double y, double maxDistance) {
+		int[] best = new int[] { -1 };
+		double[] bestDistSq = new double[] { maxDistance*maxDistance };
+		pointGrid.visit(x-maxDistance, y-maxDistance, x+maxDistance, y+maxDistance, i -> {
+			double dx = points[i*2  ]-x;
+			double dy = points[i*2+1]-y;
+			double distSq = dx*dx+dy*dy;
+			if (distSq<=bestDistSq[0]) { bestDistSq[0] = distSq; best[0] = i; }
+		});
+		if (best[0]<0) return null;
+		return new Hit(pointForm[best[0]], Math.sqrt(bestDistSq[0]), points[best[0]*2], points[best[0]*2+1]);
+	}
+
+	private static double getDistanceSq(double px, double py, double x1, double y1, double x2, double y2) {
+		double dx = x2-x1;
+		double dy = y2-y1;
+		double lengthSq = dx*dx+dy*dy;
+		double t = lengthSq==0 ? 0 : Math.max(0, Math.min(1, ((px-x1)*dx + (py-y1)*dy)/lengthSq));
+		double ex = px-(x1+t*dx);
+		double ey = py-(y1+t*dy);
+		return ex*ex+ey*ey;
+	}
+
+	private static double[] flatten(Path2D.Double path) {
+		double[] result = new double[64];
+		int n = 0;
+		double[] coords = new double[6];
+		double startX = 0, startY = 0, lastX = 0, lastY = 0;
+		for (PathIterator it = new FlatteningPathIterator(path.getPathIterator(null), FLATNESS); !it.isDone(); it.next()) {
+			int type = it.currentSegment(coords);
+			if (type==PathIterator.SEG_MOVETO) {
+				startX = lastX = coords[0];
+				startY = lastY = coords[1];
+				continue;
+			}
+			if (type==PathIterator.SEG_CLOSE) {
+				coords[0] = startX;
+				coords[1] = startY;
+			}
+			if (n+4>result.length) result = Arrays.copyOf(result, result.length*2);
+			result[n++] = lastX;
+			result[n++] = lastY;
+			result[n++] = lastX = coords[0];
+			result[n++] = lastY = coords[1];
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	private static double[] getEndPoints(Forms.Type type, double[] values) {
+		switch (type) {
+		case PolyLine:
+		case Line:
+			return values.length%2==0 ? values : Arrays.copyOf(values, values.length-1);
+		case Arc:
+			if (values.length<5) return new double[0];
+			double xC = values[0], yC = values[1], r = values[2];
+			return new double[] {
+				xC+r*Math.cos(values[3]), yC+r*Math.sin(values[3]),
+				xC+r*Math.cos(values[4]), yC+r*Math.sin(values[4])
+			};
+		}
+		return new double[0];
+	}
+
+	/**
+	 * Grid of items with bounding boxes (segments) or positions (points), stored as compressed lists of item indices per cell.
+	 */
+	private static class Grid {
+		private double minX, minY, cellSize;
+		private int columns, rows;
+		private int[] cellStart = new int[1];
+		private int[] cellItems = new int[0];
+
+		interface ItemVisitor { void visit(int item); }
+
+		void build(double[] coords, int stride, int count) {
+			if (count==0) {
+				columns = rows = 0;
+				cellStart = new int[1];
+				cellItems = new int[0];
+				return;
+			}
+			minX = Double.POSITIVE_INFINITY; minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for (int i=0; i<count*stride; i+=2) {
+				minX = Math.min(minX, coords[i]); maxX = Math.max(maxX, coords[i]);
+				minY = Math.min(minY, coords[i+1]); maxY = Math.max(maxY, coords[i+1]);
+			}
+			double width  = Math.max(maxX-minX, 1e-6);
+			double height = Math.max(maxY-minY, 1e-6);
+			cellSize = Math.sqrt(width*height*TARGET_ITEMS_PER_CELL/count);
+			cellSize = Math.max(cellSize, Math.max(width, height)/MAX_GRID_SIZE);
+			columns = Math.max(1, (int) Math.ceil(width /cellSize));
+			rows    = Math.max(1, (int) Math.ceil(height/cellSize));
+
+			// 1st pass: count items per cell, 2nd pass: fill
+			cellStart = new int[columns*rows+1];
+			for (int i=0; i<count; i++)
+				forEachCell(coords, stride, i, cell -> cellStart[cell+1]++);
+			for (int c=0; c<columns*rows; c++)
+				cellStart[c+1] += cellStart[c];
+			cellItems = new int[cellStart[columns*rows]];
+			int[] fill = Arrays.copyOf(cellStart, columns*rows);
+			for (int i=0; i<count; i++) {
+				int item = i;
+				forEachCell(coords, stride, i, cell -> cellItems[fill[cell]++] = item);
+			}
+		}
+
+		private void forEachCell(double[] coords, int stride, int item, ItemVisitor cellVisitor) {
+			int o = item*stride;
+			double x1 = coords[o], y1 = coords[o+1];
+			double x2 = stride>=4 ? coords[o+2] : x1;
+			double y2 = stride>=4 ? coords[o+3] : y1;
+			if (x2<x1) { double t = x1; x1 = x2; x2 = t; t = y1; y1 = y2; y2 = t; }
+			int c1 = getColumn(x1), c2 = getColumn(x2);
+			if (x2==x1) {
+				// vertical segment or point: all rows of its column
+				int r1 = getRow(Math.min(y1, y2));
+				int r2 = getRow(Math.max(y1, y2));
+				for (int r=r1; r<=r2; r++)
+					cellVisitor.visit(r*columns+c1);
+				return;
+			}
+			// only the cells along the segment (not its whole bounding box), column by column
+			double slope = (y2-y1)/(x2-x1);
+			for (int c=c1; c<=c2; c++) {
+				double xa = c==c1 ? x1 : minX + c    *cellSize;
+				double xb = c==c2 ? x2 : minX + (c+1)*cellSize;
+				double ya = y1 + (xa-x1)*slope;
+				double yb = y1 + (xb-x1)*slope;
+				int r1 = getRow(Math.min(ya, yb));
+				int r2 = getRow(Math.max(ya, yb));
+				for (int r=r1; r<=r2; r++)
+					cellVisitor.visit(r*columns+c);
+			}
+		}
+
+		private int getColumn(double x) { return Math.max(0, Math.min(columns-1, (int) Math.floor((x-minX)/cellSize))); }
+		private int getRow   (double y) { return Math.max(0, Math.min(rows   -1, (int) Math.floor((y-minY)/cellSize))); }
+
+		/**
+		 * Visits all items in the cells touching the given rectangle. Items spanning several cells can be visited more than once.
+		 */
+		void visit(double x1, double y1, double x2, double y2, ItemVisitor visitor) {
+			if (columns==0) return;
+			if (x2<minX || y2<minY || x1>minX+columns*cellSize || y1>minY+rows*cellSize) return;
+			int c1 = getColumn(x1), c2 = getColumn(x2);
+			int r1 = getRow   (y1), r2 = getRow   (y2);
+			for (int r=r1; r<=r2; r++)
+				for (int c=c1; c<=c2; c++) {
+					int cell = r*columns+c;
+					for (int i=cellStart[cell]; i<cellStart[cell+1]; i++)
+						visitor.visit(cellItems[i]);
+				}
+		}
+	}
+}
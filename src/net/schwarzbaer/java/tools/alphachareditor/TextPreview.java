@@ -0,0 +1,251 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BasicStroke;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTextArea;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import net.schwarzbaer.java.lib.gui.Canvas;
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Renders user typed text with the glyphs of the current font.
+ * The stroked outline of each glyph is cached and only rebuilt after a change of this glyph
+ * ({@link #updateChar(Character)}) or of the line width, so that long texts can be repainted while editing.
+ * All methods have to be called on the event thread.
+ */
+class TextPreview extends JPanel {
+	private static final long serialVersionUID = -3196457263140810426L;
+
+	private static final Color COLOR_BACKGROUND = Color.WHITE;
+	private static final Color COLOR_GLYPH      = Color.BLACK;
+	private static final Color COLOR_MISSING    = Color.LIGHT_GRAY;
+
+	/** model units above the top guide line (y=0), that belong to a text line */
+	private static final double LINE_TOP    = 30;
+	private static final double LINE_HEIGHT = 160;
+	private static final double SPACE_WIDTH = 40;
+	private static final double MISSING_GLYPH_WIDTH = 50;
+	private static final double MISSING_GLYPH_HEIGHT = 100;
+	private static final int BORDER = 5;
+	private static final Metrics.Metric PAINT_TIME = Metrics.timer("TextPreview.paint");
+
+	private final JTextArea textInput;
+	private final PreviewCanvas canvas;
+	private final HashMap<Character, GlyphOutline> glyphCache;
+	private CharRaster.GlyphProvider font;
+	private String[] lines;
+	/** x position of each char (and of the end of line) in model units */
+	private double[][] linePositions;
+	private boolean layoutValid;
+
+	private double scale;
+	private float lineWidth;
+	private double letterSpacing;
+	private BasicStroke stroke;
+
+	TextPreview() {
+		super(new BorderLayout(3,3));
+		glyphCache = new HashMap<>();
+		font = null;
+		lines = new String[0];
+		linePositions = new double[0][];
+		layoutValid = false;
+		scale = 0.3;
+		lineWidth = 20;
+		letterSpacing = 15;
+		stroke = createStroke();
+
+		textInput = new JTextArea("The quick brown fox jumps over the lazy dog.\nTHE QUICK BROWN FOX JUMPS OVER THE LAZY DOG.\n0123456789", 3, 20);
+		textInput.getDocument().addDocumentListener(new DocumentListener() {
+			@Override public void insertUpdate (DocumentEvent e) { textChanged(); }
+			@Override public void removeUpdate (DocumentEvent e) { textChanged(); }
+			@Override public void changedUpdate(DocumentEvent e) {}
+		});
+
+		JSpinner sizeInput = new JSpinner(new SpinnerNumberModel(30, 5, 400, 5));
+		sizeInput.addChangeListener(e->{ scale = ((Number) sizeInput.getValue()).doubleValue()/100; invalidateLayout(); });
+		JSpinner lineWidthInput = new JSpinner(new SpinnerNumberModel(lineWidth, 1, 100, 1));
+		lineWidthInput.addChangeListener(e->{ lineWidth = ((Number) lineWidthInput.getValue()).floatValue(); stroke = createStroke(); invalidateAll(); });
+		JSpinner spacingInput = new JSpinner(new SpinnerNumberModel(letterSpacing, -50, 200, 5));
+		spacingInput.addChangeListener(e->{ letterSpacing = ((Number) spacingInput.getValue()).doubleValue(); invalidateLayout(); });
+
+		JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 3, 0));
+		optionsPanel.add(new JLabel("Size: "));
+		optionsPanel.add(sizeInput);
+		optionsPanel.add(new JLabel("  Line Width: "));
+		optionsPanel.add(lineWidthInput);
+		optionsPanel.add(new JLabel("  Letter Spacing: "));
+		optionsPanel.add(spacingInput);
+
+		JPanel inputPanel = new JPanel(new BorderLayout(3,3));
+		inputPanel.add(new JScrollPane(textInput), BorderLayout.CENTER);
+		inputPanel.add(optionsPanel, BorderLayout.SOUTH);
+
+		canvas = new PreviewCanvas();
+		add(inputPanel, BorderLayout.NORTH);
+		add(new JScrollPane(canvas), BorderLayout.CENTER);
+		textChanged();
+	}
+
+	private BasicStroke createStroke() {
+		return new BasicStroke(lineWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+	}
+
+	float getLineWidth() {
+		return lineWidth;
+	}
+
+	void setGlyphProvider(CharRaster.GlyphProvider font) {
+		this.font = font;
+		invalidateAll();
+	}
+
+	/**
+	 * Has to be called after a change of the forms of the given char.
+	 */
+	void updateChar(Character ch) {
+		if (ch==null) return;
+		if (glyphCache.remove(ch)!=null)
+			invalidateLayout();
+	}
+
+	void invalidateAll() {
+		glyphCache.clear();
+		invalidateLayout();
+	}
+
+	private void textChanged() {
+		lines = textInput.getText().split("\n", -1);
+		invalidateLayout();
+	}
+
+	private void invalidateLayout() {
+		layoutValid = false;
+		canvas.repaint();
+	}
+
+	private void updateLayout() {
+		if (layoutValid) return;
+		layoutValid = true;
+		double maxWidth = 0;
+		linePositions = new double[lines.length][];
+		for (int l=0; l<lines.length; l++) {
+			String line = lines[l];
+			double[] positions = linePositions[l] = new double[line.length()+1];
+			double x = lineWidth/2;
+			for (int i=0; i<line.length(); i++) {
+				positions[i] = x;
+				x += getGlyph(line.charAt(i)).advance + letterSpacing;
+			}
+			positions[line.length()] = x;
+			maxWidth = Math.max(maxWidth, x);
+		}
+		int width  = 2*BORDER + (int) Math.ceil((maxWidth+lineWidth)*scale);
+		int height = 2*BORDER + (int) Math.ceil(lines.length*LINE_HEIGHT*scale);
+		canvas.setPreferredSize(width, height);
+		canvas.revalidate();
+	}
+
+	private GlyphOutline getGlyph(char ch) {
+		GlyphOutline glyph = glyphCache.get(ch);
+		if (glyph==null) {
+			glyph = createGlyph(ch);
+			glyphCache.put(ch, glyph);
+		}
+		return glyph;
+	}
+
+	private GlyphOutline createGlyph(char ch) {
+		if (Character.isWhitespace(ch))
+			return new GlyphOutline(null, false, SPACE_WIDTH);
+
+		Form[] forms = font==null || !font.hasGlyph(ch) ? null : font.getForms(ch);
+		if (forms==null || forms.length==0)
+			return new GlyphOutline(new Rectangle2D.Double(0, 0, MISSING_GLYPH_WIDTH, MISSING_GLYPH_HEIGHT), true, MISSING_GLYPH_WIDTH);
+
+		Path2D.Double path = Forms.createPath(forms);
+		Rectangle2D bounds = path.getBounds2D();
+		return new GlyphOutline(stroke.createStrokedShape(path), false, Math.max(0, bounds.getMaxX()) + lineWidth);
+	}
+
+	private static class GlyphOutline {
+		/** stroked outline in model coordinates */
+		final Shape outline;
+		final boolean isMissing;
+		final double advance;
+
+		GlyphOutline(Shape outline, boolean isMissing, double advance) {
+			this.outline = outline;
+			this.isMissing = isMissing;
+			this.advance = advance;
+		}
+	}
+
+	private class PreviewCanvas extends Canvas {
+		private static final long serialVersionUID = 8140361834637779063L;
+
+		@Override
+		protected void paintCanvas(Graphics g, int x, int y, int width, int height) {
+			if (!(g instanceof Graphics2D g2)) return;
+			long start = System.nanoTime();
+			updateLayout();
+
+			Rectangle clip = g2.getClipBounds();
+			if (clip==null) clip = new Rectangle(x, y, width, height);
+			g2.setColor(COLOR_BACKGROUND);
+			g2.fill(clip);
+
+			g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g2.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+			double lineHeight = LINE_HEIGHT*scale;
+			int firstLine = Math.max(0, (int) Math.floor((clip.y-y-BORDER)/lineHeight));
+			int lastLine  = Math.min(lines.length-1, (int) Math.floor((clip.y+clip.height-y-BORDER)/lineHeight));
+			double clipMinX = (clip.x-x-BORDER)/scale - lineWidth;
+			double clipMaxX = (clip.x+clip.width-x-BORDER)/scale + lineWidth;
+
+			AffineTransform original = g2.getTransform();
+			for (int l=firstLine; l<=lastLine; l++) {
+				String line = lines[l];
+				double[] positions = linePositions[l];
+				double lineY = y+BORDER + l*lineHeight;
+				for (int i=0; i<line.length(); i++) {
+					if (positions[i+1]<clipMinX) continue;
+					if (positions[i]>clipMaxX) break;
+					GlyphOutline glyph = getGlyph(line.charAt(i));
+					if (glyph.outline==null) continue;
+					g2.translate(x+BORDER + positions[i]*scale, lineY + LINE_TOP*scale);
+					g2.scale(scale, scale);
+					if (glyph.isMissing) {
+						g2.setColor(COLOR_MISSING);
+						g2.draw(glyph.outline);
+					} else {
+						g2.setColor(COLOR_GLYPH);
+						g2.fill(glyph.outline);
+					}
+					g2.setTransform(original);
+				}
+			}
+			PAINT_TIME.stop(start);
+		}
+	}
+}
@@ -0,0 +1,393 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Vector;
+
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
+import javax.swing.Timer;
+
+import net.schwarzbaer.java.lib.gui.ZoomableCanvas;
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.EditorViewFeature;
+
+/**
+ * Shows the forms of the current glyph as thick lines.
+ * The stroked outlines of each form are cached in form coordinates (per line width) and in screen coordinates (per zoom scale),
+ * so a repaint without changes in forms, line width or zoom doesn't create any new shapes.
+ * The line editor changes the values of forms in place, while a point is dragged.
+ * So they are checked on each repaint while a mouse button is pressed in the editor view, and once after it's released.
+ * Otherwise a repaint allocates only the copy of the transform of the <code>Graphics2D</code>,
+ * that is needed to get the device scale of the bitmap.
+ * <p>
+ * With progressive rendering the full quality lines are drawn into a bitmap, that is reused as long as forms (including their values) and view don't change.
+ * While the view is panned or zoomed, only this bitmap (moved and scaled to the new view) and
+ * the outermost outlines without antialiasing for the areas not covered by the bitmap are drawn.
+ * The full quality lines are drawn again {@value #REFINE_DELAY_ms} ms after the last change of the view.
+ */
+class ThickLines implements EditorViewFeature
+{
+	private static final Color[] LAYER_COLORS = new Color[] { new Color(0xf0f0f0), new Color(0xe0e0e0), new Color(0xd0d0d0) };
+	private static final float[] LAYER_WIDTH_FACTORS = new float[] { 1f, 2f/3f, 1f/3f };
+	private static final Metrics.Metric DRAW_TIME = Metrics.timer("ThickLines.draw");
+	private static final Metrics.Metric PREVIEW_TIME = Metrics.timer("ThickLines.drawPreview");
+	private static final int REFINE_DELAY_ms = 200;
+	/** max. zoom factor between bitmap and current view, up to that the bitmap is used while the view changes */
+	private static final double MAX_FRAME_ZOOM = 2;
+
+	private boolean showThickLines = true;
+	private float thickLinesWidth = 20f;
+	private boolean progressiveRendering = true;
+	private JCheckBoxMenuItem miShowThickLines = null;
+	private JCheckBoxMenuItem miProgressiveRendering = null;
+	private Component editorView = null;
+	private boolean mousePressed = false;
+	private boolean checkForms = false;
+
+	private final BasicStroke[] layerStrokes = new BasicStroke[LAYER_COLORS.length];
+	private final Vector<CachedForm> cachedForms = new Vector<>();
+	private final ViewTransform viewTransform = new ViewTransform();
+	private final ViewTransform cachedScale = new ViewTransform();
+	private final AffineTransform scaling = new AffineTransform();
+
+	private final Timer refineTimer;
+	private final ViewTransform lastView = new ViewTransform();
+	private boolean hasLastView = false;
+	private boolean isInteracting = false;
+
+	/** full quality lines of the last frame, drawn in device pixels */
+	private BufferedImage frame = null;
+	private boolean isFrameValid = false;
+	private final ViewTransform frameView = new ViewTransform();
+	private int frameX, frameY;
+	private double frameDeviceScale;
+	private final Rectangle2D.Double frameArea = new Rectangle2D.Double();
+
+	ThickLines() {
+		refineTimer = new Timer(REFINE_DELAY_ms, e->refine());
+		refineTimer.setRepeats(false);
+		updateStrokes();
+	}
+
+	@Override
+	public void setEditorView(Component editorView)
+	{
+		this.editorView = editorView;
+		editorView.addMouseListener(new MouseAdapter() {
+			@Override public void mousePressed (MouseEvent e) { mousePressed = true; }
+			@Override public void mouseReleased(MouseEvent e) { mousePressed = false; checkForms = true; editorView.repaint(); }
+		});
+	}
+
+	private boolean isShowThickLines  () { return showThickLines ; }
+	private float   getThickLinesWidth() { return thickLinesWidth; }
+	private void setShowThickLines (boolean showThickLines ) { this.showThickLines  = showThickLines ; editorView.repaint(); }
+	private void setThickLinesWidth(float   thickLinesWidth) { this.thickLinesWidth = thickLinesWidth; updateStrokes(); editorView.repaint(); }
+
+	private void setProgressiveRendering(boolean progressiveRendering) {
+		this.progressiveRendering = progressiveRendering;
+		refineTimer.stop();
+		isInteracting = false;
+		frame = null;
+		isFrameValid = false;
+		editorView.repaint();
+	}
+
+	private void refine() {
+		isInteracting = false;
+		if (editorView!=null) editorView.repaint();
+	}
+
+	private void updateStrokes() {
+		for (int i=0; i<layerStrokes.length; i++)
+			layerStrokes[i] = new BasicStroke(thickLinesWidth*LAYER_WIDTH_FACTORS[i],BasicStroke.CAP_ROUND,BasicStroke.JOIN_ROUND);
+		for (CachedForm cf : cachedForms)
+			cf.clearOutlines();
+		isFrameValid = false;
+	}
+
+	/**
+	 * Sets the forms of the current glyph. Has to be called, if forms were added, removed or replaced.
+	 * Cached outlines of unchanged forms are kept.
+	 */
+	void setForms(Form[] forms) {
+		Vector<CachedForm> oldForms = new Vector<>(cachedForms);
+		cachedForms.clear();
+		isFrameValid = false;
+		if (forms==null) return;
+
+		for (Form form : forms) {
+			Forms.Type type = Forms.Type.of(form);
+			double[] values = Forms.getValues(form);
+			if (type==null || values==null) continue;
+
+			CachedForm cachedForm = null;
+			for (int i=0; i<oldForms.size(); i++) {
+				CachedForm cf = oldForms.get(i);
+				if (cf.form==form && cf.type==type && Arrays.equals(cf.values, values)) {
+					cachedForm = cf;
+					oldForms.remove(i);
+					break;
+				}
+			}
+			if (cachedForm==null) cachedForm = new CachedForm(form, type, values);
+			cachedForms.add(cachedForm);
+		}
+	}
+
+	@Override
+	public void addToEditorViewContextMenu(JPopupMenu contextMenu)
+	{
+		contextMenu.addSeparator();
+		contextMenu.add(miShowThickLines = AlphaCharEditor.createCheckBoxMI("Show Thick Lines", isShowThickLines(), this::setShowThickLines   ));
+		contextMenu.add(miProgressiveRendering = AlphaCharEditor.createCheckBoxMI("Fast Thick Lines while Moving View", progressiveRendering, this::setProgressiveRendering));
+		contextMenu.add(AlphaCharEditor.createMenuItem("Set line width ...", e->{
+			float width = getThickLinesWidth();
+			String result = JOptionPane.showInputDialog(editorView, "Set width of thick lines:", width);
+			if (result!=null) {
+				try { setThickLinesWidth(Float.parseFloat(result)); }
+				catch (NumberFormatException e1) {
+					String message = "Error: Can't convert input into numeric value.";
+					JOptionPane.showMessageDialog(editorView, message, "Error", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+		}));
+	}
+
+	@Override
+	public void prepareContextMenuToShow()
+	{
+		miShowThickLines.setSelected(isShowThickLines());
+		miProgressiveRendering.setSelected(progressiveRendering);
+	}
+
+	@Override
+	public void draw(Graphics2D g2, int x, int y, int width, int height, ZoomableCanvas.ViewState viewState, Iterable<? extends FeatureLineForm> forms)
+	{
+		if (forms!=null && showThickLines && !cachedForms.isEmpty()) {
+			if (mousePressed || checkForms) updateChangedForms();
+			checkForms = false;
+			viewTransform.update(viewState);
+			if (progressiveRendering) drawProgressive(g2, x, y, width, height, viewTransform);
+			else draw(g2, viewTransform);
+		}
+	}
+
+	/**
+	 * Rebuilds the outlines of all forms, whose values have changed since their outlines were created.
+	 * The bitmap of the last frame is invalid, if any form has changed.
+	 */
+	private void updateChangedForms()
+	{
+		boolean changed = false;
+		for (CachedForm cf : cachedForms)
+			if (cf.update()) changed = true;
+		if (changed) isFrameValid = false;
+	}
+
+	private void drawProgressive(Graphics2D g2, int x, int y, int width, int height, ViewTransform view)
+	{
+		if (hasLastView && !view.isSame(lastView)) {
+			isInteracting = true;
+			if (editorView!=null) refineTimer.restart();
+		}
+		lastView.set(view);
+		hasLastView = true;
+
+		if (isInteracting) drawPreview(g2, x, y, width, height, view);
+		else drawFrame(g2, x, y, width, height, view);
+	}
+
+	/**
+	 * Draws the full quality lines via a bitmap, that is redrawn only if forms, line width, view or drawing area have changed.
+	 */
+	void drawFrame(Graphics2D g2, int x, int y, int width, int height, ViewTransform view)
+	{
+		AffineTransform transform = g2.getTransform();
+		double deviceScale = transform.getScaleX();
+		int frameWidth  = (int) Math.ceil(width *deviceScale);
+		int frameHeight = (int) Math.ceil(height*deviceScale);
+		if (frameWidth<=0 || frameHeight<=0) return;
+
+		boolean sizeChanged = frame==null || frame.getWidth()!=frameWidth || frame.getHeight()!=frameHeight;
+		if (sizeChanged || !isFrameValid || frameX!=x || frameY!=y || frameDeviceScale!=deviceScale || !view.isSame(frameView)) {
+			if (sizeChanged) frame = new BufferedImage(frameWidth, frameHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+			Graphics2D frameG2 = frame.createGraphics();
+			frameG2.setComposite(AlphaComposite.Clear);
+			frameG2.fillRect(0, 0, frameWidth, frameHeight);
+			frameG2.setComposite(AlphaComposite.SrcOver);
+			frameG2.setRenderingHints(g2.getRenderingHints());
+			frameG2.scale(deviceScale, deviceScale);
+			frameG2.translate(-x, -y);
+			draw(frameG2, view);
+			frameG2.dispose();
+			frameView.set(view);
+			frameX = x;
+			frameY = y;
+			frameDeviceScale = deviceScale;
+			isFrameValid = true;
+		}
+
+		g2.translate(x, y);
+		g2.scale(1/deviceScale, 1/deviceScale);
+		g2.drawImage(frame, 0, 0, null);
+		g2.setTransform(transform);
+	}
+
+	/**
+	 * Draws a cheap version of the lines, while the view changes:
+	 * the bitmap of the last full quality frame (moved and scaled to the current view), if the zoom hasn't changed too much,
+	 * and only the outermost outlines without antialiasing for all areas not covered by the bitmap.
+	 */
+	void drawPreview(Graphics2D g2, int x, int y, int width, int height, ViewTransform view)
+	{
+		long start = System.nanoTime();
+		Object antialiasing  = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+		Object interpolation = g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+
+		double zoomX = view.scaleX/frameView.scaleX;
+		double zoomY = view.scaleY/frameView.scaleY;
+		boolean useFrame = frame!=null && isFrameValid && frameX==x && frameY==y
+				&& isInRange(zoomX, 1/MAX_FRAME_ZOOM, MAX_FRAME_ZOOM)
+				&& isInRange(zoomY, 1/MAX_FRAME_ZOOM, MAX_FRAME_ZOOM);
+
+		if (useFrame) {
+			// area of frame in current view:  frame view screen -> form coordinates -> current screen
+			double frameMinX = view.translateX + (x      -frameView.translateX)*zoomX;
+			double frameMinY = view.translateY + (y      -frameView.translateY)*zoomY;
+			double frameMaxX = view.translateX + (x+width -frameView.translateX)*zoomX;
+			double frameMaxY = view.translateY + (y+height-frameView.translateY)*zoomY;
+			frameArea.setFrameFromDiagonal(frameMinX, frameMinY, frameMaxX, frameMaxY);
+
+			Area uncovered = new Area(new Rectangle(x, y, width, height));
+			uncovered.subtract(new Area(frameArea));
+			if (!uncovered.isEmpty()) {
+				Shape clip = g2.getClip();
+				g2.clip(uncovered);
+				drawOutermostOutlines(g2, view);
+				g2.setClip(clip);
+			}
+
+			// scaled blit in device pixels
+			AffineTransform transform = g2.getTransform();
+			g2.scale(1/frameDeviceScale, 1/frameDeviceScale);
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			g2.drawImage(frame,
+					(int) Math.round(frameMinX*frameDeviceScale), (int) Math.round(frameMinY*frameDeviceScale),
+					(int) Math.round(frameMaxX*frameDeviceScale), (int) Math.round(frameMaxY*frameDeviceScale),
+					0, 0, frame.getWidth(), frame.getHeight(), null);
+			if (interpolation!=null) g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+			g2.setTransform(transform);
+		} else
+			drawOutermostOutlines(g2, view);
+
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+		PREVIEW_TIME.stop(start);
+	}
+
+	private static boolean isInRange(double value, double min, double max) {
+		return min<=value && value<=max;
+	}
+
+	private void drawOutermostOutlines(Graphics2D g2, ViewTransform view)
+	{
+		AffineTransform transform = g2.getTransform();
+		g2.translate(view.translateX, view.translateY);
+		g2.scale(view.scaleX, view.scaleY);
+		g2.setColor(LAYER_COLORS[0]);
+		for (int i=0; i<cachedForms.size(); i++)
+			g2.fill(cachedForms.get(i).getOutline(0));
+		g2.setTransform(transform);
+	}
+
+	void draw(Graphics2D g2, ViewTransform view)
+	{
+		long start = System.nanoTime();
+		if (!view.hasSameScale(cachedScale)) {
+			cachedScale.set(view);
+			cachedScale.getScaling(scaling);
+			for (CachedForm cf : cachedForms)
+				cf.clearScreenOutlines();
+		}
+
+		g2.translate(view.translateX, view.translateY);
+		for (int layer=0; layer<LAYER_COLORS.length; layer++) {
+			g2.setColor(LAYER_COLORS[layer]);
+			for (int i=0; i<cachedForms.size(); i++)
+				g2.fill(cachedForms.get(i).getScreenOutline(layer));
+		}
+		g2.translate(-view.translateX, -view.translateY);
+		DRAW_TIME.stop(start);
+	}
+
+	private class CachedForm {
+		final Form form;
+		final Forms.Type type;
+		private double[] values;
+		private Path2D.Double path;
+		private final Shape[] outlines = new Shape[LAYER_COLORS.length];
+		private final Shape[] screenOutlines = new Shape[LAYER_COLORS.length];
+
+		CachedForm(Form form, Forms.Type type, double[] values) {
+			this.form = form;
+			this.type = type;
+			this.values = values;
+			this.path = null;
+		}
+
+		/**
+		 * @return <code>true</code>, if the values of the form have changed
+		 */
+		boolean update() {
+			double[] values = Forms.getValues(form);
+			if (values==null || Arrays.equals(this.values, values)) return false;
+			this.values = values;
+			path = null;
+			clearOutlines();
+			return true;
+		}
+
+		void clearOutlines() {
+			Arrays.fill(outlines, null);
+			clearScreenOutlines();
+		}
+
+		void clearScreenOutlines() {
+			Arrays.fill(screenOutlines, null);
+		}
+
+		Shape getOutline(int layer) {
+			if (outlines[layer]==null) {
+				if (path==null) {
+					path = new Path2D.Double();
+					Forms.appendTo(path, type, values);
+				}
+				outlines[layer] = layerStrokes[layer].createStrokedShape(path);
+			}
+			return outlines[layer];
+		}
+
+		Shape getScreenOutline(int layer) {
+			if (screenOutlines[layer]==null)
+				screenOutlines[layer] = scaling.createTransformedShape(getOutline(layer));
+			return screenOutlines[layer];
+		}
+	}
+}
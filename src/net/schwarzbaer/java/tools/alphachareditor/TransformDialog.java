@@ -0,0 +1,180 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.WindowConstants;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * Parameters of a {@link GlyphTransform}, that is applied to all characters of a font.
+ * Each change of a parameter is shown at once by the {@link Listener}.
+ */
+class TransformDialog extends JDialog {
+	private static final long serialVersionUID = -3127781409585526613L;
+
+	interface Listener {
+		/** @param transform current transform or <code>null</code>, if the parameters are invalid */
+		void previewTransform(GlyphTransform transform);
+		void applyTransform(GlyphTransform transform);
+		void cancelTransform();
+	}
+
+	private final Listener listener;
+	private final JSpinner slant, scaleX, scaleY, translateX, translateY, weight;
+	private final JTextField remapFrom, remapTo;
+	private final JLabel messageLabel;
+	private final JButton applyButton;
+	private GlyphTransform transform;
+	private boolean isApplying;
+
+	/**
+	 * @param guideLines positions of the horizontal guide lines, that are offered for vertical remapping
+	 */
+	TransformDialog(Window parent, double[] guideLines, Listener listener) {
+		super(parent, "Transform All Characters", ModalityType.APPLICATION_MODAL);
+		this.listener = listener;
+		AlphaCharEditor.Assert(this.listener!=null);
+		transform = null;
+		isApplying = false;
+
+		slant      = createSpinner(0, -60, 60, 1);
+		scaleX     = createSpinner(1, 0.05, 10, 0.05);
+		scaleY     = createSpinner(1, 0.05, 10, 0.05);
+		translateX = createSpinner(0, -500, 500, 1);
+		translateY = createSpinner(0, -500, 500, 1);
+		weight     = createSpinner(0, 0, 20, 0.5);
+		remapFrom  = createTextField(toString(guideLines));
+		remapTo    = createTextField(toString(guideLines));
+
+		JPanel parameterPanel = new JPanel(new GridLayout(0, 2, 3, 3));
+		addRow(parameterPanel, "Slant (°)"                , slant);
+		addRow(parameterPanel, "Scale X"                  , scaleX);
+		addRow(parameterPanel, "Scale Y"                  , scaleY);
+		addRow(parameterPanel, "Move X"                   , translateX);
+		addRow(parameterPanel, "Move Y"                   , translateY);
+		addRow(parameterPanel, "Guide Lines (y)"          , remapFrom);
+		addRow(parameterPanel, "Remapped to (y)"          , remapTo);
+		addRow(parameterPanel, "Weight (offset of copies)", weight);
+
+		messageLabel = new JLabel(" ");
+		applyButton = new JButton("Apply to All Characters");
+		applyButton.addActionListener(e->apply());
+		JButton cancelButton = new JButton("Cancel");
+		cancelButton.addActionListener(e->cancel());
+		JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 3, 0));
+		buttonPanel.add(applyButton);
+		buttonPanel.add(cancelButton);
+
+		JPanel southPanel = new JPanel(new BorderLayout(3,3));
+		southPanel.add(messageLabel, BorderLayout.CENTER);
+		southPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+		JPanel contentPane = new JPanel(new BorderLayout(3,3));
+		contentPane.setBorder(BorderFactory.createEmptyBorder(3,3,3,3));
+		contentPane.add(parameterPanel, BorderLayout.CENTER);
+		contentPane.add(southPanel, BorderLayout.SOUTH);
+		setContentPane(contentPane);
+		setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+		addWindowListener(new WindowAdapter() {
+			@Override public void windowClosing(WindowEvent e) { cancel(); }
+		});
+		pack();
+		setLocationRelativeTo(parent);
+		update();
+	}
+
+	private JSpinner createSpinner(double value, double min, double max, double step) {
+		JSpinner spinner = new JSpinner(new SpinnerNumberModel(value, min, max, step));
+		spinner.addChangeListener(e->update());
+		return spinner;
+	}
+
+	private JTextField createTextField(String text) {
+		JTextField field = new JTextField(text, 15);
+		field.getDocument().addDocumentListener(new DocumentListener() {
+			@Override public void insertUpdate (DocumentEvent e) { update(); }
+			@Override public void removeUpdate (DocumentEvent e) { update(); }
+			@Override public void changedUpdate(DocumentEvent e) { update(); }
+		});
+		return field;
+	}
+
+	private static void addRow(JPanel panel, String label, JComponent field) {
+		panel.add(new JLabel(label+": "));
+		panel.add(field);
+	}
+
+	private static String toString(double[] values) {
+		StringBuilder sb = new StringBuilder();
+		for (double value : values) {
+			if (sb.length()>0) sb.append("; ");
+			sb.append(value==Math.rint(value) ? Long.toString((long) value) : Double.toString(value));
+		}
+		return sb.toString();
+	}
+
+	private static double[] parseValues(String text) {
+		text = text.trim();
+		if (text.isEmpty()) return new double[0];
+		String[] parts = text.split("\\s*;\\s*");
+		double[] values = new double[parts.length];
+		try {
+			for (int i=0; i<parts.length; i++)
+				values[i] = Double.parseDouble(parts[i]);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Positions of guide lines have to be numbers separated by \";\"");
+		}
+		return values;
+	}
+
+	private static double getValue(JSpinner spinner) {
+		return ((Number) spinner.getValue()).doubleValue();
+	}
+
+	private void update() {
+		if (isApplying) return;
+		try {
+			transform = new GlyphTransform(
+					getValue(slant), getValue(scaleX), getValue(scaleY), getValue(translateX), getValue(translateY),
+					parseValues(remapFrom.getText()), parseValues(remapTo.getText()), getValue(weight));
+			messageLabel.setText(" ");
+		} catch (IllegalArgumentException e) {
+			transform = null;
+			messageLabel.setText(e.getMessage());
+		}
+		applyButton.setEnabled(transform!=null && !transform.isIdentity());
+		listener.previewTransform(transform);
+	}
+
+	private void apply() {
+		if (transform==null || isApplying) return;
+		isApplying = true;
+		for (JSpinner spinner : new JSpinner[] { slant, scaleX, scaleY, translateX, translateY, weight })
+			spinner.setEnabled(false);
+		remapFrom.setEnabled(false);
+		remapTo.setEnabled(false);
+		applyButton.setEnabled(false);
+		messageLabel.setText("Transforming all characters ...");
+		listener.applyTransform(transform);
+	}
+
+	private void cancel() {
+		listener.cancelTransform();
+		dispose();
+	}
+}
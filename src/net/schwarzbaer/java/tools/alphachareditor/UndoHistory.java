@@ -0,0 +1,291 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Vector;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+
+/**
+ * Project wide undo/redo history of glyph edits.
+ * Each font of the project has its own undo and redo stack; undo and redo apply to the stacks of the current font (see {@link #setFont(Object)}).
+ * <p>
+ * The versions of a glyph are stored as immutable snapshots in the {@link GlyphStore},
+ * so unchanged forms are shared between all versions of a glyph and all fonts of the project.
+ * The history is bounded by a memory budget, that is shared by all fonts; the oldest edits are dropped first.
+ * Bursts of changes to the same glyph (e.g. dragging a point) are coalesced into one edit.
+ * Changes of several glyphs, that are made by one action (e.g. a bulk transform), are undone in one step.
+ * All methods have to be called on the event thread.
+ */
+class UndoHistory {
+
+	private static final long COALESCE_INTERVAL_ms = 700;
+	private static final long EDIT_SIZE = GlyphStore.OBJECT_OVERHEAD + 4*GlyphStore.REFERENCE_SIZE + 2*8;
+
+	/** undo and redo stacks of all fonts */
+	private final IdentityHashMap<Object, Stacks> fonts;
+	private Stacks stacks;
+	private ArrayDeque<Edit> undoStack;
+	private ArrayDeque<Edit> redoStack;
+	private long budget;
+	private long usedBytes;
+	private long editCount;
+
+	private Character currentChar;
+	private GlyphStore.GlyphSnapshot currentGlyph;
+	private boolean coalescingAllowed;
+
+	UndoHistory(long budget) {
+		this.budget = budget;
+		fonts = new IdentityHashMap<>();
+		setStacks(new Stacks());
+		usedBytes = 0;
+		editCount = 0;
+		currentChar = null;
+		currentGlyph = null;
+		coalescingAllowed = false;
+	}
+
+	private static final class Stacks {
+		final ArrayDeque<Edit> undoStack = new ArrayDeque<>();
+		final ArrayDeque<Edit> redoStack = new ArrayDeque<>();
+	}
+
+	static final class Edit {
+		final char ch;
+		final GlyphStore.GlyphSnapshot before;
+		private GlyphStore.GlyphSnapshot after;
+		private long size;
+		private long lastChange_ms;
+		/** position of this edit among the edits of all fonts, used to find the oldest edit */
+		private long index;
+		/** edits of all glyphs of a step, that changed several glyphs, otherwise <code>null</code> */
+		private final Edit[] group;
+
+		private Edit(char ch, GlyphStore.GlyphSnapshot before, GlyphStore.GlyphSnapshot after) {
+			this.ch = ch;
+			this.before = before;
+			this.group = null;
+			setAfter(after);
+		}
+
+		/** first edit of the group represents the whole group */
+		private Edit(Edit[] group) {
+			this.ch = group[0].ch;
+			this.before = group[0].before;
+			this.after = group[0].after;
+			this.group = group;
+			this.size = EDIT_SIZE;
+			for (Edit edit : group) size += edit.size;
+			this.lastChange_ms = System.currentTimeMillis();
+		}
+
+		boolean isGroup() {
+			return group!=null;
+		}
+
+		/**
+		 * @return edits of all changed glyphs
+		 */
+		Edit[] getGlyphEdits() {
+			return group!=null ? group : new Edit[] { this };
+		}
+
+		GlyphStore.GlyphSnapshot getAfter() {
+			return after;
+		}
+
+		private void setAfter(GlyphStore.GlyphSnapshot after) {
+			this.after = after;
+			this.size = EDIT_SIZE + before.getSizeNotSharedWith(after) + after.getSizeNotSharedWith(before);
+			this.lastChange_ms = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Sets the font, whose glyphs are edited. Edits of other fonts are kept, until their font is removed.
+	 * @param font any object, that identifies a font
+	 */
+	void setFont(Object font) {
+		Stacks fontStacks = fonts.get(font);
+		if (fontStacks==null) fonts.put(font, fontStacks = new Stacks());
+		if (fontStacks==stacks) return;
+		setStacks(fontStacks);
+		currentChar = null;
+		currentGlyph = null;
+		coalescingAllowed = false;
+	}
+
+	/**
+	 * Drops all edits of a font, e.g. because it was removed from the project or its glyphs were loaded again.
+	 */
+	void removeFont(Object font) {
+		Stacks fontStacks = fonts.remove(font);
+		if (fontStacks==null) return;
+		for (Edit edit : fontStacks.undoStack) usedBytes -= edit.size;
+		for (Edit edit : fontStacks.redoStack) usedBytes -= edit.size;
+		fontStacks.undoStack.clear();
+		fontStacks.redoStack.clear();
+		if (fontStacks==stacks) {
+			setStacks(new Stacks());
+			currentChar = null;
+			currentGlyph = null;
+			coalescingAllowed = false;
+		}
+	}
+
+	private void setStacks(Stacks stacks) {
+		this.stacks = stacks;
+		undoStack = stacks.undoStack;
+		redoStack = stacks.redoStack;
+	}
+
+	/**
+	 * Sets the glyph, that is shown in the editor. Its current state is the base of the next edit.
+	 */
+	void setCurrentGlyph(Character ch, Form[] forms) {
+		currentChar = ch;
+		currentGlyph = ch==null ? null : GlyphStore.intern(forms);
+		coalescingAllowed = false;
+	}
+
+	/**
+	 * Records a change of the current glyph.
+	 * @return <code>true</code>, if the change was recorded
+	 */
+	boolean glyphChanged(Character ch, Form[] forms) {
+		if (ch==null || !ch.equals(currentChar) || currentGlyph==null) {
+			setCurrentGlyph(ch, forms);
+			return false;
+		}
+		GlyphStore.GlyphSnapshot after = GlyphStore.intern(forms);
+		if (after.isSameAs(currentGlyph)) return false;
+
+		Edit last = undoStack.peekLast();
+		if (coalescingAllowed && last!=null && !last.isGroup() && last.ch==ch && last.getAfter()==currentGlyph && System.currentTimeMillis()-last.lastChange_ms < COALESCE_INTERVAL_ms) {
+			usedBytes -= last.size;
+			last.setAfter(after);
+			usedBytes += last.size;
+		} else {
+			Edit edit = new Edit(ch, currentGlyph, after);
+			edit.index = editCount++;
+			undoStack.addLast(edit);
+			usedBytes += edit.size;
+		}
+		currentGlyph = after;
+		coalescingAllowed = true;
+		clearRedoStack();
+		trimToBudget();
+		return true;
+	}
+
+	/**
+	 * Records changes of several glyphs, that weren't made in the editor, as one step (e.g. a bulk transform).
+	 */
+	void recordEdits(char[] chars, Form[][] before, Form[][] after) {
+		Vector<Edit> edits = new Vector<>(chars.length);
+		for (int i=0; i<chars.length; i++) {
+			Edit edit = new Edit(chars[i], GlyphStore.intern(before[i]), GlyphStore.intern(after[i]));
+			if (!edit.before.isSameAs(edit.getAfter())) edits.add(edit);
+		}
+		if (edits.isEmpty()) return;
+		Edit edit = edits.size()==1 ? edits.get(0) : new Edit(edits.toArray(new Edit[edits.size()]));
+		edit.index = editCount++;
+		undoStack.addLast(edit);
+		usedBytes += edit.size;
+		for (Edit glyphEdit : edit.getGlyphEdits())
+			if (currentChar!=null && currentChar.charValue()==glyphEdit.ch)
+				currentGlyph = glyphEdit.getAfter();
+		coalescingAllowed = false;
+		clearRedoStack();
+		trimToBudget();
+	}
+
+	/**
+	 * @return the edit, that would be reverted by {@link #undo()}, or <code>null</code>
+	 */
+	Edit getLastEdit() {
+		return undoStack.peekLast();
+	}
+
+	boolean canUndo() { return !undoStack.isEmpty(); }
+	boolean canRedo() { return !redoStack.isEmpty(); }
+
+	/**
+	 * @return the edit to revert (apply {@link Edit#before} of all {@link Edit#getGlyphEdits()}) or <code>null</code>, if there is none
+	 */
+	Edit undo() {
+		Edit edit = undoStack.pollLast();
+		if (edit==null) return null;
+		redoStack.addLast(edit);
+		setCurrent(edit.ch, edit.before);
+		return edit;
+	}
+
+	/**
+	 * @return the edit to repeat (apply {@link Edit#getAfter()} of all {@link Edit#getGlyphEdits()}) or <code>null</code>, if there is none
+	 */
+	Edit redo() {
+		Edit edit = redoStack.pollLast();
+		if (edit==null) return null;
+		undoStack.addLast(edit);
+		setCurrent(edit.ch, edit.getAfter());
+		return edit;
+	}
+
+	private void setCurrent(char ch, GlyphStore.GlyphSnapshot glyph) {
+		currentChar = ch;
+		currentGlyph = glyph;
+		coalescingAllowed = false;
+	}
+
+	/**
+	 * Drops the edits of all fonts.
+	 */
+	void clear() {
+		fonts.clear();
+		setStacks(new Stacks());
+		usedBytes = 0;
+		currentChar = null;
+		currentGlyph = null;
+		coalescingAllowed = false;
+	}
+
+	long getBudget() { return budget; }
+	long getUsedBytes() { return usedBytes; }
+	int getUndoCount() {
+		int count = undoStack.size();
+		for (Stacks fontStacks : fonts.values())
+			if (fontStacks!=stacks) count += fontStacks.undoStack.size();
+		return count;
+	}
+
+	void setBudget(long budget) {
+		this.budget = budget;
+		trimToBudget();
+	}
+
+	private void clearRedoStack() {
+		for (Edit edit : redoStack)
+			usedBytes -= edit.size;
+		redoStack.clear();
+	}
+
+	private void trimToBudget() {
+		// redo stacks of other fonts are dropped first, then the oldest edits of all fonts; the latest edit of the current font is always kept
+		for (Stacks fontStacks : fonts.values()) {
+			if (usedBytes<=budget) return;
+			if (fontStacks==stacks) continue;
+			for (Edit edit : fontStacks.redoStack) usedBytes -= edit.size;
+			fontStacks.redoStack.clear();
+		}
+		while (usedBytes>budget) {
+			ArrayDeque<Edit> oldest = undoStack.size()>1 ? undoStack : null;
+			for (Stacks fontStacks : fonts.values())
+				if (fontStacks!=stacks && !fontStacks.undoStack.isEmpty() && (oldest==null || fontStacks.undoStack.peekFirst().index<oldest.peekFirst().index))
+					oldest = fontStacks.undoStack;
+			if (oldest==null) return;
+			usedBytes -= oldest.pollFirst().size;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import java.awt.geom.AffineTransform;
+
+import net.schwarzbaer.java.lib.gui.ZoomableCanvas;
+
+/**
+ * Linear mapping from form coordinates to screen coordinates of the editor view, taken from a <code>ViewState</code>.
+ */
+final class ViewTransform {
+
+	private static final Double LENGTH_1 = 1.0;
+	private static final double REF_POS = 1000;
+
+	double scaleX = 1;
+	double scaleY = 1;
+	double translateX = 0;
+	double translateY = 0;
+
+	void update(ZoomableCanvas.ViewState viewState) {
+		double x0 = viewState.convertPos_AngleToScreen_LongX(0);
+		double y0 = viewState.convertPos_AngleToScreen_LatY (0);
+		double x1 = viewState.convertPos_AngleToScreen_LongX(REF_POS);
+		double y1 = viewState.convertPos_AngleToScreen_LatY (REF_POS);
+		double scale = viewState.convertLength_LengthToScreenF(LENGTH_1).doubleValue();
+		scaleX = x1<x0 ? -scale : scale;
+		scaleY = y1<y0 ? -scale : scale;
+		translateX = x0;
+		translateY = y0;
+	}
+
+	boolean hasSameScale(ViewTransform other) {
+		return scaleX==other.scaleX && scaleY==other.scaleY;
+	}
+
+	boolean isSame(ViewTransform other) {
+		return hasSameScale(other) && translateX==other.translateX && translateY==other.translateY;
+	}
+
+	void set(ViewTransform other) {
+		scaleX     = other.scaleX;
+		scaleY     = other.scaleY;
+		translateX = other.translateX;
+		translateY = other.translateY;
+	}
+
+	void getScaling(AffineTransform transform) {
+		transform.setToScale(scaleX, scaleY);
+	}
+}
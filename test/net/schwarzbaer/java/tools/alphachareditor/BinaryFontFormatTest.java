@@ -0,0 +1,70 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import static net.schwarzbaer.java.tools.alphachareditor.Tests.check;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+class BinaryFontFormatTest {
+
+	static void run() throws IOException {
+		File tempDir = Files.createTempDirectory("AlphaCharEditorTest").toFile();
+		try {
+			overwriteOpenFont(tempDir);
+			rejectTooManyForms();
+		} finally {
+			for (File file : tempDir.listFiles()) file.delete();
+			tempDir.delete();
+		}
+	}
+
+	/**
+	 * Saves a font into its own binary font file, while the font is open (the file is mapped into memory).
+	 */
+	private static void overwriteOpenFont(File tempDir) throws IOException {
+		Form.Factory factory = LineEditor.createFormFactory();
+		File fontFile = new File(tempDir, "open."+BinaryFontFormat.EXTENSION);
+		HashMap<Character, Form[]> font = new HashMap<>();
+		for (char ch='A'; ch<='Z'; ch++)
+			font.put(ch, new Form[] { factory.createLine(new double[] { 0, 0, ch, 100 }) });
+		BinaryFontFormat.write(fontFile, font);
+
+		AlphaCharEditor.Project project = AlphaCharEditor.Project.createDefaultProject();
+		project.setFontFile(fontFile);
+		project.getActiveFont().loaded(BinaryFontFormat.open(fontFile));
+		check(project.getGlyphCount()==26, "open font has %d glyphs", project.getGlyphCount());
+
+		project.getEditableForms('C')[0] = factory.createLine(new double[] { 1, 2, 3, 4 });
+		project.saveFontAs(fontFile);
+
+		BinaryFontFormat.MappedFont saved = BinaryFontFormat.open(fontFile);
+		check(saved.size()==26, "saved font has %d glyphs", saved.size());
+		check(Arrays.equals(Forms.getValues(saved.decode('C', factory)[0]), new double[] { 1, 2, 3, 4 }), "changed glyph wasn't saved");
+		check(Arrays.equals(Forms.getValues(saved.decode('Z', factory)[0]), new double[] { 0, 0, 'Z', 100 }), "unchanged glyph wasn't saved");
+		check(Arrays.equals(Forms.getValues(project.getForms('Z')[0]), new double[] { 0, 0, 'Z', 100 }), "glyph of the font got lost");
+	}
+
+	/**
+	 * The form count of a glyph is stored as an unsigned short.
+	 */
+	private static void rejectTooManyForms() {
+		Form.Factory factory = LineEditor.createFormFactory();
+		Form[] forms = new Form[0x10000];
+		for (int i=0; i<forms.length; i++)
+			forms[i] = factory.createLine(new double[] { 0, 0, i, 100 });
+		HashMap<Character, Form[]> font = new HashMap<>();
+		font.put('A', forms);
+		try {
+			BinaryFontFormat.encode(font);
+			check(false, "glyph with %d forms was encoded", forms.length);
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import static net.schwarzbaer.java.tools.alphachareditor.Tests.check;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+class ProjectBundleTest {
+
+	static void run() throws IOException {
+		File tempDir = Files.createTempDirectory("AlphaCharEditorTest").toFile();
+		try {
+			overwriteOpenBundle(tempDir);
+		} finally {
+			for (File file : tempDir.listFiles()) file.delete();
+			tempDir.delete();
+		}
+	}
+
+	/**
+	 * Saves a project into its own project bundle, while the bundle is open (the file is mapped into memory).
+	 */
+	private static void overwriteOpenBundle(File tempDir) throws IOException {
+		Form.Factory factory = LineEditor.createFormFactory();
+		File fontFile = new File(tempDir, "font."+BinaryFontFormat.EXTENSION);
+		HashMap<Character, Form[]> font = new HashMap<>();
+		for (char ch='A'; ch<='Z'; ch++)
+			font.put(ch, new Form[] { factory.createLine(new double[] { 0, 0, ch, 100 }) });
+		BinaryFontFormat.write(fontFile, font);
+
+		File bundleFile = new File(tempDir, "project."+ProjectBundle.EXTENSION);
+		AlphaCharEditor.Project project = AlphaCharEditor.Project.createDefaultProject();
+		project.setFontFile(fontFile);
+		project.getActiveFont().loaded(BinaryFontFormat.open(fontFile));
+		project.writeToFile(bundleFile, null);
+
+		AlphaCharEditor.Project bundled = AlphaCharEditor.Project.readFromFile(bundleFile);
+		check(bundled.getGlyphCount()==26, "bundled font has %d glyphs", bundled.getGlyphCount());
+		bundled.getEditableForms('C')[0] = factory.createLine(new double[] { 1, 2, 3, 4 });
+		bundled.writeToFile(bundleFile, null);
+
+		BinaryFontFormat.MappedFont saved = ProjectBundle.open(bundleFile).getFont(0);
+		check(saved.size()==26, "saved font has %d glyphs", saved.size());
+		check(Arrays.equals(Forms.getValues(saved.decode('C', factory)[0]), new double[] { 1, 2, 3, 4 }), "changed glyph wasn't saved");
+		check(Arrays.equals(Forms.getValues(saved.decode('Z', factory)[0]), new double[] { 0, 0, 'Z', 100 }), "unchanged glyph wasn't saved");
+		check(Arrays.equals(Forms.getValues(bundled.getForms('Z')[0]), new double[] { 0, 0, 'Z', 100 }), "glyph of the font got lost");
+	}
+}
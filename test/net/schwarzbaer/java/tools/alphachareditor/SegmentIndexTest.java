@@ -0,0 +1,44 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import static net.schwarzbaer.java.tools.alphachareditor.Tests.check;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+class SegmentIndexTest {
+
+	static void run() {
+		findVerticalLine();
+		findVerticalLineBetweenOtherForms();
+	}
+
+	/**
+	 * A vertical segment has to be found along its whole length, not only in the grid cell of its start point.
+	 */
+	private static void findVerticalLine() {
+		Form.Factory factory = LineEditor.createFormFactory();
+		SegmentIndex index = new SegmentIndex();
+		index.setForms(new Form[] { factory.createLine(new double[] { 0, 0, 0, 100 }) });
+		for (double y : new double[] { 0, 10, 50, 90, 100 }) {
+			SegmentIndex.Hit hit = index.findNearestForm(0, y, 1);
+			check(hit!=null && hit.formIndex==0, "vertical line not found at y=%s", y);
+		}
+		SegmentIndex.Hit hit = index.findNearestForm(0.5, 90, 1);
+		check(hit!=null && Math.abs(hit.distance-0.5)<1e-9, "wrong distance to vertical line: %s", hit==null ? null : hit.distance);
+		check(index.findNearestForm(0, 110, 1)==null, "vertical line found beyond its end");
+	}
+
+	private static void findVerticalLineBetweenOtherForms() {
+		Form.Factory factory = LineEditor.createFormFactory();
+		Form[] forms = new Form[21];
+		for (int i=0; i<20; i++)
+			forms[i] = factory.createLine(new double[] { 0, i*10, 40, i*10+5 });
+		forms[20] = factory.createLine(new double[] { 50, 190, 50, 0 });
+		SegmentIndex index = new SegmentIndex();
+		index.setForms(forms);
+		for (double y=0; y<=190; y+=5) {
+			SegmentIndex.Hit hit = index.findNearestForm(50.5, y, 1);
+			check(hit!=null && hit.formIndex==20, "vertical line not found at y=%s", y);
+		}
+	}
+}
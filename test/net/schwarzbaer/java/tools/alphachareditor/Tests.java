@@ -0,0 +1,21 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+/**
+ * Runs all tests. A failed test throws an {@link AssertionError}.
+ * <p>
+ * Usage: <code>Tests</code>
+ */
+public class Tests {
+
+	public static void main(String[] args) throws Exception {
+		BinaryFontFormatTest.run();
+		SegmentIndexTest.run();
+		ProjectBundleTest.run();
+		UndoHistoryTest.run();
+		System.out.printf("All tests passed%n");
+	}
+
+	static void check(boolean condition, String message, Object... args) {
+		if (!condition) throw new AssertionError(String.format(message, args));
+	}
+}
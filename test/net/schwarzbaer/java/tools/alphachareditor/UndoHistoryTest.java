@@ -0,0 +1,60 @@
+package net.schwarzbaer.java.tools.alphachareditor;
+
+import static net.schwarzbaer.java.tools.alphachareditor.Tests.check;
+
+import net.schwarzbaer.java.lib.image.linegeometry.Form;
+import net.schwarzbaer.java.tools.lineeditor.LineEditor;
+
+class UndoHistoryTest {
+
+	static void run() {
+		keepEditsOfOtherFonts();
+		removeFont();
+	}
+
+	private static Form[] createGlyph(double x) {
+		Form.Factory factory = LineEditor.createFormFactory();
+		return new Form[] { factory.createLine(new double[] { 0, 0, x, 100 }) };
+	}
+
+	private static void edit(UndoHistory history, char ch, double before, double after) {
+		history.setCurrentGlyph(ch, createGlyph(before));
+		history.glyphChanged(ch, createGlyph(after));
+	}
+
+	/**
+	 * Switching the font keeps the edits of the previous font.
+	 */
+	private static void keepEditsOfOtherFonts() {
+		Object fontA = new Object(), fontB = new Object();
+		UndoHistory history = new UndoHistory(1024*1024);
+		history.setFont(fontA);
+		edit(history, 'A', 1, 2);
+		history.setFont(fontB);
+		check(!history.canUndo(), "edit of font A can be undone in font B");
+		edit(history, 'B', 3, 4);
+		history.setFont(fontA);
+		UndoHistory.Edit edit = history.undo();
+		check(edit!=null && edit.ch=='A', "edit of font A got lost");
+		check(!history.canUndo(), "font A has more than one edit");
+		check(history.canRedo(), "undone edit of font A can't be redone");
+		history.setFont(fontB);
+		edit = history.undo();
+		check(edit!=null && edit.ch=='B', "edit of font B got lost");
+	}
+
+	private static void removeFont() {
+		Object fontA = new Object(), fontB = new Object();
+		UndoHistory history = new UndoHistory(1024*1024);
+		history.setFont(fontA);
+		edit(history, 'A', 1, 2);
+		history.setFont(fontB);
+		edit(history, 'B', 3, 4);
+		long usedBytes = history.getUsedBytes();
+		history.removeFont(fontA);
+		check(history.getUsedBytes()<usedBytes, "edits of a removed font use memory");
+		check(history.getUndoCount()==1, "undo count is %d", history.getUndoCount());
+		history.setFont(fontA);
+		check(!history.canUndo(), "edit of a removed font can be undone");
+	}
+}